@@ -16,9 +16,17 @@
 package org.nll.hbase.ui.component;
 
 import com.google.common.base.Objects;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import javax.swing.SwingWorker;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.DefaultTableModel;
 import org.nll.hbase.ui.core.HbaseContext;
 import org.nll.hbase.ui.model.HbaseSetting;
 import org.nll.hbase.ui.service.HbaseDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -26,8 +34,15 @@ import org.nll.hbase.ui.service.HbaseDataService;
  */
 public class ConnectionShowDialog extends javax.swing.JDialog {
 
+    private final static Logger logger = LoggerFactory
+            .getLogger(ConnectionShowDialog.class);
     private StartFrame frame;
     private HbaseDataService dataService = new HbaseDataService();
+    private SwingWorker<Void, Void> connectWorker;
+    /**
+     * saved settings in the order of the table
+     */
+    private List<HbaseSetting> settings;
 
     /**
      * Creates new form ConnectionDialog
@@ -38,6 +53,21 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
         initComponents();
         this.setSize(600, 430);
         setLocationRelativeTo(null);
+        progress_connect.setVisible(false);
+        loadSettings();
+        jTable1.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                int row = jTable1.getSelectedRow();
+                if (!e.getValueIsAdjusting() && row >= 0 && row < settings.size()) {
+                    showSetting(settings.get(row));
+                }
+            }
+        });
+        HbaseSetting last = HbaseContext.getLocalStore().getLastSetting();
+        if (last != null) {
+            showSetting(last);
+        }
     }
 
     public ConnectionShowDialog(java.awt.Frame parent, boolean modal) {
@@ -45,6 +75,45 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
         initComponents();
         this.setSize(600, 430);
         setLocationRelativeTo(null);
+        progress_connect.setVisible(false);
+        loadSettings();
+        jTable1.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                int row = jTable1.getSelectedRow();
+                if (!e.getValueIsAdjusting() && row >= 0 && row < settings.size()) {
+                    showSetting(settings.get(row));
+                }
+            }
+        });
+        HbaseSetting last = HbaseContext.getLocalStore().getLastSetting();
+        if (last != null) {
+            showSetting(last);
+        }
+    }
+
+    /**
+     * list the saved settings, a selected one is filled in
+     */
+    private void loadSettings() {
+        settings = HbaseContext.getLocalStore().getSettings();
+        DefaultTableModel model = new DefaultTableModel(new String[]{"Name", "Master Address"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (HbaseSetting setting : settings) {
+            model.addRow(new Object[]{setting.getName(), setting.getMaster()});
+        }
+        jTable1.setModel(model);
+    }
+
+    private void showSetting(HbaseSetting setting) {
+        text_name.setText(setting.getName());
+        text_master.setText(setting.getMaster());
+        text_quorum.setText(setting.getQuorum());
+        text_port.setText(setting.getPort());
     }
 
     /**
@@ -57,7 +126,11 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
         String master = text_master.getText();
         String quorum = text_quorum.getText();
         String port = text_port.getText();
-        HbaseSetting hbaseSetting = new HbaseSetting();
+        // keep the other options of a saved setting
+        HbaseSetting hbaseSetting = HbaseContext.getLocalStore().getSetting(name);
+        if (hbaseSetting == null) {
+            hbaseSetting = new HbaseSetting();
+        }
         hbaseSetting.setName(name);
         hbaseSetting.setMaster(master);
         hbaseSetting.setQuorum(quorum);
@@ -65,14 +138,53 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
         return hbaseSetting;
     }
 
-    private void connect(HbaseSetting setting) {
-        try {
-            dataService.connect(setting);
-            this.dispose();
-            frame.loadSchema(setting.getName());
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * connect and read the table names in the background, the dialog stays
+     * usable and closes once the tables are known. a cluster connected
+     * before shows its cached tables at once
+     *
+     * @param setting
+     */
+    private void connect(final HbaseSetting setting) {
+        if (dataService.connectCached(setting) != null) {
+            // tables known from the last run, checked in the background
+            dispose();
+            frame.loadSchema(setting.getName(), true);
+            return;
         }
+        button_connect.setEnabled(false);
+        progress_connect.setVisible(true);
+        progress_connect.setIndeterminate(true);
+        label_status.setText("Connecting to " + setting.getQuorum() + "...");
+        connectWorker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                dataService.connect(setting);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                if (connectWorker != this || isCancelled()) {
+                    return;
+                }
+                connectWorker = null;
+                progress_connect.setIndeterminate(false);
+                progress_connect.setVisible(false);
+                button_connect.setEnabled(true);
+                try {
+                    get();
+                    label_status.setText(" ");
+                    dispose();
+                    frame.loadSchema(setting.getName());
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    logger.error("connect error! " + setting, cause);
+                    label_status.setText("Connect error: " + cause.getMessage());
+                }
+            }
+        };
+        connectWorker.execute();
     }
 
     /**
@@ -103,6 +215,8 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
         jScrollPane1 = new javax.swing.JScrollPane();
         jTable1 = new javax.swing.JTable();
         jPanel3 = new javax.swing.JPanel();
+        progress_connect = new javax.swing.JProgressBar();
+        label_status = new javax.swing.JLabel();
         button_cancel = new javax.swing.JButton();
         button_connect = new javax.swing.JButton();
 
@@ -212,6 +326,8 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
 
         getContentPane().add(jPanel2, java.awt.BorderLayout.CENTER);
 
+        label_status.setText(" ");
+
         button_cancel.setText("Cancel");
         button_cancel.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -231,7 +347,11 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
         jPanel3Layout.setHorizontalGroup(
             jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, jPanel3Layout.createSequentialGroup()
-                .addContainerGap(347, Short.MAX_VALUE)
+                .addContainerGap()
+                .addComponent(progress_connect, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(label_status, javax.swing.GroupLayout.DEFAULT_SIZE, 255, Short.MAX_VALUE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(button_cancel)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(button_connect)
@@ -241,7 +361,9 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
             jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(jPanel3Layout.createSequentialGroup()
                 .addGap(16, 16, 16)
-                .addGroup(jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                .addGroup(jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.CENTER)
+                    .addComponent(progress_connect, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(label_status)
                     .addComponent(button_cancel)
                     .addComponent(button_connect))
                 .addContainerGap(18, Short.MAX_VALUE))
@@ -253,12 +375,18 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
     }// </editor-fold>//GEN-END:initComponents
 
     private void button_cancelActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_cancelActionPerformed
+        if (connectWorker != null) {
+            // the connection is left to the idle close
+            connectWorker.cancel(false);
+            connectWorker = null;
+        }
         this.dispose();
     }//GEN-LAST:event_button_cancelActionPerformed
 
     private void button_saveActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_saveActionPerformed
         HbaseSetting hbaseSetting = getCurrentSetting();
         HbaseContext.saveSetting(hbaseSetting);
+        loadSettings();
     }//GEN-LAST:event_button_saveActionPerformed
 
     private void button_connectActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_connectActionPerformed
@@ -325,6 +453,8 @@ public class ConnectionShowDialog extends javax.swing.JDialog {
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JSplitPane jSplitPane1;
     private javax.swing.JTable jTable1;
+    private javax.swing.JLabel label_status;
+    private javax.swing.JProgressBar progress_connect;
     private javax.swing.JTextField text_master;
     private javax.swing.JTextField text_name;
     private javax.swing.JTextField text_port;
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.component;
+
+import com.google.common.collect.Lists;
+import java.util.BitSet;
+import java.util.List;
+import javax.swing.table.AbstractTableModel;
+import org.apache.hadoop.hbase.client.Result;
+import org.nll.hbase.ui.core.ColumnCodecs;
+import org.nll.hbase.ui.core.PageStore;
+import org.nll.hbase.ui.core.RowPage;
+
+/**
+ * table model reading rows from a page store, rows are not copied.
+ *
+ * @author fivesmallq
+ */
+public class HbaseTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private static final String ROWKEY = "rowkey";
+    private final PageStore store;
+    /**
+     * dictionary ids of the columns after the rowkey column, in the order
+     * they showed up
+     */
+    private final List<Integer> columns = Lists.newArrayList();
+    private final BitSet shown = new BitSet();
+    private ColumnCodecs codecs = ColumnCodecs.DEFAULT;
+
+    public HbaseTableModel(PageStore store) {
+        this.store = store;
+    }
+
+    /**
+     * decode values with other codecs, the pages decode again as rows are
+     * shown
+     *
+     * @param codecs
+     */
+    public void setCodecs(ColumnCodecs codecs) {
+        this.codecs = codecs;
+        fireTableDataChanged();
+    }
+
+    public ColumnCodecs getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * @param column model column index
+     * @return family:qualifier, null for the rowkey column
+     */
+    public String getColumnKey(int column) {
+        return column == 0 ? null : store.getDictionary().getName(columns.get(column - 1));
+    }
+
+    public PageStore getStore() {
+        return store;
+    }
+
+    @Override
+    public int getRowCount() {
+        return store.getRowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size() + 1;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return column == 0 ? ROWKEY : store.getDictionary().getName(columns.get(column - 1));
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        RowPage page = store.getPage(store.pageOf(rowIndex));
+        int row = store.offsetOf(rowIndex);
+        if (page == null || row >= page.getRowCount()) {
+            return null;
+        }
+        if (columnIndex == 0) {
+            return page.getRowkey(row);
+        }
+        return page.getValue(row, columns.get(columnIndex - 1), codecs);
+    }
+
+    /**
+     * add rows of a page being read
+     *
+     * @param page
+     * @param rows
+     */
+    public void addRows(int page, List<Result> rows) {
+        int oldCount = store.getRowCount();
+        int firstRow = page * store.getPageSize() + store.getLoadedRows(page);
+        store.append(page, rows);
+        int newCount = store.getRowCount();
+        boolean newColumn = false;
+        RowPage rowPage = store.getPage(page);
+        if (rowPage != null) {
+            BitSet pageColumns = rowPage.getColumns();
+            for (int id = pageColumns.nextSetBit(0); id >= 0; id = pageColumns.nextSetBit(id + 1)) {
+                if (!shown.get(id)) {
+                    shown.set(id);
+                    columns.add(id);
+                    newColumn = true;
+                }
+            }
+        }
+        if (newColumn) {
+            fireTableStructureChanged();
+            return;
+        }
+        if (newCount > oldCount) {
+            fireTableRowsInserted(oldCount, newCount - 1);
+        }
+        int lastUpdated = Math.min(firstRow + rows.size(), oldCount) - 1;
+        if (lastUpdated >= firstRow) {
+            fireTableRowsUpdated(firstRow, lastUpdated);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.component;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import javax.swing.SwingWorker;
+import org.apache.hadoop.hbase.client.Result;
+import org.nll.hbase.ui.core.ResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs a scan off the event dispatch thread and publishes raw results to the
+ * EDT in chunks as they arrive.
+ *
+ * at most {@link #MAX_PENDING_ROWS} rows wait for the EDT, after that the
+ * scanner blocks until the table catches up. cancel(true) interrupts the scan
+ * thread, the handler stops and the ResultScanner is closed.
+ *
+ * @author fivesmallq
+ */
+public abstract class ScanWorker extends SwingWorker<Long, Result> {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(ScanWorker.class);
+    private static final int MAX_PENDING_ROWS = 5000;
+    private final Semaphore pending = new Semaphore(MAX_PENDING_ROWS);
+    private final long startTime = System.currentTimeMillis();
+    private long rows;
+
+    /**
+     * run the scan, hand every row to the handler
+     *
+     * @param handler
+     * @throws Exception
+     */
+    protected abstract void scan(ResultHandler handler) throws Exception;
+
+    /**
+     * called on the EDT with a chunk of rows
+     *
+     * @param chunk
+     */
+    protected abstract void onRows(List<Result> chunk);
+
+    /**
+     * called on the EDT after each chunk
+     *
+     * @param rows rows received so far
+     * @param rowsPerSecond
+     */
+    protected abstract void onProgress(long rows, long rowsPerSecond);
+
+    /**
+     * called on the EDT when the scan ended
+     *
+     * @param rows rows received
+     * @param millis elapsed time
+     * @param cancelled
+     * @param error null if no error
+     */
+    protected abstract void onFinished(long rows, long millis, boolean cancelled,
+            Throwable error);
+
+    @Override
+    protected Long doInBackground() throws Exception {
+        final long[] count = new long[1];
+        scan(new ResultHandler() {
+            @Override
+            public boolean handle(Result result) throws Exception {
+                if (isCancelled()) {
+                    return false;
+                }
+                pending.acquire();
+                publish(result);
+                count[0]++;
+                return !isCancelled();
+            }
+        });
+        return count[0];
+    }
+
+    @Override
+    protected void process(List<Result> chunk) {
+        pending.release(chunk.size());
+        if (isCancelled()) {
+            return;
+        }
+        rows += chunk.size();
+        onRows(chunk);
+        long millis = Math.max(System.currentTimeMillis() - startTime, 1);
+        onProgress(rows, rows * 1000 / millis);
+    }
+
+    @Override
+    protected void done() {
+        long millis = System.currentTimeMillis() - startTime;
+        Throwable error = null;
+        boolean cancelled = isCancelled();
+        if (!cancelled) {
+            try {
+                get();
+            } catch (CancellationException e) {
+                cancelled = true;
+            } catch (InterruptedException e) {
+                cancelled = true;
+            } catch (ExecutionException e) {
+                error = e.getCause();
+                logger.error("scan error!", error);
+            }
+        }
+        onFinished(rows, millis, cancelled, error);
+    }
+}
@@ -15,21 +15,91 @@
  */
 package org.nll.hbase.ui.component;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.GridLayout;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenu;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingWorker;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import org.apache.hadoop.hbase.client.Result;
+import org.nll.hbase.ui.core.AdminListener;
+import org.nll.hbase.ui.core.CodecRegistry;
+import org.nll.hbase.ui.core.ColumnCodecs;
+import org.nll.hbase.ui.core.ColumnDictionary;
+import org.nll.hbase.ui.core.ConnectionManager;
+import org.nll.hbase.ui.core.CopyListener;
+import org.nll.hbase.ui.core.ExportFormat;
+import org.nll.hbase.ui.core.ExportListener;
+import org.nll.hbase.ui.core.ImportListener;
+import org.nll.hbase.ui.core.CountListener;
+import org.nll.hbase.ui.core.DeleteListener;
 import org.nll.hbase.ui.core.HbaseContext;
-import org.nll.hbase.ui.model.FamilyData;
-import org.nll.hbase.ui.model.HbaseData;
+import org.nll.hbase.ui.core.PageCursor;
+import org.nll.hbase.ui.core.PageStore;
+import org.nll.hbase.ui.core.SpillStore;
+import org.nll.hbase.ui.core.ResultCache;
+import org.nll.hbase.ui.core.ResultHandler;
+import org.nll.hbase.ui.core.RowPage;
+import org.nll.hbase.ui.core.ScanRange;
+import org.nll.hbase.ui.core.ScanTuner;
+import org.nll.hbase.ui.core.TableCopier;
+import org.nll.hbase.ui.model.AdminOperation;
+import org.nll.hbase.ui.model.AdminTask;
+import org.nll.hbase.ui.model.CopyOptions;
+import org.nll.hbase.ui.model.CopyStats;
+import org.nll.hbase.ui.model.DeleteStats;
+import org.nll.hbase.ui.model.ExportStats;
+import org.nll.hbase.ui.model.FilterOperation;
+import org.nll.hbase.ui.model.HbaseFilter;
 import org.nll.hbase.ui.model.HbaseQuery;
 import org.nll.hbase.ui.model.HbaseSchema;
+import org.nll.hbase.ui.model.HbaseSetting;
+import org.nll.hbase.ui.model.ImportStats;
+import org.nll.hbase.ui.model.TableEstimate;
+import org.nll.hbase.ui.service.HbaseDataService;
 import org.nll.hbase.ui.util.HbaseUtil;
+import org.nll.hbase.ui.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,7 +111,38 @@ public class StartFrame extends javax.swing.JFrame {
 
     private final static Logger logger = LoggerFactory
             .getLogger(HbaseUtil.class);
-    private String settingName;
+    private static final int DEFAULT_PREFETCH_PAGES = 1;
+    /**
+     * tables whose families are read at once in the background
+     */
+    private static final int FAMILY_PREFETCH_TABLES = 100;
+    private static final long FAMILY_PREFETCH_PAUSE = 200;
+    private volatile String settingName;
+    private ScanWorker worker;
+    private SwingWorker<Long, long[]> countWorker;
+    /**
+     * export or another long job, one at a time
+     */
+    private SwingWorker<?, ?> jobWorker;
+    private HbaseDataService dataService = new HbaseDataService();
+    /**
+     * size estimates by table name, only touched on the EDT
+     */
+    private final Map<String, TableEstimate> tableEstimates = Maps.newHashMap();
+    private HbaseTableModel tableModel;
+    /**
+     * page to scroll to once it is read, -1 for none
+     */
+    private int scrollToPage = -1;
+    /**
+     * false after a cancel or an error, until the user moves again
+     */
+    private boolean autoLoad;
+    /**
+     * pages read ahead of the visible rows
+     */
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private final DefaultListModel filterModel = new DefaultListModel();
 
     /**
      * Creates new form StartFrame
@@ -51,55 +152,1229 @@ public class StartFrame extends javax.swing.JFrame {
         this.setSize(800, 600);
         setLocationRelativeTo(null);
         spinner_row.setValue(10);
+        button_pre.setEnabled(false);
+        button_next.setEnabled(false);
+        button_cancel.setEnabled(false);
+        jLabel4.setText("Ready");
+        list_filters.setModel(filterModel);
+        combo_table.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList list, Object value,
+                    int index, boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected,
+                        cellHasFocus);
+                TableEstimate estimate = value == null ? null
+                        : tableEstimates.get(value.toString());
+                if (estimate != null) {
+                    setText(value + "  (" + estimate.toSummary() + ")");
+                }
+                return this;
+            }
+        });
+        jScrollPane1.getViewport().addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                checkViewport();
+            }
+        });
+        table_data.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                showCodecMenu(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                showCodecMenu(e);
+            }
+        });
     }
 
     void loadSchema(String name) {
+        loadSchema(name, false);
+    }
+
+    /**
+     * show the tables of a connection
+     *
+     * @param name connection name
+     * @param reconcile true if the tables came from the local store, they
+     * are read again from the cluster in the background
+     */
+    void loadSchema(String name, boolean reconcile) {
+        // the shown connection stays open, the one shown before may be
+        // closed once idle. it is opened by the first background read
+        try {
+            ConnectionManager.getInstance().retain(name);
+        } catch (IOException e) {
+            logger.error("open connection error! " + name, e);
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Connection",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (settingName != null) {
+            ConnectionManager.getInstance().release(settingName);
+        }
         this.settingName = name;
-        List<HbaseSchema> schemas = HbaseContext.getSchemas(name);
+        tableEstimates.clear();
+        showTables();
+        loadTableSizes();
+        prefetchFamilies();
+        if (reconcile) {
+            reconcileSchema();
+        }
+    }
+
+    /**
+     * fill the table list, the selected table is kept if it still exists
+     */
+    private void showTables() {
+        Object selected = combo_table.getSelectedItem();
         combo_table.removeAllItems();
-        for (HbaseSchema hbaseSchema : schemas) {
+        for (HbaseSchema hbaseSchema : HbaseContext.getSchemas(settingName)) {
             combo_table.addItem(hbaseSchema.getTableName());
         }
+        if (selected != null) {
+            combo_table.setSelectedItem(selected);
+        }
+    }
+
+    /**
+     * read the table names from the cluster and show them if they changed
+     * since they were cached
+     */
+    private void reconcileSchema() {
+        final String name = settingName;
+        jLabel4.setText("Checking tables...");
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                return dataService.connect(HbaseContext.getSetting(name));
+            }
+
+            @Override
+            protected void done() {
+                if (!name.equals(settingName)) {
+                    return;
+                }
+                try {
+                    if (get()) {
+                        showTables();
+                    }
+                    jLabel4.setText("Ready");
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    logger.error("read tables error! " + name, cause);
+                    jLabel4.setText("Connect error: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * read store sizes of all tables in the background, they show up next to
+     * the table names
+     */
+    private void loadTableSizes() {
+        final String name = settingName;
+        new SwingWorker<Map<String, TableEstimate>, Void>() {
+            @Override
+            protected Map<String, TableEstimate> doInBackground() throws Exception {
+                return dataService.getTableSizes(name);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Map<String, TableEstimate> sizes = get();
+                    if (name.equals(settingName)) {
+                        for (Map.Entry<String, TableEstimate> entry : sizes.entrySet()) {
+                            // keep the sampled estimates
+                            if (!tableEstimates.containsKey(entry.getKey())
+                                    || tableEstimates.get(entry.getKey()).getEstimatedRows() < 0) {
+                                tableEstimates.put(entry.getKey(), entry.getValue());
+                            }
+                        }
+                        combo_table.repaint();
+                    }
+                } catch (Exception e) {
+                    logger.warn("read table sizes error!", e);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * estimate rows and family sizes of a table in the background
+     *
+     * @param tableName
+     */
+    private void estimateTable(final String tableName) {
+        final String name = settingName;
+        new SwingWorker<TableEstimate, Void>() {
+            @Override
+            protected TableEstimate doInBackground() throws Exception {
+                return dataService.estimate(name, tableName);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    TableEstimate estimate = get();
+                    if (!name.equals(settingName)) {
+                        return;
+                    }
+                    tableEstimates.put(tableName, estimate);
+                    combo_table.repaint();
+                    StringBuilder tip = new StringBuilder(String.format(
+                            "%d regions, %d store files, ~%d bytes/row",
+                            estimate.getRegions(), estimate.getStorefiles(),
+                            estimate.getBytesPerRow()));
+                    for (Map.Entry<String, Long> entry : estimate.getFamilySizeMB().entrySet()) {
+                        tip.append(String.format(", %s: ~%d MB", entry.getKey(), entry.getValue()));
+                    }
+                    combo_table.setToolTipText(tip.toString());
+                } catch (Exception e) {
+                    logger.warn("estimate table error! " + tableName, e);
+                }
+            }
+        }.execute();
     }
 
     public void loadFamily(String tableName) {
-        List<HbaseSchema> schemas = HbaseContext.getSchemas(settingName);
-        if (schemas != null) {
-            combo_family.removeAllItems();
-            for (HbaseSchema hbaseSchema : schemas) {
-                if (hbaseSchema.getTableName().equals(tableName)) {
-                    for (String family : hbaseSchema.getFamilies()) {
-                        combo_family.addItem(family);
+        combo_field.removeAllItems();
+        combo_field.addItem(HbaseFilter.ANY_VALUE);
+        combo_field.addItem(HbaseFilter.QUALIFIER);
+        ColumnDictionary dictionary = HbaseContext.getColumnDictionary(settingName, tableName);
+        for (int id = 0; id < dictionary.size(); id++) {
+            combo_field.addItem(dictionary.getName(id));
+        }
+        combo_family.removeAllItems();
+        HbaseSchema schema = HbaseContext.getSchema(settingName, tableName);
+        if (schema != null) {
+            // cached families until the current ones are read
+            synchronized (schema) {
+                for (String family : schema.getFamilies()) {
+                    combo_family.addItem(family);
+                }
+            }
+        }
+        final String name = settingName;
+        final String table = tableName;
+        new SwingWorker<List<String>, Void>() {
+            @Override
+            protected List<String> doInBackground() throws Exception {
+                return dataService.getFamilies(name, table);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<String> families = get();
+                    Object selected = combo_table.getSelectedItem();
+                    if (name.equals(settingName) && selected != null
+                            && selected.toString().equals(table)) {
+                        Object family = combo_family.getSelectedItem();
+                        combo_family.removeAllItems();
+                        for (String item : families) {
+                            combo_family.addItem(item);
+                        }
+                        if (family != null) {
+                            combo_family.setSelectedItem(family);
+                        }
                     }
+                } catch (Exception e) {
+                    logger.warn("read families error! " + table, e);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * read the families of the other tables in the background, a batch at a
+     * time with a pause in between, until all are read or another
+     * connection is shown
+     */
+    private void prefetchFamilies() {
+        final String name = settingName;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                int loaded = 0;
+                int batch;
+                while (name.equals(settingName)
+                        && (batch = dataService.prefetchFamilies(name, FAMILY_PREFETCH_TABLES)) > 0) {
+                    loaded += batch;
+                    Thread.sleep(FAMILY_PREFETCH_PAUSE);
+                }
+                if (loaded > 0 && name.equals(settingName)) {
+                    // keep the families for the next start
+                    dataService.saveSchemas(name);
                 }
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (Exception e) {
+                    logger.warn("prefetch families error!", e);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * build query from the table and filter fields
+     *
+     * @return
+     */
+    private HbaseQuery buildQuery() {
+        String tableName = combo_table.getSelectedItem().toString();
+        Object family = combo_family.getSelectedItem();
+        String row = spinner_row.getValue().toString();
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName(tableName);
+        query.setPageSize(Math.max(Integer.parseInt(row), 1));
+        // all families while the families of the table are read
+        query.setFamilies(family == null ? Lists.<String>newArrayList()
+                : Lists.newArrayList(family.toString()));
+        query.setPrefixRowkey(text_rowkey_prefix.getText());
+        query.setStartRowkey(text_start_row.getText());
+        query.setStopRowkey(text_end_row.getText());
+        List<HbaseFilter> filters = Lists.newArrayList();
+        for (int i = 0; i < filterModel.size(); i++) {
+            filters.add((HbaseFilter) filterModel.get(i));
+        }
+        if (filters.isEmpty() && StringUtils.isNotNullOrEmpty(jTextField4.getText())) {
+            // a condition typed in but not added yet
+            HbaseFilter filter = currentFilter();
+            if (filter != null) {
+                filters.add(filter);
             }
         }
+        query.setFilters(filters);
+        query.setMatchAll(combo_match.getSelectedIndex() == 0);
+        List<String> rowkeys = Lists.newArrayList();
+        for (String line : Splitter.on('\n').trimResults().omitEmptyStrings()
+                .split(text_rowkeys.getText())) {
+            rowkeys.add(line);
+        }
+        query.setRowkeys(rowkeys);
+        HbaseSetting setting = HbaseContext.getSetting(settingName);
+        if (setting != null) {
+            query.setCaching(setting.getCaching());
+            query.setBatch(setting.getBatch());
+        }
+        return query;
     }
 
-    private List<HbaseData> scan(HbaseQuery query) throws Exception {
-        List<HbaseData> list = HbaseUtil.scan(HbaseContext.getConn(settingName), query);
-        logger.info("{}", list);
-        logger.info("scan result size:{} query:{}", list.size(), query);
-        return list;
+    /**
+     * filter condition from the field, operation and value inputs
+     *
+     * @return null if the field is not valid
+     */
+    private HbaseFilter currentFilter() {
+        Object field = combo_field.getSelectedItem();
+        String name = field == null ? "" : field.toString().trim();
+        if (!HbaseFilter.ANY_VALUE.equals(name) && !HbaseFilter.QUALIFIER.equals(name)
+                && name.indexOf(':') <= 0) {
+            JOptionPane.showMessageDialog(this, "Field must be family:qualifier, "
+                    + HbaseFilter.ANY_VALUE + " or " + HbaseFilter.QUALIFIER,
+                    "Filter", JOptionPane.WARNING_MESSAGE);
+            return null;
+        }
+        FilterOperation operation = FilterOperation.values()[jComboBox1.getSelectedIndex()];
+        return new HbaseFilter(name, operation, jTextField4.getText());
     }
 
-    private void fillTable(List<HbaseData> datas) {
-        Set<String> names = Sets.newLinkedHashSet();
-        names.add("rowkey");
-        Vector<Vector<String>> tableDatas = new Vector<Vector<String>>();
-        for (HbaseData data : datas) {
-            Vector<String> tableData = new Vector<String>();
-            Map<String, FamilyData> map = data.getDatas();
-            tableData.add(data.getRowkey());
-            for (Map.Entry<String, FamilyData> one : map.entrySet()) {
-                tableData.add(one.getValue().getValue());
-                names.add(one.getValue().getFamilyName() + ":" + one.getValue().getKey());
+    /**
+     * run the query from the fields, pages of the previous query and their
+     * reads in flight are dropped
+     *
+     * @param refresh true to read from the cluster instead of the result
+     * cache, the cache gets the fresh pages
+     */
+    private void startQuery(boolean refresh) {
+        if (HbaseContext.getConn(settingName) == null) {
+            // tables shown from the local store, the connection is opening
+            jLabel4.setText("Connecting, try again in a moment...");
+            return;
+        }
+        cancelLoad();
+        HbaseQuery query = buildQuery();
+        if (tableModel != null) {
+            tableModel.getStore().close();
+        }
+        int maxCachedRows = PageStore.MAX_CACHED_ROWS;
+        prefetchPages = DEFAULT_PREFETCH_PAGES;
+        boolean spillPages = true;
+        HbaseSetting setting = HbaseContext.getSetting(settingName);
+        if (setting != null) {
+            maxCachedRows = setting.getMaxCachedRows();
+            prefetchPages = setting.getPrefetchPages();
+            spillPages = setting.isSpillPages();
+        }
+        PageCursor cursor = new PageCursor(HbaseContext.getConn(settingName), query,
+                HbaseContext.getResultCache(settingName), refresh);
+        tableModel = new HbaseTableModel(new PageStore(cursor,
+                HbaseContext.getColumnDictionary(settingName, query.getTableName()),
+                maxCachedRows, spillPages ? new SpillStore() : null));
+        tableModel.setCodecs(HbaseContext.getCodecs(settingName, query.getTableName()));
+        table_data.setModel(tableModel);
+        scrollToPage = -1;
+        autoLoad = true;
+        loadPage(0, false);
+    }
+
+    /**
+     * read a page in the background, rows show up in the table as they arrive
+     *
+     * @param page
+     * @param prefetch true if the page is read ahead of the visible rows
+     */
+    private void loadPage(final int page, final boolean prefetch) {
+        final PageStore pageStore = tableModel.getStore();
+        pageStore.beginPage(page);
+        button_cancel.setEnabled(true);
+        progress_status.setIndeterminate(!prefetch);
+        jLabel4.setText(prefetch ? String.format("Prefetching page %d...", page + 1)
+                : "Loading...");
+        worker = new ScanWorker() {
+
+            @Override
+            protected void scan(ResultHandler handler) throws Exception {
+                pageStore.getCursor().read(page, handler);
+            }
+
+            @Override
+            protected void onRows(List<Result> chunk) {
+                if (tableModel.getStore() == pageStore) {
+                    tableModel.addRows(page, chunk);
+                }
+            }
+
+            @Override
+            protected void onProgress(long rows, long rowsPerSecond) {
+                jLabel4.setText(String.format("%s... %d rows, %d rows/s",
+                        prefetch ? "Prefetching" : "Loading", rows, rowsPerSecond));
+            }
+
+            @Override
+            protected void onFinished(long rows, long millis, boolean cancelled,
+                    Throwable error) {
+                pageStore.endPage(page, !cancelled && error == null);
+                if (worker != this) {
+                    return;
+                }
+                worker = null;
+                progress_status.setIndeterminate(false);
+                updateCancel();
+                if (error != null) {
+                    autoLoad = false;
+                    jLabel4.setText("Scan error: " + error.getMessage());
+                } else if (cancelled) {
+                    jLabel4.setText(String.format("Cancelled, %d rows", rows));
+                } else {
+                    jLabel4.setText(String.format("Page %d%s, %d rows in %d ms, %d rows total",
+                            page + 1, prefetch ? " prefetched" : "", rows, millis,
+                            pageStore.getRowCount()));
+                    jLabel4.setToolTipText(ScanTuner.forTable(HbaseContext.getConn(settingName),
+                            pageStore.getCursor().getTableName()) + ", cache: "
+                            + HbaseContext.getResultCache(settingName)
+                            + (pageStore.getSpill() == null ? "" : ", spill: " + pageStore.getSpill()));
+                    if (scrollToPage >= 0) {
+                        showPage(scrollToPage);
+                    }
+                    checkViewport();
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * count the rows of the query range in the background
+     */
+    private void countRows() {
+        final HbaseQuery query = buildQuery();
+        button_count.setEnabled(false);
+        button_cancel.setEnabled(true);
+        progress_status.setIndeterminate(true);
+        jLabel4.setText("Counting " + query.getTableName() + "...");
+        countWorker = new SwingWorker<Long, long[]>() {
+            private final long started = System.currentTimeMillis();
+            private final AtomicLong rows = new AtomicLong();
+
+            @Override
+            protected Long doInBackground() throws Exception {
+                return dataService.count(settingName, query, new CountListener() {
+                    @Override
+                    public void regionCounted(ScanRange range, long regionRows,
+                            int counted, int total) {
+                        publish(new long[]{counted, total, rows.addAndGet(regionRows)});
+                    }
+                });
+            }
+
+            @Override
+            protected void process(List<long[]> chunks) {
+                if (countWorker != this) {
+                    return;
+                }
+                long[] last = chunks.get(chunks.size() - 1);
+                progress_status.setIndeterminate(false);
+                progress_status.setMaximum((int) last[1]);
+                progress_status.setValue((int) last[0]);
+                jLabel4.setText(String.format("Counting... %d/%d regions, %d rows",
+                        last[0], last[1], last[2]));
+            }
+
+            @Override
+            protected void done() {
+                if (countWorker != this) {
+                    return;
+                }
+                countWorker = null;
+                button_count.setEnabled(true);
+                updateCancel();
+                progress_status.setIndeterminate(worker != null);
+                progress_status.setValue(0);
+                try {
+                    jLabel4.setText(String.format("%s: %d rows, counted in %d ms",
+                            query.getTableName(), get(),
+                            System.currentTimeMillis() - started));
+                } catch (CancellationException e) {
+                    jLabel4.setText(String.format("Count cancelled, %d rows so far",
+                            rows.get()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("count error!", e.getCause());
+                    jLabel4.setText("Count error: " + e.getCause().getMessage());
+                }
+            }
+        };
+        countWorker.execute();
+    }
+
+    private void cancelCount() {
+        if (countWorker != null) {
+            countWorker.cancel(true);
+            countWorker = null;
+        }
+        button_count.setEnabled(true);
+        progress_status.setValue(0);
+    }
+
+    private void cancelLoad() {
+        if (worker != null) {
+            worker.cancel(true);
+            worker = null;
+        }
+        progress_status.setIndeterminate(false);
+        updateCancel();
+    }
+
+    /**
+     * cancel is enabled while a page read, a count or a job runs
+     */
+    private void updateCancel() {
+        button_cancel.setEnabled(worker != null || countWorker != null || jobWorker != null);
+    }
+
+    /**
+     * export the query range to a file picked by the user, the file name
+     * gives the format
+     */
+    private void exportRows() {
+        if (settingName == null || combo_table.getSelectedItem() == null) {
+            return;
+        }
+        if (jobWorker != null) {
+            jLabel4.setText("Another job is running");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export " + combo_table.getSelectedItem());
+        chooser.setSelectedFile(new File(combo_table.getSelectedItem() + ".csv"));
+        JCheckBox parallelBox = new JCheckBox("Scan regions in parallel", true);
+        chooser.setAccessory(parallelBox);
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File chosen = chooser.getSelectedFile();
+        if (ExportFormat.of(chosen.getName()) == null) {
+            chosen = new File(chosen.getPath() + ExportFormat.CSV.getExtension());
+        }
+        final File file = chosen;
+        final boolean parallel = parallelBox.isSelected();
+        final HbaseQuery query = buildQuery();
+        final String name = settingName;
+        // rows of the shown query read to the end are written from memory
+        // and the spill file instead of scanning again
+        final Iterator<RowPage> pages = tableModel != null
+                && ResultCache.keyOf(query).equals(ResultCache.keyOf(
+                                tableModel.getStore().getCursor().getQuery()))
+                ? tableModel.getStore().readAll() : null;
+        progress_status.setIndeterminate(true);
+        jLabel4.setText("Exporting " + (pages != null ? "loaded rows of " : "")
+                + query.getTableName() + "...");
+        jobWorker = new SwingWorker<ExportStats, ExportStats>() {
+            @Override
+            protected ExportStats doInBackground() throws Exception {
+                return dataService.export(name, query, file, parallel, pages,
+                        new ExportListener() {
+                            @Override
+                            public void progress(ExportStats stats) {
+                                publish(stats);
+                            }
+                        });
             }
-            tableDatas.add(tableData);
+
+            @Override
+            protected void process(List<ExportStats> chunks) {
+                if (jobWorker == this) {
+                    jLabel4.setText("Exporting... " + chunks.get(chunks.size() - 1));
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (jobWorker != this) {
+                    return;
+                }
+                jobWorker = null;
+                updateCancel();
+                progress_status.setIndeterminate(worker != null);
+                try {
+                    ExportStats stats = get();
+                    jLabel4.setText("Exported " + stats + " to " + file.getName()
+                            + (stats.getSkippedColumns() > 0 ? ", " + stats.getSkippedColumns()
+                            + " late columns left out" : ""));
+                } catch (CancellationException e) {
+                    jLabel4.setText("Export cancelled");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("export error!", e.getCause());
+                    jLabel4.setText("Export error: " + e.getCause().getMessage());
+                }
+            }
+        };
+        updateCancel();
+        jobWorker.execute();
+    }
+
+    /**
+     * import a file picked by the user into the selected table
+     */
+    private void importRows() {
+        if (settingName == null || combo_table.getSelectedItem() == null) {
+            return;
+        }
+        if (jobWorker != null) {
+            jLabel4.setText("Another job is running");
+            return;
+        }
+        final String tableName = combo_table.getSelectedItem().toString();
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import into " + tableName);
+        JCheckBox bulkBox = new JCheckBox("Bulk load as HFiles", false);
+        chooser.setAccessory(bulkBox);
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        final File file = chooser.getSelectedFile();
+        if (ExportFormat.of(file.getName()) == null) {
+            JOptionPane.showMessageDialog(this, "Import needs a .csv, .jsonl or .json file, "
+                    + "optionally gzipped (.gz)");
+            return;
+        }
+        final String name = settingName;
+        final boolean bulk = bulkBox.isSelected();
+        if (bulk && !askBulkLoadDir(name)) {
+            return;
+        }
+        if (JOptionPane.showConfirmDialog(this, "Write the rows of " + file.getName()
+                + " to " + tableName + "?", "Import", JOptionPane.OK_CANCEL_OPTION)
+                != JOptionPane.OK_OPTION) {
+            return;
+        }
+        progress_status.setIndeterminate(true);
+        jLabel4.setText("Importing " + file.getName() + "...");
+        jobWorker = new SwingWorker<ImportStats, ImportStats>() {
+            @Override
+            protected ImportStats doInBackground() throws Exception {
+                ImportListener listener = new ImportListener() {
+                    @Override
+                    public void progress(ImportStats stats) {
+                        publish(stats);
+                    }
+                };
+                return bulk ? dataService.bulkLoad(name, tableName, file, listener)
+                        : dataService.importRows(name, tableName, file, listener);
+            }
+
+            @Override
+            protected void process(List<ImportStats> chunks) {
+                if (jobWorker == this) {
+                    ImportStats stats = chunks.get(chunks.size() - 1);
+                    jLabel4.setText("Importing" + (stats.getStage() == null ? ""
+                            : ", " + stats.getStage()) + "... " + stats);
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (jobWorker != this) {
+                    return;
+                }
+                jobWorker = null;
+                updateCancel();
+                progress_status.setIndeterminate(worker != null);
+                try {
+                    ImportStats stats = get();
+                    jLabel4.setText("Imported " + stats + " into " + tableName);
+                    if (stats.getFailedRows() > 0) {
+                        JOptionPane.showMessageDialog(StartFrame.this, stats.getFailedRows()
+                                + " rows failed, the first ones:\n"
+                                + Joiner.on('\n').join(Iterables.limit(stats.getFailures(), 20)),
+                                "Import", JOptionPane.WARNING_MESSAGE);
+                    }
+                } catch (CancellationException e) {
+                    jLabel4.setText("Import cancelled, rows written so far are kept");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("import error!", e.getCause());
+                    jLabel4.setText("Import error: " + e.getCause().getMessage());
+                }
+            }
+        };
+        updateCancel();
+        jobWorker.execute();
+    }
+
+    /**
+     * copy the query range to a table picked by the user
+     */
+    private void copyRows() {
+        if (settingName == null || combo_table.getSelectedItem() == null) {
+            return;
+        }
+        if (jobWorker != null) {
+            jLabel4.setText("Another job is running");
+            return;
         }
-        Vector<String> tableNames = new Vector<String>(names);
-        DefaultTableModel defaultTableModel = new DefaultTableModel(tableDatas, tableNames);
-        table_data.setModel(defaultTableModel);
+        final String tableName = combo_table.getSelectedItem().toString();
+        JComboBox<String> targetBox = new JComboBox<String>();
+        for (HbaseSetting setting : HbaseContext.getLocalStore().getSettings()) {
+            targetBox.addItem(setting.getName());
+        }
+        targetBox.setSelectedItem(settingName);
+        JTextField tableField = new JTextField(tableName);
+        JTextField columnsField = new JTextField();
+        JSpinner parallelSpinner = new JSpinner(new SpinnerNumberModel(
+                TableCopier.DEFAULT_PARALLELISM, 1, 64, 1));
+        JSpinner rowsSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1000));
+        JSpinner mbSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 10000, 1));
+        JCheckBox resumeBox = new JCheckBox("Resume a copy that stopped", true);
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Target connection"));
+        panel.add(targetBox);
+        panel.add(new JLabel("Target table"));
+        panel.add(tableField);
+        panel.add(new JLabel("Columns (empty for all)"));
+        panel.add(columnsField);
+        panel.add(new JLabel("Regions at a time"));
+        panel.add(parallelSpinner);
+        panel.add(new JLabel("Max rows/s (0 no limit)"));
+        panel.add(rowsSpinner);
+        panel.add(new JLabel("Max MB/s (0 no limit)"));
+        panel.add(mbSpinner);
+        panel.add(resumeBox);
+        if (JOptionPane.showConfirmDialog(this, panel, "Copy " + tableName,
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION
+                || targetBox.getSelectedItem() == null
+                || StringUtils.isBlank(tableField.getText())) {
+            return;
+        }
+        final CopyOptions options = new CopyOptions();
+        options.setTargetName(targetBox.getSelectedItem().toString());
+        options.setTargetTable(tableField.getText().trim());
+        options.setColumns(Lists.newArrayList(Splitter.on(',').trimResults().omitEmptyStrings()
+                .split(columnsField.getText())));
+        options.setParallelism((Integer) parallelSpinner.getValue());
+        options.setMaxRowsPerSecond((Integer) rowsSpinner.getValue());
+        options.setMaxMBPerSecond((Integer) mbSpinner.getValue());
+        options.setResume(resumeBox.isSelected());
+        final HbaseQuery query = buildQuery();
+        final String name = settingName;
+        progress_status.setIndeterminate(true);
+        jLabel4.setText("Copying " + tableName + " to " + options.getTargetTable() + "...");
+        jobWorker = new SwingWorker<CopyStats, CopyStats>() {
+            @Override
+            protected CopyStats doInBackground() throws Exception {
+                return dataService.copy(name, query, options, new CopyListener() {
+                    @Override
+                    public void progress(CopyStats stats) {
+                        publish(stats);
+                    }
+                });
+            }
+
+            @Override
+            protected void process(List<CopyStats> chunks) {
+                if (jobWorker == this) {
+                    jLabel4.setText("Copying... " + chunks.get(chunks.size() - 1));
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (jobWorker != this) {
+                    return;
+                }
+                jobWorker = null;
+                updateCancel();
+                progress_status.setIndeterminate(worker != null);
+                try {
+                    jLabel4.setText("Copied " + get() + " to " + options.getTargetTable());
+                } catch (CancellationException e) {
+                    jLabel4.setText("Copy cancelled, it can be resumed");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("copy error!", e.getCause());
+                    jLabel4.setText("Copy error, it can be resumed: " + e.getCause().getMessage());
+                }
+            }
+        };
+        updateCancel();
+        jobWorker.execute();
+    }
+
+    /**
+     * count the rows of the query range, then delete them once the user
+     * agreed. with a family selected the user picks between that family and
+     * the whole rows.
+     */
+    private void deleteRows() {
+        if (settingName == null || combo_table.getSelectedItem() == null) {
+            return;
+        }
+        if (jobWorker != null) {
+            jLabel4.setText("Another job is running");
+            return;
+        }
+        HbaseQuery query = buildQuery();
+        if (!query.getFamilies().isEmpty()) {
+            JCheckBox wholeBox = new JCheckBox("Delete whole rows, all families", false);
+            JPanel panel = new JPanel(new GridLayout(0, 1, 5, 5));
+            panel.add(new JLabel("Only the cells of " + Joiner.on(',').join(query.getFamilies())
+                    + " are deleted unless whole rows are picked."));
+            panel.add(wholeBox);
+            if (JOptionPane.showConfirmDialog(this, panel, "Delete Rows",
+                    JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+                return;
+            }
+            if (wholeBox.isSelected()) {
+                query.getFamilies().clear();
+            }
+        }
+        startDelete(query, true, 0);
+    }
+
+    private void startDelete(final HbaseQuery query, final boolean dryRun,
+            final double maxRowsPerSecond) {
+        final String name = settingName;
+        progress_status.setIndeterminate(true);
+        jLabel4.setText((dryRun ? "Counting rows to delete in " : "Deleting rows of ")
+                + query.getTableName() + "...");
+        jobWorker = new SwingWorker<DeleteStats, DeleteStats>() {
+            @Override
+            protected DeleteStats doInBackground() throws Exception {
+                return dataService.bulkDelete(name, query, dryRun, maxRowsPerSecond,
+                        new DeleteListener() {
+                            @Override
+                            public void progress(DeleteStats stats) {
+                                publish(stats);
+                            }
+                        });
+            }
+
+            @Override
+            protected void process(List<DeleteStats> chunks) {
+                if (jobWorker == this) {
+                    jLabel4.setText((dryRun ? "Counting... " : "Deleting... ")
+                            + chunks.get(chunks.size() - 1));
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (jobWorker != this) {
+                    return;
+                }
+                jobWorker = null;
+                updateCancel();
+                progress_status.setIndeterminate(worker != null);
+                try {
+                    DeleteStats stats = get();
+                    jLabel4.setText(stats.toString());
+                    if (dryRun && stats.getRows() > 0) {
+                        confirmDelete(query, stats.getRows());
+                    }
+                } catch (CancellationException e) {
+                    jLabel4.setText(dryRun ? "Count cancelled"
+                            : "Delete cancelled, rows deleted so far stay deleted");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("delete error!", e.getCause());
+                    jLabel4.setText("Delete error: " + e.getCause().getMessage());
+                }
+            }
+        };
+        updateCancel();
+        jobWorker.execute();
+    }
+
+    private void confirmDelete(HbaseQuery query, long rows) {
+        JSpinner rateSpinner = new JSpinner(new SpinnerNumberModel(10000, 0, Integer.MAX_VALUE,
+                1000));
+        JPanel panel = new JPanel(new GridLayout(0, 1, 5, 5));
+        boolean wholeRows = query.getFamilies().isEmpty();
+        panel.add(new JLabel("Delete " + (wholeRows ? "" : Joiner.on(',')
+                .join(query.getFamilies()) + " of ") + rows + " rows of "
+                + query.getTableName() + "? This can not be undone."));
+        panel.add(new JLabel("Max rows/s (0 no limit)"));
+        panel.add(rateSpinner);
+        if (JOptionPane.showConfirmDialog(this, panel, "Delete Rows",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE)
+                == JOptionPane.OK_OPTION) {
+            startDelete(query, false, (Integer) rateSpinner.getValue());
+        }
+    }
+
+    /**
+     * codec choice for the column under a right click on the header
+     */
+    private void showCodecMenu(MouseEvent e) {
+        if (!e.isPopupTrigger() || tableModel == null || settingName == null) {
+            return;
+        }
+        int view = table_data.getTableHeader().columnAtPoint(e.getPoint());
+        final String column = view < 0 ? null
+                : tableModel.getColumnKey(table_data.convertColumnIndexToModel(view));
+        if (column == null) {
+            return;
+        }
+        final String tableName = tableModel.getStore().getCursor().getTableName();
+        final String family = column.substring(0, column.indexOf(':'));
+        String current = tableModel.getCodecs().getCodec(column).getName();
+        JPopupMenu menu = new JPopupMenu();
+        JMenu familyMenu = new JMenu("Decode family " + family + " as");
+        for (final String codec : CodecRegistry.getNames()) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(codec, codec.equals(current));
+            item.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    setCodec(tableName, column, codec);
+                }
+            });
+            menu.add(item);
+            JMenuItem familyItem = new JMenuItem(codec);
+            familyItem.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    // the family rule only shows for columns without their own
+                    setCodec(tableName, column, null);
+                    setCodec(tableName, family, codec);
+                }
+            });
+            familyMenu.add(familyItem);
+        }
+        menu.addSeparator();
+        menu.add(familyMenu);
+        JMenuItem reset = new JMenuItem("Decode as family");
+        reset.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setCodec(tableName, column, null);
+            }
+        });
+        menu.add(reset);
+        menu.show(e.getComponent(), e.getX(), e.getY());
+    }
+
+    /**
+     * keep the codec rule and show the values again with it
+     *
+     * @param column family:qualifier or family
+     * @param codec null to remove the rule
+     */
+    private void setCodec(String tableName, String column, String codec) {
+        ColumnCodecs codecs = HbaseContext.setCodec(settingName, tableName, column, codec);
+        if (tableModel != null
+                && tableName.equals(tableModel.getStore().getCursor().getTableName())) {
+            tableModel.setCodecs(codecs);
+        }
+    }
+
+    /**
+     * run an admin operation on the tables picked by the user, all tables at
+     * once
+     */
+    private void adminTables() {
+        if (settingName == null || combo_table.getItemCount() == 0) {
+            return;
+        }
+        if (jobWorker != null) {
+            jLabel4.setText("Another job is running");
+            return;
+        }
+        JComboBox<AdminOperation> operationBox = new JComboBox<AdminOperation>(
+                AdminOperation.values());
+        DefaultListModel<String> tableModel = new DefaultListModel<String>();
+        for (int i = 0; i < combo_table.getItemCount(); i++) {
+            tableModel.addElement(combo_table.getItemAt(i).toString());
+        }
+        JList<String> tableList = new JList<String>(tableModel);
+        tableList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        if (combo_table.getSelectedItem() != null) {
+            tableList.setSelectedValue(combo_table.getSelectedItem(), true);
+        }
+        JScrollPane tableScroll = new JScrollPane(tableList);
+        tableScroll.setPreferredSize(new Dimension(300, 200));
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(operationBox, BorderLayout.PAGE_START);
+        panel.add(tableScroll, BorderLayout.CENTER);
+        if (JOptionPane.showConfirmDialog(this, panel, "Table Admin",
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        final AdminOperation operation = (AdminOperation) operationBox.getSelectedItem();
+        final List<String> tables = Lists.newArrayList();
+        for (int index : tableList.getSelectedIndices()) {
+            tables.add(tableModel.get(index));
+        }
+        if (tables.isEmpty()) {
+            return;
+        }
+        if (operation.isDangerous() && JOptionPane.showConfirmDialog(this, operation + " "
+                + Joiner.on(", ").join(Iterables.limit(tables, 10))
+                + (tables.size() > 10 ? " and " + (tables.size() - 10) + " more" : "")
+                + "?", "Table Admin", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.WARNING_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        final String name = settingName;
+        progress_status.setIndeterminate(true);
+        jLabel4.setText(operation + " " + tables.size() + " tables...");
+        jobWorker = new SwingWorker<List<AdminTask>, List<AdminTask>>() {
+            @Override
+            protected List<AdminTask> doInBackground() throws Exception {
+                return dataService.admin(name, operation, tables, new AdminListener() {
+                    @Override
+                    public void progress(List<AdminTask> tasks) {
+                        publish(tasks);
+                    }
+                });
+            }
+
+            @Override
+            protected void process(List<List<AdminTask>> chunks) {
+                if (jobWorker == this) {
+                    jLabel4.setText(adminSummary(chunks.get(chunks.size() - 1)));
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (operation == AdminOperation.DELETE && name.equals(settingName)) {
+                    showTables();
+                }
+                if (jobWorker != this) {
+                    return;
+                }
+                jobWorker = null;
+                updateCancel();
+                progress_status.setIndeterminate(worker != null);
+                try {
+                    List<AdminTask> tasks = get();
+                    jLabel4.setText(adminSummary(tasks));
+                    List<String> failed = Lists.newArrayList();
+                    for (AdminTask task : tasks) {
+                        if (task.getState() == AdminTask.State.FAILED) {
+                            failed.add(task.toString());
+                        }
+                    }
+                    if (!failed.isEmpty()) {
+                        JOptionPane.showMessageDialog(StartFrame.this,
+                                Joiner.on('\n').join(Iterables.limit(failed, 20)),
+                                operation + " failed", JOptionPane.ERROR_MESSAGE);
+                    }
+                } catch (CancellationException e) {
+                    jLabel4.setText(operation + " cancelled, the cluster finishes what it started");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("admin error!", e.getCause());
+                    jLabel4.setText(operation + " error: " + e.getCause().getMessage());
+                }
+            }
+        };
+        updateCancel();
+        jobWorker.execute();
+    }
+
+    /**
+     * tables done and the state of the ones running
+     */
+    private static String adminSummary(List<AdminTask> tasks) {
+        int done = 0;
+        int failed = 0;
+        List<AdminTask> running = Lists.newArrayList();
+        for (AdminTask task : tasks) {
+            if (task.getState() == AdminTask.State.DONE) {
+                done++;
+            } else if (task.getState() == AdminTask.State.FAILED) {
+                failed++;
+            } else if (task.getState() == AdminTask.State.RUNNING) {
+                running.add(task);
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(done).append(" of ").append(tasks.size()).append(" tables done");
+        if (failed > 0) {
+            text.append(", ").append(failed).append(" failed");
+        }
+        if (tasks.size() == 1) {
+            text.append(" - ").append(tasks.get(0));
+        } else if (!running.isEmpty()) {
+            text.append(" - ").append(Joiner.on("; ").join(running));
+        }
+        return text.toString();
+    }
+
+    /**
+     * ask for the directory a bulk load writes to and keep it in the setting
+     *
+     * @return false if the user cancelled
+     */
+    private boolean askBulkLoadDir(String name) {
+        HbaseSetting setting = HbaseContext.getSetting(name);
+        if (setting == null) {
+            return false;
+        }
+        Object dir = JOptionPane.showInputDialog(this, "Directory for the HFiles, "
+                + "the region servers must reach it (e.g. hdfs://namenode:8020/tmp)",
+                "Bulk load", JOptionPane.QUESTION_MESSAGE, null, null, setting.getBulkLoadDir());
+        if (dir == null || StringUtils.isBlank(dir.toString())) {
+            return false;
+        }
+        if (!dir.toString().trim().equals(setting.getBulkLoadDir())) {
+            setting.setBulkLoadDir(dir.toString().trim());
+            HbaseContext.saveSetting(setting, true);
+        }
+        return true;
+    }
+
+    private void cancelJob() {
+        if (jobWorker != null) {
+            jobWorker.cancel(true);
+            jobWorker = null;
+        }
+    }
+
+    /**
+     * drop pages far from the visible rows, then read the first visible page
+     * that is missing, or the next page when the last row is visible
+     */
+    private void checkViewport() {
+        if (tableModel == null) {
+            return;
+        }
+        PageStore pageStore = tableModel.getStore();
+        int firstPage = currentPage();
+        int lastRow = table_data.rowAtPoint(new Point(0,
+                jScrollPane1.getViewport().getViewRect().y
+                + jScrollPane1.getViewport().getExtentSize().height - 1));
+        if (lastRow < 0) {
+            lastRow = pageStore.getRowCount() - 1;
+        }
+        int lastPage = Math.max(pageStore.pageOf(Math.max(lastRow, 0)), firstPage);
+        // never read ahead more than the store keeps, or prefetched pages
+        // would push each other out
+        int depth = Math.max(0, Math.min(prefetchPages,
+                pageStore.getMaxPages() - (lastPage - firstPage + 1) - 1));
+        pageStore.focus(Math.max(firstPage - (depth > 0 ? 1 : 0), 0), lastPage + depth);
+        button_pre.setEnabled(firstPage > 0);
+        button_next.setEnabled(firstPage < pageStore.getTailPage() || pageStore.hasMore());
+        if (worker != null || !autoLoad) {
+            return;
+        }
+        for (int page = firstPage; page <= lastPage; page++) {
+            if (pageStore.needsLoad(page)) {
+                loadPage(page, false);
+                return;
+            }
+        }
+        if (lastRow >= pageStore.getRowCount() - 1 && pageStore.hasMore()) {
+            loadPage(pageStore.getTailPage() + 1, false);
+            return;
+        }
+        // read ahead while the user looks at the page, next pages first,
+        // then the previous one if it was dropped
+        for (int page = lastPage + 1; page <= lastPage + depth; page++) {
+            if (page > pageStore.getTailPage()) {
+                if (page == pageStore.getTailPage() + 1 && pageStore.hasMore()) {
+                    loadPage(page, true);
+                }
+                return;
+            }
+            if (pageStore.needsLoad(page)) {
+                loadPage(page, true);
+                return;
+            }
+        }
+        if (depth > 0 && firstPage > 0 && pageStore.needsLoad(firstPage - 1)) {
+            loadPage(firstPage - 1, true);
+        }
+    }
+
+    /**
+     * page of the first visible row
+     *
+     * @return
+     */
+    private int currentPage() {
+        int firstRow = table_data.rowAtPoint(jScrollPane1.getViewport().getViewPosition());
+        return tableModel.getStore().pageOf(Math.max(firstRow, 0));
+    }
+
+    /**
+     * scroll the first row of the page to the top, the page is read first if
+     * it was not seen yet
+     *
+     * @param page
+     */
+    private void showPage(int page) {
+        PageStore pageStore = tableModel.getStore();
+        int row = page * pageStore.getPageSize();
+        if (row >= pageStore.getRowCount()) {
+            scrollToPage = page;
+            if (worker == null && pageStore.hasMore()) {
+                loadPage(pageStore.getTailPage() + 1, false);
+            }
+            return;
+        }
+        scrollToPage = -1;
+        Rectangle rect = table_data.getCellRect(row, 0, true);
+        jScrollPane1.getViewport().setViewPosition(new Point(0, rect.y));
     }
 
     /**
@@ -142,6 +1417,7 @@ public class StartFrame extends javax.swing.JFrame {
         jLabel2 = new javax.swing.JLabel();
         combo_family = new javax.swing.JComboBox();
         button_scan = new javax.swing.JButton();
+        button_count = new javax.swing.JButton();
         panel_filter = new javax.swing.JPanel();
         jTabbedPane1 = new javax.swing.JTabbedPane();
         jPanel1 = new javax.swing.JPanel();
@@ -159,6 +1435,16 @@ public class StartFrame extends javax.swing.JFrame {
         jComboBox1 = new javax.swing.JComboBox();
         jLabel9 = new javax.swing.JLabel();
         jTextField4 = new javax.swing.JTextField();
+        combo_match = new javax.swing.JComboBox();
+        button_add_filter = new javax.swing.JButton();
+        button_clear_filter = new javax.swing.JButton();
+        jScrollPane2 = new javax.swing.JScrollPane();
+        list_filters = new javax.swing.JList();
+        jPanel3 = new javax.swing.JPanel();
+        jLabel11 = new javax.swing.JLabel();
+        jScrollPane3 = new javax.swing.JScrollPane();
+        text_rowkeys = new javax.swing.JTextArea();
+        button_load_keys = new javax.swing.JButton();
         panel_center = new javax.swing.JPanel();
         panel_center_op = new javax.swing.JPanel();
         button_pre = new javax.swing.JButton();
@@ -173,10 +1459,16 @@ public class StartFrame extends javax.swing.JFrame {
         panel_status = new javax.swing.JPanel();
         jLabel4 = new javax.swing.JLabel();
         progress_status = new javax.swing.JProgressBar();
+        button_cancel = new javax.swing.JButton();
         jMenuBar1 = new javax.swing.JMenuBar();
         menu_file = new javax.swing.JMenu();
         menu_connect = new javax.swing.JMenuItem();
+        menu_export = new javax.swing.JMenuItem();
+        menu_import = new javax.swing.JMenuItem();
+        menu_copy = new javax.swing.JMenuItem();
         menu_edit = new javax.swing.JMenu();
+        menu_delete = new javax.swing.JMenuItem();
+        menu_admin = new javax.swing.JMenuItem();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle("Hbase UI");
@@ -210,6 +1502,13 @@ public class StartFrame extends javax.swing.JFrame {
             }
         });
 
+        button_count.setText("Count");
+        button_count.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                button_countActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout panel_tableLayout = new javax.swing.GroupLayout(panel_table);
         panel_table.setLayout(panel_tableLayout);
         panel_tableLayout.setHorizontalGroup(
@@ -227,6 +1526,8 @@ public class StartFrame extends javax.swing.JFrame {
                             .addComponent(combo_family, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)))
                     .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, panel_tableLayout.createSequentialGroup()
                         .addGap(0, 0, Short.MAX_VALUE)
+                        .addComponent(button_count)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                         .addComponent(button_scan)))
                 .addContainerGap())
         );
@@ -242,7 +1543,9 @@ public class StartFrame extends javax.swing.JFrame {
                     .addComponent(jLabel2)
                     .addComponent(combo_family, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
-                .addComponent(button_scan)
+                .addGroup(panel_tableLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(button_scan)
+                    .addComponent(button_count))
                 .addGap(20, 20, 20))
         );
 
@@ -302,14 +1605,33 @@ public class StartFrame extends javax.swing.JFrame {
 
         jLabel7.setText("Field :");
 
-        combo_field.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Item 1", "Item 2", "Item 3", "Item 4" }));
+        combo_field.setEditable(true);
+        combo_field.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "<any value>", "<qualifier>" }));
 
         jLabel8.setText("Operation :");
 
-        jComboBox1.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Item 1", "Item 2", "Item 3", "Item 4" }));
+        jComboBox1.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "=", "!=", "<", "<=", ">", ">=", "regex", "contains" }));
 
         jLabel9.setText("Value :");
 
+        combo_match.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Match All", "Match Any" }));
+
+        button_add_filter.setText("Add");
+        button_add_filter.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                button_add_filterActionPerformed(evt);
+            }
+        });
+
+        button_clear_filter.setText("Clear");
+        button_clear_filter.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                button_clear_filterActionPerformed(evt);
+            }
+        });
+
+        jScrollPane2.setViewportView(list_filters);
+
         javax.swing.GroupLayout jPanel2Layout = new javax.swing.GroupLayout(jPanel2);
         jPanel2.setLayout(jPanel2Layout);
         jPanel2Layout.setHorizontalGroup(
@@ -321,7 +1643,7 @@ public class StartFrame extends javax.swing.JFrame {
                         .addGap(34, 34, 34)
                         .addComponent(jLabel7)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                        .addComponent(combo_field, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                        .addComponent(combo_field, javax.swing.GroupLayout.PREFERRED_SIZE, 160, javax.swing.GroupLayout.PREFERRED_SIZE))
                     .addGroup(jPanel2Layout.createSequentialGroup()
                         .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
                             .addComponent(jLabel9)
@@ -330,26 +1652,81 @@ public class StartFrame extends javax.swing.JFrame {
                         .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING, false)
                             .addComponent(jComboBox1, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                             .addComponent(jTextField4))))
-                .addContainerGap(376, Short.MAX_VALUE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING, false)
+                    .addComponent(combo_match, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(button_add_filter, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(button_clear_filter, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jScrollPane2, javax.swing.GroupLayout.DEFAULT_SIZE, 180, Short.MAX_VALUE)
+                .addContainerGap())
         );
         jPanel2Layout.setVerticalGroup(
             jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(jPanel2Layout.createSequentialGroup()
-                .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
-                    .addComponent(jLabel7)
-                    .addComponent(combo_field, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addGroup(jPanel2Layout.createSequentialGroup()
+                        .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                            .addComponent(jLabel7)
+                            .addComponent(combo_field, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                            .addComponent(jLabel8)
+                            .addComponent(jComboBox1, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                            .addComponent(jLabel9)
+                            .addComponent(jTextField4, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)))
+                    .addGroup(jPanel2Layout.createSequentialGroup()
+                        .addComponent(combo_match, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(button_add_filter)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(button_clear_filter))
+                    .addComponent(jScrollPane2, javax.swing.GroupLayout.PREFERRED_SIZE, 90, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addGap(0, 8, Short.MAX_VALUE))
+        );
+
+        jTabbedPane1.addTab("More Filters", jPanel2);
+
+        jLabel11.setText("Rowkeys (one per line) :");
+
+        text_rowkeys.setColumns(20);
+        text_rowkeys.setRows(4);
+        jScrollPane3.setViewportView(text_rowkeys);
+
+        button_load_keys.setText("Load File...");
+        button_load_keys.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                button_load_keysActionPerformed(evt);
+            }
+        });
+
+        javax.swing.GroupLayout jPanel3Layout = new javax.swing.GroupLayout(jPanel3);
+        jPanel3.setLayout(jPanel3Layout);
+        jPanel3Layout.setHorizontalGroup(
+            jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(jPanel3Layout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(jScrollPane3, javax.swing.GroupLayout.DEFAULT_SIZE, 400, Short.MAX_VALUE)
+                    .addComponent(jLabel11))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
-                    .addComponent(jLabel8)
-                    .addComponent(jComboBox1, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addComponent(button_load_keys)
+                .addContainerGap())
+        );
+        jPanel3Layout.setVerticalGroup(
+            jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(jPanel3Layout.createSequentialGroup()
+                .addComponent(jLabel11)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
-                    .addComponent(jLabel9)
-                    .addComponent(jTextField4, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addGroup(jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(jScrollPane3, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(button_load_keys))
                 .addGap(0, 8, Short.MAX_VALUE))
         );
 
-        jTabbedPane1.addTab("More Filters", jPanel2);
+        jTabbedPane1.addTab("Rowkeys", jPanel3);
 
         javax.swing.GroupLayout panel_filterLayout = new javax.swing.GroupLayout(panel_filter);
         panel_filter.setLayout(panel_filterLayout);
@@ -387,12 +1764,27 @@ public class StartFrame extends javax.swing.JFrame {
         panel_center.setLayout(new java.awt.BorderLayout());
 
         button_pre.setText("< Previous");
+        button_pre.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                button_preActionPerformed(evt);
+            }
+        });
 
         button_next.setText("Next >");
+        button_next.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                button_nextActionPerformed(evt);
+            }
+        });
 
         jLabel3.setText("Show Rows:");
 
         button_refresh.setText("Refresh");
+        button_refresh.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                button_refreshActionPerformed(evt);
+            }
+        });
 
         javax.swing.GroupLayout panel_center_opLayout = new javax.swing.GroupLayout(panel_center_op);
         panel_center_op.setLayout(panel_center_opLayout);
@@ -455,6 +1847,14 @@ public class StartFrame extends javax.swing.JFrame {
         panel_status.add(jLabel4);
         panel_status.add(progress_status);
 
+        button_cancel.setText("Cancel");
+        button_cancel.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                button_cancelActionPerformed(evt);
+            }
+        });
+        panel_status.add(button_cancel);
+
         panel_end.add(panel_status, java.awt.BorderLayout.CENTER);
 
         getContentPane().add(panel_end, java.awt.BorderLayout.PAGE_END);
@@ -469,9 +1869,50 @@ public class StartFrame extends javax.swing.JFrame {
         });
         menu_file.add(menu_connect);
 
+        menu_export.setText("Export...");
+        menu_export.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                menu_exportActionPerformed(evt);
+            }
+        });
+        menu_file.add(menu_export);
+
+        menu_import.setText("Import...");
+        menu_import.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                menu_importActionPerformed(evt);
+            }
+        });
+        menu_file.add(menu_import);
+
+        menu_copy.setText("Copy Table...");
+        menu_copy.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                menu_copyActionPerformed(evt);
+            }
+        });
+        menu_file.add(menu_copy);
+
         jMenuBar1.add(menu_file);
 
         menu_edit.setText("Edit");
+
+        menu_delete.setText("Delete Rows...");
+        menu_delete.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                menu_deleteActionPerformed(evt);
+            }
+        });
+        menu_edit.add(menu_delete);
+
+        menu_admin.setText("Table Admin...");
+        menu_admin.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                menu_adminActionPerformed(evt);
+            }
+        });
+        menu_edit.add(menu_admin);
+
         jMenuBar1.add(menu_edit);
 
         setJMenuBar(jMenuBar1);
@@ -483,6 +1924,26 @@ public class StartFrame extends javax.swing.JFrame {
         new ConnectionShowDialog(this, this, true).setVisible(true);
     }//GEN-LAST:event_menu_connectActionPerformed
 
+    private void menu_exportActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menu_exportActionPerformed
+        exportRows();
+    }//GEN-LAST:event_menu_exportActionPerformed
+
+    private void menu_importActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menu_importActionPerformed
+        importRows();
+    }//GEN-LAST:event_menu_importActionPerformed
+
+    private void menu_copyActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menu_copyActionPerformed
+        copyRows();
+    }//GEN-LAST:event_menu_copyActionPerformed
+
+    private void menu_deleteActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menu_deleteActionPerformed
+        deleteRows();
+    }//GEN-LAST:event_menu_deleteActionPerformed
+
+    private void menu_adminActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menu_adminActionPerformed
+        adminTables();
+    }//GEN-LAST:event_menu_adminActionPerformed
+
     private void text_rowkey_prefixActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_text_rowkey_prefixActionPerformed
         // TODO add your handling code here:
     }//GEN-LAST:event_text_rowkey_prefixActionPerformed
@@ -495,23 +1956,76 @@ public class StartFrame extends javax.swing.JFrame {
         Object value = combo_table.getSelectedItem();
         if (value != null) {
             loadFamily(combo_table.getSelectedItem().toString());
+            estimateTable(value.toString());
         }
     }//GEN-LAST:event_combo_tableActionPerformed
 
     private void button_scanActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_scanActionPerformed
-        String tableName = combo_table.getSelectedItem().toString();
-        String family = combo_family.getSelectedItem().toString();
-        String row = spinner_row.getValue().toString();
-        HbaseQuery query = new HbaseQuery();
-        query.setTableName(tableName);
-        query.setPageSize(Integer.parseInt(row));
-        query.setFamilies(Lists.newArrayList(family));
+        startQuery(false);
+    }//GEN-LAST:event_button_scanActionPerformed
+
+    private void button_refreshActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_refreshActionPerformed
+        if (combo_table.getSelectedItem() != null) {
+            startQuery(true);
+        }
+    }//GEN-LAST:event_button_refreshActionPerformed
+
+    private void button_countActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_countActionPerformed
+        countRows();
+    }//GEN-LAST:event_button_countActionPerformed
+
+    private void button_preActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_preActionPerformed
+        if (tableModel == null) {
+            return;
+        }
+        autoLoad = true;
+        showPage(Math.max(currentPage() - 1, 0));
+    }//GEN-LAST:event_button_preActionPerformed
+
+    private void button_nextActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_nextActionPerformed
+        if (tableModel == null) {
+            return;
+        }
+        autoLoad = true;
+        showPage(currentPage() + 1);
+    }//GEN-LAST:event_button_nextActionPerformed
+
+    private void button_add_filterActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_add_filterActionPerformed
+        HbaseFilter filter = currentFilter();
+        if (filter == null) {
+            return;
+        }
+        filterModel.addElement(filter);
+        jTextField4.setText("");
+    }//GEN-LAST:event_button_add_filterActionPerformed
+
+    private void button_clear_filterActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_clear_filterActionPerformed
+        filterModel.clear();
+    }//GEN-LAST:event_button_clear_filterActionPerformed
+
+    private void button_load_keysActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_load_keysActionPerformed
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
         try {
-            fillTable(scan(query));
-        } catch (Exception ex) {
-            logger.error("scan error!", ex);
+            text_rowkeys.setText(Files.toString(chooser.getSelectedFile(), Charsets.UTF_8));
+            text_rowkeys.setCaretPosition(0);
+        } catch (IOException e) {
+            logger.error("read rowkeys error!", e);
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Load rowkeys",
+                    JOptionPane.ERROR_MESSAGE);
         }
-    }//GEN-LAST:event_button_scanActionPerformed
+    }//GEN-LAST:event_button_load_keysActionPerformed
+
+    private void button_cancelActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_button_cancelActionPerformed
+        autoLoad = false;
+        cancelLoad();
+        cancelCount();
+        cancelJob();
+        updateCancel();
+        jLabel4.setText("Cancelled");
+    }//GEN-LAST:event_button_cancelActionPerformed
 
     /**
      * @param args the command line arguments
@@ -549,6 +2063,11 @@ public class StartFrame extends javax.swing.JFrame {
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton button_add_filter;
+    private javax.swing.JButton button_cancel;
+    private javax.swing.JButton button_clear_filter;
+    private javax.swing.JButton button_count;
+    private javax.swing.JButton button_load_keys;
     private javax.swing.JButton button_next;
     private javax.swing.JButton button_pre;
     private javax.swing.JButton button_refresh;
@@ -556,10 +2075,12 @@ public class StartFrame extends javax.swing.JFrame {
     private javax.swing.JButton button_scan;
     private javax.swing.JComboBox combo_family;
     private javax.swing.JComboBox combo_field;
+    private javax.swing.JComboBox combo_match;
     private javax.swing.JComboBox combo_table;
     private javax.swing.JComboBox jComboBox1;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JLabel jLabel10;
+    private javax.swing.JLabel jLabel11;
     private javax.swing.JLabel jLabel2;
     private javax.swing.JLabel jLabel3;
     private javax.swing.JLabel jLabel4;
@@ -571,11 +2092,20 @@ public class StartFrame extends javax.swing.JFrame {
     private javax.swing.JMenuBar jMenuBar1;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JPanel jPanel2;
+    private javax.swing.JPanel jPanel3;
     private javax.swing.JScrollPane jScrollPane1;
+    private javax.swing.JScrollPane jScrollPane2;
+    private javax.swing.JScrollPane jScrollPane3;
     private javax.swing.JTabbedPane jTabbedPane1;
     private javax.swing.JTextField jTextField4;
+    private javax.swing.JList list_filters;
+    private javax.swing.JMenuItem menu_admin;
     private javax.swing.JMenuItem menu_connect;
+    private javax.swing.JMenuItem menu_copy;
+    private javax.swing.JMenuItem menu_delete;
     private javax.swing.JMenu menu_edit;
+    private javax.swing.JMenuItem menu_export;
+    private javax.swing.JMenuItem menu_import;
     private javax.swing.JMenu menu_file;
     private javax.swing.JPanel panel_center;
     private javax.swing.JPanel panel_center_data;
@@ -590,6 +2120,7 @@ public class StartFrame extends javax.swing.JFrame {
     private javax.swing.JTable table_data;
     private javax.swing.JTextField text_end_row;
     private javax.swing.JTextField text_rowkey_prefix;
+    private javax.swing.JTextArea text_rowkeys;
     private javax.swing.JTextField text_start_row;
     // End of variables declaration//GEN-END:variables
 }
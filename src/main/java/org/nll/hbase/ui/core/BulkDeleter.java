@@ -0,0 +1,247 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.DeleteStats;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.nll.hbase.ui.util.HbaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * deletes the rows of a query range, region by region in parallel.
+ *
+ * rowkeys are read with the key only scan of a count, see
+ * {@link HbaseUtil#buildCountScan}, and deleted in batches. a query with
+ * families deletes only those families of the rows, filters pick the rows.
+ * a dry run only counts. a throttle keeps the delete rate down while the
+ * cluster serves other reads.
+ *
+ * @author fivesmallq
+ */
+public class BulkDeleter {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(BulkDeleter.class);
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_BATCH_ROWS = 1000;
+    private static final long PROGRESS_MILLIS = 1000;
+    private final HConnection connection;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int batchRows = DEFAULT_BATCH_ROWS;
+    private double maxRowsPerSecond;
+    private boolean dryRun;
+
+    public BulkDeleter(HConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * regions deleted at the same time
+     *
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void setBatchRows(int batchRows) {
+        this.batchRows = Math.max(1, batchRows);
+    }
+
+    /**
+     * @param maxRowsPerSecond 0 for no limit
+     */
+    public void setMaxRowsPerSecond(double maxRowsPerSecond) {
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    /**
+     * count the rows only
+     *
+     * @param dryRun
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * delete the rows of the query range
+     *
+     * @param query page size is ignored
+     * @param listener may be null
+     * @return
+     * @throws Exception the first error of a region, InterruptedException
+     * when the caller is interrupted. rows deleted before stay deleted.
+     */
+    public DeleteStats delete(HbaseQuery query, DeleteListener listener) throws Exception {
+        final HbaseQuery deleteQuery = query.copy();
+        deleteQuery.setPageSize(0);
+        if (HbaseUtil.lookupRows(deleteQuery) != null) {
+            throw new IllegalArgumentException("a bulk delete needs a key range, not a rowkey list");
+        }
+        List<ScanRange> ranges = ParallelScanner.getRanges(connection, deleteQuery);
+        logger.info("{} {} in {} ranges", new Object[]{dryRun ? "dry run delete" : "delete",
+            deleteQuery.getTableName(), ranges.size()});
+        final Throttle throttle = new Throttle(maxRowsPerSecond);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicInteger finished = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("delete-%d").build());
+        List<Future<Void>> futures = Lists.newArrayList();
+        try {
+            for (final ScanRange range : ranges) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        if (cancelled.get()) {
+                            return null;
+                        }
+                        try {
+                            deleteRange(deleteQuery, range, throttle, cancelled, rows);
+                        } catch (Exception e) {
+                            // stop the other regions at once
+                            cancelled.set(true);
+                            throw e;
+                        }
+                        finished.incrementAndGet();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                while (true) {
+                    try {
+                        future.get(PROGRESS_MILLIS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (listener != null) {
+                            listener.progress(stats(rows, ranges.size(), finished,
+                                    System.currentTimeMillis() - start));
+                        }
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            logger.error("delete error! " + deleteQuery.getTableName(), e.getCause());
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        } finally {
+            cancelled.set(true);
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            pool.shutdownNow();
+            logger.info("{} rows of {} {}", new Object[]{rows.get(),
+                deleteQuery.getTableName(), dryRun ? "to delete" : "deleted"});
+        }
+        DeleteStats stats = stats(rows, ranges.size(), finished,
+                System.currentTimeMillis() - start);
+        if (listener != null) {
+            listener.progress(stats);
+        }
+        return stats;
+    }
+
+    private DeleteStats stats(AtomicLong rows, int ranges, AtomicInteger finished, long millis) {
+        DeleteStats stats = new DeleteStats();
+        stats.setRows(rows.get());
+        stats.setDryRun(dryRun);
+        stats.setRanges(ranges);
+        stats.setFinishedRanges(finished.get());
+        stats.setMillis(millis);
+        return stats;
+    }
+
+    private void deleteRange(final HbaseQuery query, ScanRange range, final Throttle throttle,
+            final AtomicBoolean cancelled, final AtomicLong rows) throws Exception {
+        Scan scan = HbaseUtil.buildCountScan(query);
+        scan.setStartRow(range.getStartRow());
+        scan.setStopRow(range.getStopRow());
+        final List<Delete> batch = Lists.newArrayList();
+        final HTableInterface table = dryRun ? null : connection.getTable(query.getTableName());
+        try {
+            HbaseUtil.scanResults(connection, query.getTableName(), scan, new ResultHandler() {
+                @Override
+                public boolean handle(Result result) throws Exception {
+                    if (cancelled.get()) {
+                        return false;
+                    }
+                    if (dryRun) {
+                        rows.incrementAndGet();
+                        return true;
+                    }
+                    batch.add(newDelete(query, result.getRow()));
+                    if (batch.size() >= batchRows) {
+                        flush(table, batch, throttle, rows);
+                    }
+                    return true;
+                }
+            });
+            if (!cancelled.get() && !batch.isEmpty()) {
+                flush(table, batch, throttle, rows);
+            }
+        } finally {
+            if (table != null) {
+                table.close();
+            }
+        }
+    }
+
+    /**
+     * delete of the whole row, or of the families of the query
+     */
+    private static Delete newDelete(HbaseQuery query, byte[] row) {
+        Delete delete = new Delete(row);
+        for (String family : query.getFamilies()) {
+            delete.deleteFamily(Bytes.toBytes(family));
+        }
+        return delete;
+    }
+
+    private static void flush(HTableInterface table, List<Delete> batch, Throttle throttle,
+            AtomicLong rows) throws Exception {
+        throttle.acquire(batch.size());
+        int size = batch.size();
+        // the list keeps the deletes that failed
+        table.delete(batch);
+        rows.addAndGet(size - batch.size());
+        batch.clear();
+    }
+}
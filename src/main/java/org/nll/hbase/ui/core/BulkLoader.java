@@ -0,0 +1,508 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.io.CountingInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.ImportStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * loads a csv or json lines file by writing hfiles and handing them to the
+ * region servers, the rows skip the memstores and the wal. meant for inputs
+ * too big to send as puts, it runs in this process without mapreduce.
+ *
+ * the cells are sorted with an external merge sort: they are sorted in
+ * memory up to the sort buffer and written to local run files, the runs are
+ * merged into one hfile per region and family in a staging directory, and
+ * {@link LoadIncrementalHFiles} moves the files into the regions. the
+ * staging directory must be on a file system the region servers can reach
+ * and write, usually hdfs.
+ *
+ * every cell gets the time the load started. when a cell is given more than
+ * once the last value wins, like puts would.
+ *
+ * @author fivesmallq
+ */
+public class BulkLoader {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(BulkLoader.class);
+    public static final String STAGE_SORT = "sorting";
+    public static final String STAGE_WRITE = "writing hfiles";
+    public static final String STAGE_LOAD = "loading hfiles";
+    public static final long DEFAULT_SORT_BUFFER = 64L * 1024 * 1024;
+    /**
+     * memory of a buffered cell besides its bytes
+     */
+    private static final int CELL_OVERHEAD = 64;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long PROGRESS_MILLIS = 1000;
+    private final HConnection connection;
+    private final ExecutorService executor;
+    private final String tableName;
+    private final ExportFormat format;
+    private boolean gzip;
+    private long sortBuffer = DEFAULT_SORT_BUFFER;
+    private File tempDir;
+
+    /**
+     * @param connection
+     * @param executor used by the table handle of the load, not shut down
+     * here
+     * @param tableName
+     * @param format
+     */
+    public BulkLoader(HConnection connection, ExecutorService executor, String tableName,
+            ExportFormat format) {
+        this.connection = connection;
+        this.executor = executor;
+        this.tableName = tableName;
+        this.format = format;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * memory for sorting in bytes, more cells go to run files
+     *
+     * @param sortBuffer
+     */
+    public void setSortBuffer(long sortBuffer) {
+        this.sortBuffer = sortBuffer;
+    }
+
+    /**
+     * @param tempDir local directory of the run files, null for the system
+     * temp directory
+     */
+    public void setTempDir(File tempDir) {
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * bulk load a file
+     *
+     * @param file
+     * @param stagingDir
+     * @param listener may be null
+     * @return
+     * @throws Exception
+     */
+    public ImportStats load(File file, String stagingDir, ImportListener listener)
+            throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            return load(in, stagingDir, listener);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    /**
+     * bulk load a stream, the stream is not closed
+     *
+     * @param input
+     * @param stagingDir a directory the region servers can reach, the hfiles
+     * are written to a new directory under it that is removed afterwards
+     * @param listener may be null
+     * @return
+     * @throws Exception a bad csv header, a failed write or load, or
+     * InterruptedException when the caller is interrupted
+     */
+    public ImportStats load(InputStream input, String stagingDir, ImportListener listener)
+            throws Exception {
+        Configuration conf = connection.getConfiguration();
+        Path dir = new Path(stagingDir, "hbase-ui-" + tableName + "-" + System.currentTimeMillis());
+        FileSystem fs = dir.getFileSystem(conf);
+        long start = System.currentTimeMillis();
+        try {
+            ImportStats stats = writeHFiles(input, fs, dir, listener);
+            stats.setStage(STAGE_LOAD);
+            if (listener != null) {
+                listener.progress(stats);
+            }
+            HTable table = new HTable(Bytes.toBytes(tableName), connection, executor);
+            try {
+                new LoadIncrementalHFiles(conf).doBulkLoad(dir, table);
+            } finally {
+                table.close();
+            }
+            stats.setStage(null);
+            stats.setMillis(System.currentTimeMillis() - start);
+            if (listener != null) {
+                listener.progress(stats);
+            }
+            logger.info("bulk loaded {}: {}", tableName, stats);
+            return stats;
+        } finally {
+            try {
+                fs.delete(dir, true);
+            } catch (IOException e) {
+                logger.warn("delete bulk load directory " + dir + " error!", e);
+            }
+        }
+    }
+
+    /**
+     * sort the input and write the hfiles, one directory per family
+     *
+     * @param input
+     * @param fs
+     * @param dir
+     * @param listener may be null
+     * @return
+     * @throws Exception
+     */
+    ImportStats writeHFiles(InputStream input, FileSystem fs, Path dir, ImportListener listener)
+            throws Exception {
+        byte[] table = Bytes.toBytes(tableName);
+        Map<String, HColumnDescriptor> families = Maps.newHashMap();
+        for (HColumnDescriptor family : connection.getHTableDescriptor(table).getFamilies()) {
+            families.put(family.getNameAsString(), family);
+        }
+        byte[][] startKeys = Importer.startKeys(connection, table);
+        CountingInputStream counting = new CountingInputStream(input);
+        Importer.RowParser parser = Importer.newParser(format,
+                Importer.newReader(counting, gzip), families.keySet());
+        Importer.Failures failures = new Importer.Failures();
+        ImportStats stats = new ImportStats();
+        stats.setStage(STAGE_SORT);
+        long start = System.currentTimeMillis();
+        byte[] now = Bytes.toBytes(start);
+        List<Run> runs = Lists.newArrayList();
+        try {
+            List<KeyValue> buffer = Lists.newArrayList();
+            long bufferBytes = 0;
+            long rows = 0;
+            long reported = start;
+            while (true) {
+                checkInterrupted();
+                long time = System.currentTimeMillis();
+                if (listener != null && time - reported >= PROGRESS_MILLIS) {
+                    reported = time;
+                    listener.progress(stats(stats, rows, failures, counting, time - start));
+                }
+                Put put;
+                try {
+                    put = parser.next();
+                } catch (RuntimeException e) {
+                    failures.add("line " + parser.getLine() + ": " + e.getMessage());
+                    continue;
+                }
+                if (put == null) {
+                    break;
+                }
+                rows++;
+                for (List<KeyValue> cells : put.getFamilyMap().values()) {
+                    for (KeyValue cell : cells) {
+                        cell.updateLatestStamp(now);
+                        buffer.add(cell);
+                        bufferBytes += cell.getLength() + CELL_OVERHEAD;
+                    }
+                }
+                if (bufferBytes >= sortBuffer) {
+                    runs.add(writeRun(sortRun(buffer)));
+                    buffer = Lists.newArrayList();
+                    bufferBytes = 0;
+                }
+            }
+            stats(stats, rows, failures, counting, System.currentTimeMillis() - start);
+            stats.setStage(STAGE_WRITE);
+            if (listener != null) {
+                listener.progress(stats);
+            }
+            // the last cells are merged from memory, later runs win ties
+            PriorityQueue<Source> sources = new PriorityQueue<Source>(runs.size() + 1, SOURCE_ORDER);
+            for (int i = 0; i < runs.size(); i++) {
+                addSource(sources, new Source(i, runs.get(i).iterator()));
+            }
+            addSource(sources, new Source(runs.size(), sortRun(buffer)));
+            int files = merge(sources, startKeys, families, fs, dir);
+            stats.setMillis(System.currentTimeMillis() - start);
+            logger.info("wrote {} hfiles of {} from {} sort runs", new Object[]{files, tableName,
+                runs.size() + 1});
+            return stats;
+        } finally {
+            for (Run run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    private static ImportStats stats(ImportStats stats, long rows, Importer.Failures failures,
+            CountingInputStream in, long millis) {
+        stats.setRows(rows);
+        stats.setFailedRows(failures.getCount());
+        stats.setFailures(failures.getReported());
+        stats.setBytes(in.getCount());
+        stats.setMillis(millis);
+        return stats;
+    }
+
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * sort cells in place, of equal cells only the last one given is kept
+     *
+     * @param cells
+     * @return the sorted cells
+     */
+    static List<KeyValue> sortRun(List<KeyValue> cells) {
+        // stable, equal cells stay in input order
+        Collections.sort(cells, KeyValue.COMPARATOR);
+        int kept = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            if (i + 1 < cells.size()
+                    && KeyValue.COMPARATOR.compare(cells.get(i), cells.get(i + 1)) == 0) {
+                continue;
+            }
+            cells.set(kept++, cells.get(i));
+        }
+        return cells.subList(0, kept);
+    }
+
+    private Run writeRun(List<KeyValue> cells) throws IOException {
+        File file = File.createTempFile("hbase-ui-sort", ".run", tempDir);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), BUFFER_SIZE));
+        boolean done = false;
+        try {
+            for (KeyValue cell : cells) {
+                cell.write(out);
+            }
+            out.close();
+            done = true;
+        } finally {
+            if (!done) {
+                Closeables.closeQuietly(out);
+                file.delete();
+            }
+        }
+        return new Run(file, cells.size());
+    }
+
+    /**
+     * write the merged cells, a new set of files starts at every region
+     * boundary
+     *
+     * @return number of files
+     */
+    private int merge(PriorityQueue<Source> sources, byte[][] startKeys,
+            Map<String, HColumnDescriptor> families, FileSystem fs, Path dir) throws Exception {
+        Configuration conf = new Configuration(connection.getConfiguration());
+        // no block cache for writing
+        conf.setFloat("hfile.block.cache.size", 0.0f);
+        CacheConfig cacheConfig = new CacheConfig(conf);
+        Map<String, StoreFile.Writer> writers = Maps.newHashMap();
+        int files = 0;
+        int region = -1;
+        byte[] nextStartKey = null;
+        KeyValue last = null;
+        long merged = 0;
+        try {
+            while (!sources.isEmpty()) {
+                Source source = sources.poll();
+                KeyValue cell = source.current;
+                addSource(sources, source);
+                if (last != null && KeyValue.COMPARATOR.compare(last, cell) == 0) {
+                    // an older value from an earlier run
+                    continue;
+                }
+                last = cell;
+                if ((++merged & 0xffff) == 0) {
+                    checkInterrupted();
+                }
+                if (region < 0 || (nextStartKey != null && Bytes.compareTo(cell.getBuffer(),
+                        cell.getRowOffset(), cell.getRowLength(), nextStartKey, 0,
+                        nextStartKey.length) >= 0)) {
+                    closeWriters(writers);
+                    region = Importer.regionIndex(startKeys, cell.getRow());
+                    nextStartKey = region + 1 < startKeys.length ? startKeys[region + 1] : null;
+                }
+                String family = Bytes.toString(cell.getFamily());
+                StoreFile.Writer writer = writers.get(family);
+                if (writer == null) {
+                    HColumnDescriptor descriptor = families.get(family);
+                    writer = new StoreFile.WriterBuilder(conf, cacheConfig, fs,
+                            descriptor.getBlocksize())
+                            .withFilePath(new Path(new Path(dir, family), "region" + region))
+                            .withCompression(descriptor.getCompression())
+                            .withBloomType(descriptor.getBloomFilterType())
+                            .withComparator(KeyValue.COMPARATOR)
+                            .build();
+                    writers.put(family, writer);
+                    files++;
+                }
+                writer.append(cell);
+            }
+        } finally {
+            closeWriters(writers);
+        }
+        return files;
+    }
+
+    private static void closeWriters(Map<String, StoreFile.Writer> writers) throws IOException {
+        IOException error = null;
+        for (StoreFile.Writer writer : writers.values()) {
+            try {
+                writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY,
+                        Bytes.toBytes(System.currentTimeMillis()));
+                writer.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(false));
+                writer.appendTrackedTimestampsToMetadata();
+                writer.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        writers.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static void addSource(PriorityQueue<Source> sources, Source source) throws IOException {
+        if (source.advance()) {
+            sources.add(source);
+        }
+    }
+
+    /**
+     * smallest cell first, of equal cells the one of the later run
+     */
+    private static final Comparator<Source> SOURCE_ORDER = new Comparator<Source>() {
+        @Override
+        public int compare(Source o1, Source o2) {
+            int result = KeyValue.COMPARATOR.compare(o1.current, o2.current);
+            return result != 0 ? result : o2.index - o1.index;
+        }
+    };
+
+    /**
+     * sorted cells being merged
+     */
+    private static class Source {
+
+        private final int index;
+        private final CellIterator cells;
+        private KeyValue current;
+
+        Source(int index, CellIterator cells) {
+            this.index = index;
+            this.cells = cells;
+        }
+
+        Source(int index, final List<KeyValue> cells) {
+            this(index, new CellIterator() {
+                private int next;
+
+                @Override
+                public KeyValue next() {
+                    return next < cells.size() ? cells.get(next++) : null;
+                }
+            });
+        }
+
+        boolean advance() throws IOException {
+            current = cells.next();
+            return current != null;
+        }
+    }
+
+    private interface CellIterator {
+
+        /**
+         * @return null after the last cell
+         * @throws IOException
+         */
+        KeyValue next() throws IOException;
+    }
+
+    /**
+     * sorted cells in a local file
+     */
+    private static class Run {
+
+        private final File file;
+        private final long cells;
+        private DataInputStream in;
+
+        Run(File file, long cells) {
+            this.file = file;
+            this.cells = cells;
+        }
+
+        CellIterator iterator() throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+                    BUFFER_SIZE));
+            return new CellIterator() {
+                private long read;
+
+                @Override
+                public KeyValue next() throws IOException {
+                    if (read == cells) {
+                        return null;
+                    }
+                    read++;
+                    KeyValue cell = new KeyValue();
+                    cell.readFields(in);
+                    return cell;
+                }
+            };
+        }
+
+        void close() {
+            Closeables.closeQuietly(in);
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * value codecs by name: the built in ones and those found with
+ * {@link ServiceLoader}, loaded once.
+ *
+ * the number codecs read the value as written by {@link Bytes}, a value of
+ * another length is shown escaped like {@link #BINARY} instead of failing.
+ *
+ * @author fivesmallq
+ */
+public class CodecRegistry {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(CodecRegistry.class);
+    public static final ValueCodec UTF8 = new ValueCodec() {
+        @Override
+        public String getName() {
+            return "utf8";
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            return Bytes.toString(bytes, offset, length);
+        }
+    };
+    /**
+     * printable bytes as they are, the others as \xNN
+     */
+    public static final ValueCodec BINARY = new ValueCodec() {
+        @Override
+        public String getName() {
+            return "binary";
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            return Bytes.toStringBinary(bytes, offset, length);
+        }
+    };
+    public static final ValueCodec LONG = new ValueCodec() {
+        @Override
+        public String getName() {
+            return "long";
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            return length == Bytes.SIZEOF_LONG ? String.valueOf(Bytes.toLong(bytes, offset))
+                    : BINARY.decode(bytes, offset, length);
+        }
+    };
+    public static final ValueCodec INT = new ValueCodec() {
+        @Override
+        public String getName() {
+            return "int";
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            return length == Bytes.SIZEOF_INT ? String.valueOf(Bytes.toInt(bytes, offset))
+                    : BINARY.decode(bytes, offset, length);
+        }
+    };
+    public static final ValueCodec DOUBLE = new ValueCodec() {
+        @Override
+        public String getName() {
+            return "double";
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            return length == Bytes.SIZEOF_DOUBLE ? String.valueOf(Bytes.toDouble(bytes, offset))
+                    : BINARY.decode(bytes, offset, length);
+        }
+    };
+    public static final ValueCodec HEX = new ValueCodec() {
+        private final char[] digits = "0123456789abcdef".toCharArray();
+
+        @Override
+        public String getName() {
+            return "hex";
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            char[] text = new char[length * 2];
+            for (int i = 0; i < length; i++) {
+                int b = bytes[offset + i] & 0xff;
+                text[2 * i] = digits[b >>> 4];
+                text[2 * i + 1] = digits[b & 0xf];
+            }
+            return new String(text);
+        }
+    };
+    /**
+     * utf-8 json, indented. text that does not parse is shown as it is
+     */
+    public static final ValueCodec JSON_PRETTY = new ValueCodec() {
+        @Override
+        public String getName() {
+            return "json";
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            String text = Bytes.toString(bytes, offset, length);
+            try {
+                Object json = JSON.parse(text);
+                return json == null ? text : JSON.toJSONString(json, true);
+            } catch (JSONException e) {
+                return text;
+            }
+        }
+    };
+    private static final Map<String, ValueCodec> CODECS = load();
+
+    private CodecRegistry() {
+    }
+
+    private static Map<String, ValueCodec> load() {
+        Map<String, ValueCodec> codecs = Maps.newLinkedHashMap();
+        for (ValueCodec codec : new ValueCodec[]{UTF8, LONG, INT, DOUBLE, HEX, JSON_PRETTY,
+            BINARY}) {
+            codecs.put(codec.getName(), codec);
+        }
+        Iterator<ValueCodec> found = ServiceLoader.load(ValueCodec.class,
+                CodecRegistry.class.getClassLoader()).iterator();
+        while (true) {
+            ValueCodec codec;
+            try {
+                if (!found.hasNext()) {
+                    break;
+                }
+                codec = found.next();
+            } catch (ServiceConfigurationError e) {
+                // a broken plugin does not hide the others
+                logger.error("can not load value codec!", e);
+                continue;
+            }
+            if (codecs.containsKey(codec.getName())) {
+                logger.warn("value codec {} of {} is already defined", codec.getName(),
+                        codec.getClass().getName());
+                continue;
+            }
+            codecs.put(codec.getName(), codec);
+            logger.info("loaded value codec {} of {}", codec.getName(), codec.getClass().getName());
+        }
+        return ImmutableMap.copyOf(codecs);
+    }
+
+    /**
+     * @param name
+     * @return null if unknown
+     */
+    public static ValueCodec getCodec(String name) {
+        return CODECS.get(name);
+    }
+
+    /**
+     * @return built in codecs first
+     */
+    public static List<String> getNames() {
+        return Lists.newArrayList(CODECS.keySet());
+    }
+}
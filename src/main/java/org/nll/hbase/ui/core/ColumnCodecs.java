@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * the codecs of the columns of one table.
+ *
+ * rules map table/family:qualifier, table/family or table to a codec name
+ * and the most specific one wins, columns without a rule are utf-8. the
+ * rules are copied, a changed rule needs a new instance, so a decoded value
+ * can be kept as long as the instance it was decoded with is used. thread
+ * safe.
+ *
+ * @author fivesmallq
+ */
+public class ColumnCodecs {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(ColumnCodecs.class);
+    /**
+     * every column utf-8
+     */
+    public static final ColumnCodecs DEFAULT = new ColumnCodecs("",
+            ImmutableMap.<String, String>of());
+    private final String tableName;
+    private final Map<String, String> rules;
+    private final ConcurrentMap<String, ValueCodec> byColumn = Maps.newConcurrentMap();
+
+    /**
+     * @param tableName
+     * @param rules codec names by {@link #ruleKey}
+     */
+    public ColumnCodecs(String tableName, Map<String, String> rules) {
+        this.tableName = tableName;
+        this.rules = ImmutableMap.copyOf(rules);
+    }
+
+    /**
+     * @param tableName
+     * @param column family:qualifier or family, null for the whole table
+     * @return
+     */
+    public static String ruleKey(String tableName, String column) {
+        return column == null ? tableName : tableName + "/" + column;
+    }
+
+    /**
+     * @param column family:qualifier
+     * @return
+     */
+    public ValueCodec getCodec(String column) {
+        ValueCodec codec = byColumn.get(column);
+        if (codec == null) {
+            codec = resolve(column);
+            byColumn.put(column, codec);
+        }
+        return codec;
+    }
+
+    private ValueCodec resolve(String column) {
+        int colon = column.indexOf(':');
+        String family = colon < 0 ? column : column.substring(0, colon);
+        for (String key : new String[]{ruleKey(tableName, column), ruleKey(tableName, family),
+            ruleKey(tableName, null)}) {
+            String name = rules.get(key);
+            if (name == null) {
+                continue;
+            }
+            ValueCodec codec = CodecRegistry.getCodec(name);
+            if (codec != null) {
+                return codec;
+            }
+            logger.warn("unknown value codec {} for {}", name, key);
+        }
+        return CodecRegistry.UTF8;
+    }
+
+    /**
+     * decode a value of the column, a codec that fails shows the value
+     * escaped
+     *
+     * @param column family:qualifier
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    public String decode(String column, byte[] bytes, int offset, int length) {
+        ValueCodec codec = getCodec(column);
+        try {
+            String value = codec.decode(bytes, offset, length);
+            if (value != null) {
+                return value;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("value codec " + codec.getName() + " failed on " + column, e);
+        }
+        return CodecRegistry.BINARY.decode(bytes, offset, length);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * per table dictionary giving every family:qualifier a small integer id.
+ *
+ * ids start from 0 and never change, so rows can store id to value entries
+ * and the grid can use the ids as column numbers. names are decoded once,
+ * when the column is first seen.
+ *
+ * @author fivesmallq
+ */
+public class ColumnDictionary {
+
+    private final List<byte[]> families = Lists.newArrayList();
+    private final List<byte[]> qualifiers = Lists.newArrayList();
+    private final List<String> names = Lists.newArrayList();
+    private final Map<Column, Integer> ids = Maps.newHashMap();
+    private final Map<String, Integer> nameIds = Maps.newHashMap();
+
+    /**
+     * id of the column, a new id is given to an unknown column
+     *
+     * @param buffer
+     * @param familyOffset
+     * @param familyLength
+     * @param qualifierOffset
+     * @param qualifierLength
+     * @return
+     */
+    public synchronized int getId(byte[] buffer, int familyOffset, int familyLength,
+            int qualifierOffset, int qualifierLength) {
+        Column column = new Column(
+                Arrays.copyOfRange(buffer, familyOffset, familyOffset + familyLength),
+                Arrays.copyOfRange(buffer, qualifierOffset, qualifierOffset + qualifierLength));
+        Integer id = ids.get(column);
+        if (id == null) {
+            id = families.size();
+            families.add(column.family);
+            qualifiers.add(column.qualifier);
+            String name = Bytes.toString(column.family) + ":" + Bytes.toString(column.qualifier);
+            names.add(name);
+            ids.put(column, id);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * whether the column has the given id, used to check a guessed id
+     * without a hash lookup
+     *
+     * @return
+     */
+    public synchronized boolean matches(int id, byte[] buffer, int familyOffset,
+            int familyLength, int qualifierOffset, int qualifierLength) {
+        if (id < 0 || id >= families.size()) {
+            return false;
+        }
+        byte[] family = families.get(id);
+        byte[] qualifier = qualifiers.get(id);
+        return Bytes.equals(qualifier, 0, qualifier.length, buffer, qualifierOffset, qualifierLength)
+                && Bytes.equals(family, 0, family.length, buffer, familyOffset, familyLength);
+    }
+
+    /**
+     * @param name family:qualifier
+     * @return -1 if unknown
+     */
+    public synchronized int getId(String name) {
+        Integer id = nameIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * @param id
+     * @return family:qualifier
+     */
+    public synchronized String getName(int id) {
+        return names.get(id);
+    }
+
+    public synchronized byte[] getFamily(int id) {
+        return families.get(id);
+    }
+
+    public synchronized byte[] getQualifier(int id) {
+        return qualifiers.get(id);
+    }
+
+    private static class Column {
+
+        private final byte[] family;
+        private final byte[] qualifier;
+        private final int hash;
+
+        Column(byte[] family, byte[] qualifier) {
+            this.family = family;
+            this.qualifier = qualifier;
+            this.hash = Bytes.hashCode(family) * 31 + Bytes.hashCode(qualifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Column)) {
+                return false;
+            }
+            Column other = (Column) obj;
+            return Bytes.equals(family, other.family) && Bytes.equals(qualifier, other.qualifier);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.nll.hbase.ui.model.HbaseSetting;
+import org.nll.hbase.ui.util.HbaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * connections by setting name, their table handles and the threads of
+ * background work.
+ *
+ * a connection is opened from its registered setting on first use and is
+ * reference counted, whoever keeps using a connection (the open window, a
+ * running count) acquires it and releases it when done. a connection
+ * nobody holds is closed after the idle time and opened again by the next
+ * {@link #acquire(String)}. an open connection has one admin, made on
+ * first use. row lookups and bulk loads share one executor, work that can
+ * hold threads for long (exports, counts) runs on a pool of its own. thread
+ * safe.
+ *
+ * @author fivesmallq
+ */
+public class ConnectionManager {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(ConnectionManager.class);
+    public static final long DEFAULT_IDLE_MILLIS = 10 * 60 * 1000L;
+    /**
+     * threads of the shared executor
+     */
+    public static final int WORKER_THREADS = 16;
+    private static final ConnectionManager INSTANCE = new ConnectionManager(
+            DEFAULT_IDLE_MILLIS, new Opener() {
+                @Override
+                public HConnection open(HbaseSetting setting) throws IOException {
+                    return HbaseUtil.createConnection(HbaseUtil.createConf(setting));
+                }
+            });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("connection-shutdown") {
+            @Override
+            public void run() {
+                INSTANCE.shutdown();
+            }
+        });
+    }
+    private final ConcurrentMap<String, Entry> entries = Maps.newConcurrentMap();
+    private final long idleMillis;
+    private final Opener opener;
+    private final ScheduledExecutorService reaper;
+    private ExecutorService executor;
+
+    /**
+     * creates the connection of a setting
+     */
+    public interface Opener {
+
+        HConnection open(HbaseSetting setting) throws IOException;
+    }
+
+    /**
+     * @param idleMillis time an unused connection stays open
+     * @param opener
+     */
+    public ConnectionManager(long idleMillis, Opener opener) {
+        this.idleMillis = idleMillis;
+        this.opener = opener;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("connection-reaper-%d").build());
+        long period = Math.max(idleMillis / 4, 10);
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                closeIdle();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static ConnectionManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * add or replace the setting of a connection. an open connection of a
+     * different older setting is closed, its holders keep holding the name
+     * and get the new connection
+     *
+     * @param setting
+     */
+    public void register(HbaseSetting setting) {
+        Entry entry = new Entry(setting);
+        Entry old = entries.putIfAbsent(setting.getName(), entry);
+        if (old == null) {
+            return;
+        }
+        if (old.setting.toString().equals(setting.toString())) {
+            return;
+        }
+        entry.references = old.close();
+        entries.put(setting.getName(), entry);
+    }
+
+    /**
+     * open the connection if needed and hold it until
+     * {@link #release(String)}
+     *
+     * @param name setting name
+     * @return
+     * @throws IOException if the setting is unknown or the connection
+     * fails
+     */
+    public HConnection acquire(String name) throws IOException {
+        return entry(name).acquire();
+    }
+
+    /**
+     * hold the connection without opening it now, the next
+     * {@link #acquire(String)} opens it. for holders on the event dispatch
+     * thread
+     *
+     * @param name setting name
+     * @throws IOException if the setting is unknown
+     */
+    public void retain(String name) throws IOException {
+        entry(name).retain();
+    }
+
+    /**
+     * @param name setting name
+     */
+    public void release(String name) {
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.release();
+        }
+    }
+
+    /**
+     * the open connection, for callers running while someone holds it
+     *
+     * @param name setting name
+     * @return null if unknown or closed
+     */
+    public HConnection getConnection(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.get();
+    }
+
+    /**
+     * the admin of a connection opened here, kept until the connection is
+     * closed. do not close it. the admin keeps no state between calls,
+     * threads share it
+     *
+     * @param connection
+     * @return
+     * @throws IOException if the connection was not opened here or the
+     * master is not reachable
+     */
+    public HBaseAdmin getAdmin(HConnection connection) throws IOException {
+        for (Entry entry : entries.values()) {
+            HBaseAdmin admin = entry.getAdmin(connection);
+            if (admin != null) {
+                return admin;
+            }
+        }
+        throw new IOException("connection is not open");
+    }
+
+    /**
+     * executor shared by short background work, its threads are daemons
+     *
+     * @return
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(WORKER_THREADS,
+                    new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("hbase-worker-%d").build());
+        }
+        return executor;
+    }
+
+    /**
+     * close the connection of a setting now, even if it is held
+     *
+     * @param name
+     */
+    public void close(String name) {
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.close();
+        }
+    }
+
+    /**
+     * close all connections and stop the threads
+     */
+    public void shutdown() {
+        reaper.shutdownNow();
+        for (Entry entry : entries.values()) {
+            entry.close();
+        }
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+    void closeIdle() {
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries.values()) {
+            entry.closeIfIdle(now);
+        }
+    }
+
+    private Entry entry(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IOException("unknown connection " + name);
+        }
+        return entry;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("connections", entries.values())
+                .add("idleMillis", idleMillis)
+                .toString();
+    }
+
+    /**
+     * a setting and its connection while open. opening can take long, it
+     * only holds the open lock so the reference count and the open
+     * connection can be read meanwhile
+     */
+    private class Entry {
+
+        private final HbaseSetting setting;
+        private final Object openLock = new Object();
+        private volatile HConnection connection;
+        private HBaseAdmin admin;
+        private int references;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Entry(HbaseSetting setting) {
+            this.setting = setting;
+        }
+
+        HConnection acquire() throws IOException {
+            retain();
+            try {
+                return open();
+            } catch (IOException e) {
+                release();
+                throw e;
+            }
+        }
+
+        private HConnection open() throws IOException {
+            synchronized (openLock) {
+                HConnection current = connection;
+                if (current == null) {
+                    long start = System.currentTimeMillis();
+                    current = opener.open(setting);
+                    connection = current;
+                    logger.info("opened connection {} in {} ms", setting.getName(),
+                            System.currentTimeMillis() - start);
+                }
+                return current;
+            }
+        }
+
+        synchronized void retain() {
+            references++;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        synchronized void release() {
+            if (references > 0) {
+                references--;
+            }
+            lastUsed = System.currentTimeMillis();
+        }
+
+        HConnection get() {
+            lastUsed = System.currentTimeMillis();
+            return connection;
+        }
+
+        /**
+         * the admin is made outside the lock, it asks for the master
+         */
+        HBaseAdmin getAdmin(HConnection connection) throws IOException {
+            synchronized (this) {
+                if (connection == null || this.connection != connection) {
+                    return null;
+                }
+                lastUsed = System.currentTimeMillis();
+                if (admin != null) {
+                    return admin;
+                }
+            }
+            HBaseAdmin created = new HBaseAdmin(connection);
+            synchronized (this) {
+                if (this.connection == connection && admin == null) {
+                    admin = created;
+                    return admin;
+                }
+            }
+            Closeables.closeQuietly(created);
+            return getAdmin(connection);
+        }
+
+        void closeIfIdle(long now) {
+            synchronized (openLock) {
+                synchronized (this) {
+                    if (connection != null && references == 0 && now - lastUsed > idleMillis) {
+                        logger.info("closing idle connection {}", setting.getName());
+                        close();
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return references held before the close
+         */
+        int close() {
+            synchronized (openLock) {
+                synchronized (this) {
+                    int held = references;
+                    references = 0;
+                    if (connection != null) {
+                        if (admin != null) {
+                            Closeables.closeQuietly(admin);
+                        }
+                        Closeables.closeQuietly(connection);
+                        connection = null;
+                        admin = null;
+                    }
+                    return held;
+                }
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return setting.getName() + (connection == null ? " closed" : " open x" + references);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import org.nll.hbase.ui.model.CopyStats;
+
+/**
+ * progress of a table copy, called on the thread running the copy about
+ * once a second.
+ *
+ * @author fivesmallq
+ */
+public interface CopyListener {
+
+    /**
+     * @param stats rows and regions copied so far
+     */
+    void progress(CopyStats stats);
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+/**
+ * progress of a parallel row count.
+ *
+ * @author fivesmallq
+ */
+public interface CountListener {
+
+    /**
+     * one region was counted, called on the scan threads
+     *
+     * @param range the counted part of the region
+     * @param rows rows in the range
+     * @param counted regions counted so far, this one included
+     * @param total regions to count
+     */
+    void regionCounted(ScanRange range, long rows, int counted, int total);
+}
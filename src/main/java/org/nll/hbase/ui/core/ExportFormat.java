@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+/**
+ * file formats of an export.
+ *
+ * @author fivesmallq
+ */
+public enum ExportFormat {
+
+    /**
+     * one line per row, a column per family:qualifier
+     */
+    CSV(".csv"),
+    /**
+     * one json object per row, rowkey plus family:qualifier fields
+     */
+    JSONL(".jsonl");
+    private final String extension;
+
+    private ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * format of a file name, a .gz suffix is ignored
+     *
+     * @param fileName
+     * @return null if the extension is unknown
+     */
+    public static ExportFormat of(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".json")) {
+            return JSONL;
+        }
+        for (ExportFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
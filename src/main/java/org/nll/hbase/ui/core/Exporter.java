@@ -0,0 +1,473 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.alibaba.fastjson.JSON;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.Result;
+import org.nll.hbase.ui.model.ExportStats;
+import org.nll.hbase.ui.model.FamilyData;
+import org.nll.hbase.ui.model.HbaseData;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.nll.hbase.ui.util.HbaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * streams a query range to a csv or json lines file.
+ *
+ * scanning, encoding and writing run on their own threads, joined by
+ * bounded queues: rows wait for the encoder, encoded chunks wait for the
+ * writer, and a full queue holds back the stage before it. memory stays the
+ * same whatever the row count. the whole query range is exported, the page
+ * size is ignored. with parallel on, regions are scanned at the same time
+ * on a pool of the export and their rows written in rowkey order. the pool
+ * is not shared, a region scan waiting for its turn to be written holds a
+ * thread until then.
+ *
+ * rows already read into a {@link PageStore} can be written from its pages,
+ * in memory or spilled, instead of scanning the table again.
+ *
+ * csv columns are the given ones, or the columns of the first rows: the
+ * header has to be written before the rest of the rows are seen, values of
+ * columns showing up later are left out and counted.
+ *
+ * @author fivesmallq
+ */
+public class Exporter {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(Exporter.class);
+    public static final int HEADER_SAMPLE_ROWS = 1000;
+    private static final int ROW_QUEUE_SIZE = 1000;
+    private static final int CHUNK_QUEUE_SIZE = 16;
+    private static final int CHUNK_CHARS = 64 * 1024;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long PROGRESS_MILLIS = 1000;
+    public static final int DEFAULT_PARALLELISM = 4;
+    private static final String ROWKEY = "rowkey";
+    private static final HbaseData END_ROW = new HbaseData();
+    private static final byte[] END_CHUNK = new byte[0];
+    private final HConnection connection;
+    private final ExportFormat format;
+    private boolean gzip;
+    private boolean parallel;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private List<String> columns;
+    private ColumnCodecs codecs = ColumnCodecs.DEFAULT;
+    private Iterator<RowPage> pages;
+
+    public Exporter(HConnection connection, ExportFormat format) {
+        this.connection = connection;
+        this.format = format;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * scan regions in parallel, not used for a rowkey list
+     *
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * regions scanned at the same time by a parallel export
+     *
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * csv columns as family:qualifier
+     *
+     * @param columns null to take them from the first rows
+     */
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * codecs the values are written with
+     *
+     * @param codecs
+     */
+    public void setCodecs(ColumnCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    /**
+     * write these rows instead of scanning, they have to be the rows of the
+     * query exported, see {@link PageStore#readAll()}
+     *
+     * @param pages null to scan
+     */
+    public void setPages(Iterator<RowPage> pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * export to a file, a partly written file is deleted
+     *
+     * @param query
+     * @param file
+     * @param listener may be null
+     * @return
+     * @throws Exception
+     */
+    public ExportStats export(HbaseQuery query, File file, ExportListener listener)
+            throws Exception {
+        OutputStream out = new FileOutputStream(file);
+        boolean done = false;
+        try {
+            ExportStats stats = export(query, out, listener);
+            out.close();
+            done = true;
+            return stats;
+        } finally {
+            if (!done) {
+                Closeables.closeQuietly(out);
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * export to a stream, the stream is flushed but not closed
+     *
+     * @param query
+     * @param output
+     * @param listener may be null
+     * @return
+     * @throws Exception the first error of any stage, InterruptedException
+     * when the caller is interrupted
+     */
+    public ExportStats export(HbaseQuery query, OutputStream output, ExportListener listener)
+            throws Exception {
+        final HbaseQuery exportQuery = query.copy();
+        exportQuery.setPageSize(0);
+        final BlockingQueue<HbaseData> rows = new ArrayBlockingQueue<HbaseData>(ROW_QUEUE_SIZE);
+        final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(CHUNK_QUEUE_SIZE);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicLong encoded = new AtomicLong();
+        final AtomicInteger skipped = new AtomicInteger();
+        Thread scanner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scan(exportQuery, rows, cancelled);
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    put(rows, END_ROW, cancelled);
+                }
+            }
+        }, "export-scan");
+        Thread encoder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    encode(rows, chunks, cancelled, encoded, skipped);
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    put(chunks, END_CHUNK, cancelled);
+                    if (error.get() != null) {
+                        // stop the scan, the writer stops on the error
+                        cancelled.set(true);
+                    }
+                }
+            }
+        }, "export-encode");
+        scanner.setDaemon(true);
+        encoder.setDaemon(true);
+        long start = System.currentTimeMillis();
+        CountingOutputStream counting = new CountingOutputStream(output);
+        OutputStream out = new BufferedOutputStream(counting, BUFFER_SIZE);
+        GZIPOutputStream zip = null;
+        if (gzip) {
+            zip = new GZIPOutputStream(out, BUFFER_SIZE);
+            out = zip;
+        }
+        ExportStats stats = new ExportStats();
+        scanner.start();
+        encoder.start();
+        try {
+            long reported = start;
+            boolean ended = false;
+            // a failed stage may never send the end chunk
+            while (!ended && error.get() == null && !cancelled.get()) {
+                byte[] chunk = chunks.poll(100, TimeUnit.MILLISECONDS);
+                if (chunk == END_CHUNK) {
+                    ended = true;
+                } else if (chunk != null) {
+                    out.write(chunk);
+                }
+                long now = System.currentTimeMillis();
+                if (listener != null && now - reported >= PROGRESS_MILLIS) {
+                    reported = now;
+                    listener.progress(stats(stats, encoded, counting, skipped, now - start));
+                }
+            }
+            if (error.get() != null) {
+                Throwables.propagateIfInstanceOf(error.get(), Exception.class);
+                throw Throwables.propagate(error.get());
+            }
+            if (!ended) {
+                throw new IllegalStateException("export stopped before the end");
+            }
+            if (zip != null) {
+                zip.finish();
+            }
+            out.flush();
+        } finally {
+            cancelled.set(true);
+            scanner.interrupt();
+            encoder.interrupt();
+        }
+        stats(stats, encoded, counting, skipped, System.currentTimeMillis() - start);
+        if (listener != null) {
+            listener.progress(stats);
+        }
+        logger.info("exported {}: {}", exportQuery.getTableName(), stats);
+        if (stats.getSkippedColumns() > 0) {
+            logger.warn("{} columns not in the csv header were left out",
+                    stats.getSkippedColumns());
+        }
+        return stats;
+    }
+
+    private static ExportStats stats(ExportStats stats, AtomicLong rows,
+            CountingOutputStream out, AtomicInteger skipped, long millis) {
+        stats.setRows(rows.get());
+        stats.setBytes(out.getCount());
+        stats.setSkippedColumns(skipped.get());
+        stats.setMillis(millis);
+        return stats;
+    }
+
+    private void scan(HbaseQuery query, final BlockingQueue<HbaseData> rows,
+            final AtomicBoolean cancelled) throws Exception {
+        final RowHandler handler = new RowHandler() {
+            @Override
+            public boolean handle(HbaseData data) throws Exception {
+                return put(rows, data, cancelled);
+            }
+        };
+        if (pages != null) {
+            while (pages.hasNext()) {
+                RowPage page = pages.next();
+                for (int row = 0; row < page.getRowCount(); row++) {
+                    if (!handler.handle(page.toHbaseData(row, codecs))) {
+                        return;
+                    }
+                }
+            }
+        } else if (parallel && HbaseUtil.lookupRows(query) == null) {
+            ParallelScanner scanner = new ParallelScanner(connection, parallelism);
+            try {
+                scanner.setCodecs(codecs);
+                scanner.scan(query, handler, true);
+            } finally {
+                scanner.close();
+            }
+        } else {
+            HbaseUtil.scanResults(connection, query, new ResultHandler() {
+                @Override
+                public boolean handle(Result result) throws Exception {
+                    return handler.handle(HbaseUtil.toHbaseData(result, codecs));
+                }
+            });
+        }
+    }
+
+    /**
+     * turn rows into chunks of lines until the end row
+     */
+    private void encode(BlockingQueue<HbaseData> rows, BlockingQueue<byte[]> chunks,
+            AtomicBoolean cancelled, AtomicLong encoded, AtomicInteger skipped)
+            throws InterruptedException {
+        StringBuilder text = new StringBuilder(CHUNK_CHARS + 1024);
+        boolean csv = format == ExportFormat.CSV;
+        List<String> header = columns;
+        Set<String> known = header == null ? null : Sets.newHashSet(header);
+        Set<String> unknown = Sets.newHashSet();
+        List<HbaseData> sample = csv && header == null ? Lists.<HbaseData>newArrayList() : null;
+        boolean headerWritten = !csv;
+        while (!cancelled.get()) {
+            HbaseData row = rows.poll(100, TimeUnit.MILLISECONDS);
+            if (row == null) {
+                continue;
+            }
+            boolean end = row == END_ROW;
+            List<HbaseData> pending;
+            if (sample != null) {
+                // csv columns from the first rows
+                if (!end) {
+                    sample.add(row);
+                }
+                if (!end && sample.size() < HEADER_SAMPLE_ROWS) {
+                    continue;
+                }
+                Set<String> names = Sets.newLinkedHashSet();
+                for (HbaseData data : sample) {
+                    names.addAll(data.getDatas().keySet());
+                }
+                header = Lists.newArrayList(names);
+                known = names;
+                pending = sample;
+                sample = null;
+            } else {
+                pending = end ? Lists.<HbaseData>newArrayList() : Lists.newArrayList(row);
+            }
+            if (!headerWritten) {
+                appendCsvHeader(text, header);
+                headerWritten = true;
+            }
+            for (HbaseData data : pending) {
+                if (csv) {
+                    appendCsv(text, data, header, known, unknown);
+                } else {
+                    appendJson(text, data);
+                }
+                encoded.incrementAndGet();
+            }
+            if (end || text.length() >= CHUNK_CHARS) {
+                if (text.length() > 0 && !put(chunks, text.toString().getBytes(Charsets.UTF_8),
+                        cancelled)) {
+                    return;
+                }
+                text.setLength(0);
+                skipped.set(unknown.size());
+            }
+            if (end) {
+                return;
+            }
+        }
+    }
+
+    private static void appendCsvHeader(StringBuilder text, List<String> header) {
+        text.append(ROWKEY);
+        for (String column : header) {
+            text.append(',');
+            appendCsvValue(text, column);
+        }
+        text.append('\n');
+    }
+
+    private static void appendCsv(StringBuilder text, HbaseData row, List<String> header,
+            Set<String> known, Set<String> unknown) {
+        appendCsvValue(text, row.getRowkey());
+        Map<String, FamilyData> datas = row.getDatas();
+        for (String column : header) {
+            text.append(',');
+            FamilyData data = datas.get(column);
+            if (data != null) {
+                appendCsvValue(text, data.getValue());
+            }
+        }
+        text.append('\n');
+        for (String column : datas.keySet()) {
+            if (!known.contains(column)) {
+                unknown.add(column);
+            }
+        }
+    }
+
+    /**
+     * quoted when it has a comma, quote or line break, quotes are doubled
+     */
+    static void appendCsvValue(StringBuilder text, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            text.append(value);
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                text.append('"');
+            }
+            text.append(c);
+        }
+        text.append('"');
+    }
+
+    private static void appendJson(StringBuilder text, HbaseData row) {
+        Map<String, String> fields = Maps.newLinkedHashMap();
+        fields.put(ROWKEY, row.getRowkey());
+        for (Map.Entry<String, FamilyData> entry : row.getDatas().entrySet()) {
+            fields.put(entry.getKey(), entry.getValue().getValue());
+        }
+        text.append(JSON.toJSONString(fields)).append('\n');
+    }
+
+    /**
+     * put unless the export or import was cancelled
+     *
+     * @return false if cancelled
+     */
+    static <T> boolean put(BlockingQueue<T> queue, T item, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get()) {
+                if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
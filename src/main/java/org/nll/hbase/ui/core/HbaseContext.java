@@ -17,7 +17,7 @@ package org.nll.hbase.ui.core;
 
 import com.google.common.collect.Maps;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.hadoop.hbase.client.HConnection;
 import org.nll.hbase.ui.model.HbaseSchema;
 import org.nll.hbase.ui.model.HbaseSetting;
@@ -28,16 +28,48 @@ import org.nll.hbase.ui.model.HbaseSetting;
  */
 public class HbaseContext {
 
-    private static Map<String, HbaseSetting> settingMap = Maps.newHashMap();
-    private static Map<String, HConnection> connectionMap = Maps.newHashMap();
-    private static Map<String, List<HbaseSchema>> schemaMap = Maps.newHashMap();
+    private static ConcurrentMap<String, HbaseSetting> settingMap = Maps.newConcurrentMap();
+    private static ConcurrentMap<String, List<HbaseSchema>> schemaMap = Maps.newConcurrentMap();
+    private static ConcurrentMap<String, ColumnDictionary> dictionaryMap = Maps.newConcurrentMap();
+    private static ConcurrentMap<String, ResultCache> cacheMap = Maps.newConcurrentMap();
+    private static ConcurrentMap<String, ColumnCodecs> codecsMap = Maps.newConcurrentMap();
+
+    private static LocalStore localStore = new LocalStore(LocalStore.defaultFile());
 
     public static void saveSetting(HbaseSetting hbaseSetting) {
-        settingMap.put(hbaseSetting.getName(), hbaseSetting);
+        saveSetting(hbaseSetting, false);
+    }
+
+    /**
+     * keep the setting for this run and in the local store
+     *
+     * @param hbaseSetting
+     * @param connected true if it is the setting connected now
+     */
+    public static void saveSetting(HbaseSetting hbaseSetting, boolean connected) {
+        if (settingMap.put(hbaseSetting.getName(), hbaseSetting) != hbaseSetting) {
+            // codecs of the old setting
+            String prefix = hbaseSetting.getName() + "/";
+            for (String key : codecsMap.keySet()) {
+                if (key.startsWith(prefix)) {
+                    codecsMap.remove(key);
+                }
+            }
+        }
+        localStore.saveSetting(hbaseSetting, connected);
+    }
+
+    /**
+     * settings and tables kept between runs
+     *
+     * @return
+     */
+    public static LocalStore getLocalStore() {
+        return localStore;
     }
 
-    public static void addConn(String name, HConnection connection) {
-        connectionMap.put(name, connection);
+    public static HbaseSetting getSetting(String name) {
+        return settingMap.get(name);
     }
 
     public static void addSchema(String name, List<HbaseSchema> hbaseSchemas) {
@@ -48,7 +80,117 @@ public class HbaseContext {
         return schemaMap.get(name);
     }
 
+    /**
+     * @param name connection name
+     * @param tableName
+     * @return null if unknown
+     */
+    public static HbaseSchema getSchema(String name, String tableName) {
+        List<HbaseSchema> schemas = schemaMap.get(name);
+        if (schemas != null) {
+            for (HbaseSchema schema : schemas) {
+                if (schema.getTableName().equals(tableName)) {
+                    return schema;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the open connection, see {@link ConnectionManager#getConnection}
+     *
+     * @param name connection name
+     * @return null if not open
+     */
     public static HConnection getConn(String name) {
-        return connectionMap.get(name);
+        return ConnectionManager.getInstance().getConnection(name);
+    }
+
+    /**
+     * column dictionary of a table, created on first use
+     *
+     * @param name connection name
+     * @param tableName
+     * @return
+     */
+    public static ColumnDictionary getColumnDictionary(String name, String tableName) {
+        String key = name + "/" + tableName;
+        ColumnDictionary dictionary = dictionaryMap.get(key);
+        if (dictionary == null) {
+            dictionaryMap.putIfAbsent(key, new ColumnDictionary());
+            dictionary = dictionaryMap.get(key);
+        }
+        return dictionary;
+    }
+
+    /**
+     * result cache of a connection, created on first use with the size of
+     * the connection setting
+     *
+     * @param name connection name
+     * @return
+     */
+    public static ResultCache getResultCache(String name) {
+        ResultCache cache = cacheMap.get(name);
+        if (cache == null) {
+            HbaseSetting setting = settingMap.get(name);
+            long maxBytes = setting == null ? ResultCache.DEFAULT_MAX_BYTES
+                    : setting.getResultCacheMB() * 1024L * 1024L;
+            cacheMap.putIfAbsent(name, new ResultCache(maxBytes));
+            cache = cacheMap.get(name);
+        }
+        return cache;
+    }
+
+    /**
+     * value codecs of a table from the rules of the connection setting
+     *
+     * @param name connection name
+     * @param tableName
+     * @return
+     */
+    public static ColumnCodecs getCodecs(String name, String tableName) {
+        String key = name + "/" + tableName;
+        ColumnCodecs codecs = codecsMap.get(key);
+        if (codecs == null) {
+            HbaseSetting setting = settingMap.get(name);
+            if (setting == null) {
+                return ColumnCodecs.DEFAULT;
+            }
+            codecsMap.putIfAbsent(key, new ColumnCodecs(tableName, setting.getCodecs()));
+            codecs = codecsMap.get(key);
+        }
+        return codecs;
+    }
+
+    /**
+     * set the codec of a column, family or table and keep it in the setting
+     *
+     * @param name connection name
+     * @param tableName
+     * @param column family:qualifier or family, null for the whole table
+     * @param codec codec name, null to remove the rule
+     * @return the codecs of the table with the new rule
+     */
+    public static ColumnCodecs setCodec(String name, String tableName, String column,
+            String codec) {
+        HbaseSetting setting = settingMap.get(name);
+        if (setting == null) {
+            return ColumnCodecs.DEFAULT;
+        }
+        ColumnCodecs codecs;
+        synchronized (setting) {
+            String key = ColumnCodecs.ruleKey(tableName, column);
+            if (codec == null) {
+                setting.getCodecs().remove(key);
+            } else {
+                setting.getCodecs().put(key, codec);
+            }
+            codecs = new ColumnCodecs(tableName, setting.getCodecs());
+            codecsMap.put(name + "/" + tableName, codecs);
+        }
+        saveSetting(setting);
+        return codecs;
     }
 }
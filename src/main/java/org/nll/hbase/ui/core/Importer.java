@@ -0,0 +1,609 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import com.google.common.io.CountingInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.ImportStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * writes the rows of a csv or json lines file to a table, the files
+ * {@link Exporter} writes can be read back.
+ *
+ * the calling thread parses the input and hands the puts to writer threads
+ * through bounded queues. rows are grouped by region, every writer gets the
+ * rows of its own regions so a flush of its write buffer goes to few
+ * servers. writers keep auto flush off and send a batch when the buffer is
+ * full.
+ *
+ * csv needs a header, the rowkey column is the one named rowkey or else the
+ * first one, the others are family:qualifier. a json line is an object with
+ * a rowkey field and family:qualifier fields. empty values are not written.
+ * rows that can not be read or that the servers refuse are counted and the
+ * first ones reported, the import goes on.
+ *
+ * @author fivesmallq
+ */
+public class Importer {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(Importer.class);
+    public static final int DEFAULT_WRITERS = 4;
+    public static final long DEFAULT_WRITE_BUFFER = 4 * 1024 * 1024;
+    private static final int QUEUE_SIZE = 1000;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long PROGRESS_MILLIS = 1000;
+    private static final String ROWKEY = "rowkey";
+    private static final Put END = new Put(new byte[]{0});
+    private final HConnection connection;
+    private final String tableName;
+    private final ExportFormat format;
+    private boolean gzip;
+    private int writers = DEFAULT_WRITERS;
+    private long writeBuffer = DEFAULT_WRITE_BUFFER;
+
+    public Importer(HConnection connection, String tableName, ExportFormat format) {
+        this.connection = connection;
+        this.tableName = tableName;
+        this.format = format;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public void setWriters(int writers) {
+        this.writers = Math.max(1, writers);
+    }
+
+    /**
+     * client write buffer of every writer in bytes
+     *
+     * @param writeBuffer
+     */
+    public void setWriteBuffer(long writeBuffer) {
+        this.writeBuffer = writeBuffer;
+    }
+
+    /**
+     * import a file
+     *
+     * @param file
+     * @param listener may be null
+     * @return
+     * @throws Exception
+     */
+    public ImportStats importRows(File file, ImportListener listener) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            return importRows(in, listener);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    /**
+     * import a stream, the stream is not closed. rows written before an
+     * error or a cancel stay in the table.
+     *
+     * @param input
+     * @param listener may be null
+     * @return
+     * @throws Exception a bad csv header, the first error of a writer, or
+     * InterruptedException when the caller is interrupted
+     */
+    public ImportStats importRows(InputStream input, ImportListener listener) throws Exception {
+        byte[] table = Bytes.toBytes(tableName);
+        Set<String> families = Sets.newHashSet();
+        for (HColumnDescriptor family : connection.getHTableDescriptor(table).getFamilies()) {
+            families.add(family.getNameAsString());
+        }
+        byte[][] startKeys = startKeys(connection, table);
+        CountingInputStream counting = new CountingInputStream(input);
+        RowParser parser = newParser(format, newReader(counting, gzip), families);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicReference<Exception> error = new AtomicReference<Exception>();
+        Failures failures = new Failures();
+        List<Writer> writerList = Lists.newArrayList();
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < writers; i++) {
+            Writer writer = new Writer(table, cancelled, error, failures);
+            Thread thread = new Thread(writer, "import-write-" + i);
+            thread.setDaemon(true);
+            writerList.add(writer);
+            threads.add(thread);
+        }
+        long start = System.currentTimeMillis();
+        ImportStats stats = new ImportStats();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        try {
+            long reported = start;
+            while (!cancelled.get()) {
+                long now = System.currentTimeMillis();
+                if (listener != null && now - reported >= PROGRESS_MILLIS) {
+                    reported = now;
+                    listener.progress(stats(stats, writerList, failures, counting, now - start));
+                }
+                Put put;
+                try {
+                    put = parser.next();
+                } catch (RuntimeException e) {
+                    failures.add("line " + parser.getLine() + ": " + e.getMessage());
+                    continue;
+                }
+                if (put == null) {
+                    break;
+                }
+                Writer writer = writerList.get(regionIndex(startKeys, put.getRow())
+                        % writerList.size());
+                if (!Exporter.put(writer.queue, put, cancelled)) {
+                    break;
+                }
+            }
+            for (Writer writer : writerList) {
+                Exporter.put(writer.queue, END, cancelled);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            if (error.get() != null) {
+                throw error.get();
+            }
+        } finally {
+            cancelled.set(true);
+        }
+        stats(stats, writerList, failures, counting, System.currentTimeMillis() - start);
+        if (listener != null) {
+            listener.progress(stats);
+        }
+        logger.info("imported {}: {}", tableName, stats);
+        for (String failure : stats.getFailures()) {
+            logger.warn("import {} failed: {}", tableName, failure);
+        }
+        return stats;
+    }
+
+    private static ImportStats stats(ImportStats stats, List<Writer> writers, Failures failures,
+            CountingInputStream in, long millis) {
+        long rows = 0;
+        for (Writer writer : writers) {
+            rows += writer.sent.get();
+        }
+        stats.setRows(rows);
+        stats.setFailedRows(failures.getCount());
+        stats.setFailures(failures.getReported());
+        stats.setBytes(in.getCount());
+        stats.setMillis(millis);
+        return stats;
+    }
+
+    /**
+     * text reader of the input, the input is read through a buffer
+     *
+     * @param input
+     * @param gzip
+     * @return
+     * @throws IOException
+     */
+    static BufferedReader newReader(InputStream input, boolean gzip) throws IOException {
+        InputStream in = new BufferedInputStream(input, BUFFER_SIZE);
+        if (gzip) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(in, Charsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @param format
+     * @param reader
+     * @param families families of the table
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException for a bad csv header
+     */
+    static RowParser newParser(ExportFormat format, BufferedReader reader, Set<String> families)
+            throws IOException {
+        return format == ExportFormat.CSV ? new CsvParser(reader, families)
+                : new JsonParser(reader, families);
+    }
+
+    /**
+     * region start keys of a table, sorted
+     *
+     * @param connection
+     * @param table
+     * @return
+     * @throws IOException
+     */
+    static byte[][] startKeys(HConnection connection, byte[] table) throws IOException {
+        List<HRegionLocation> locations = connection.locateRegions(table);
+        if (locations == null || locations.isEmpty()) {
+            return new byte[][]{new byte[0]};
+        }
+        byte[][] keys = new byte[locations.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = locations.get(i).getRegionInfo().getStartKey();
+        }
+        Arrays.sort(keys, Bytes.BYTES_COMPARATOR);
+        return keys;
+    }
+
+    /**
+     * index of the region holding the row
+     *
+     * @param startKeys sorted start keys, the first one empty
+     * @param row
+     * @return
+     */
+    static int regionIndex(byte[][] startKeys, byte[] row) {
+        int low = 0;
+        int high = startKeys.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (Bytes.compareTo(startKeys[middle], row) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * read a csv record, a quoted value may hold line breaks
+     *
+     * @param reader
+     * @param fields cleared and filled with the values
+     * @return lines read, 0 at the end of the input
+     * @throws IOException
+     */
+    static int readCsvRecord(BufferedReader reader, List<String> fields) throws IOException {
+        fields.clear();
+        String line = reader.readLine();
+        if (line == null) {
+            return 0;
+        }
+        int lines = 1;
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    fields.add(field.toString());
+                    return lines;
+                }
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IllegalArgumentException("quote not closed");
+                }
+                lines++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+    }
+
+    /**
+     * family and qualifier of a family:qualifier column
+     */
+    private static byte[][] column(String name, Set<String> families) {
+        int colon = name.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("column is not family:qualifier: " + name);
+        }
+        String family = name.substring(0, colon);
+        if (!families.contains(family)) {
+            throw new IllegalArgumentException("no family " + family);
+        }
+        return new byte[][]{Bytes.toBytes(family), Bytes.toBytes(name.substring(colon + 1))};
+    }
+
+    /**
+     * turns the input into puts
+     */
+    static abstract class RowParser {
+
+        protected final BufferedReader reader;
+        protected final Set<String> families;
+        /**
+         * first line of the last row read
+         */
+        protected int line;
+
+        RowParser(BufferedReader reader, Set<String> families) {
+            this.reader = reader;
+            this.families = families;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        /**
+         * @return null at the end of the input
+         * @throws IOException
+         * @throws RuntimeException for a row that can not be read, the next
+         * call reads the row after it
+         */
+        abstract Put next() throws IOException;
+    }
+
+    private static class CsvParser extends RowParser {
+
+        private final List<String> fields = Lists.newArrayList();
+        private final byte[][][] columns;
+        private final int rowkeyIndex;
+        private int lines;
+
+        CsvParser(BufferedReader reader, Set<String> families) throws IOException {
+            super(reader, families);
+            lines = readCsvRecord(reader, fields);
+            if (lines == 0) {
+                throw new IllegalArgumentException("no csv header");
+            }
+            int index = 0;
+            for (int i = 0; i < fields.size(); i++) {
+                if (ROWKEY.equalsIgnoreCase(fields.get(i).trim())) {
+                    index = i;
+                }
+            }
+            rowkeyIndex = index;
+            columns = new byte[fields.size()][][];
+            for (int i = 0; i < fields.size(); i++) {
+                if (i != rowkeyIndex) {
+                    columns[i] = column(fields.get(i).trim(), families);
+                }
+            }
+        }
+
+        @Override
+        Put next() throws IOException {
+            while (true) {
+                line = lines + 1;
+                int read = readCsvRecord(reader, fields);
+                if (read == 0) {
+                    return null;
+                }
+                lines += read;
+                if (fields.size() == 1 && fields.get(0).length() == 0) {
+                    continue;
+                }
+                if (fields.size() > columns.length) {
+                    throw new IllegalArgumentException(fields.size() + " values, the header has "
+                            + columns.length);
+                }
+                if (rowkeyIndex >= fields.size() || fields.get(rowkeyIndex).length() == 0) {
+                    throw new IllegalArgumentException("no rowkey");
+                }
+                Put put = new Put(Bytes.toBytes(fields.get(rowkeyIndex)));
+                for (int i = 0; i < fields.size(); i++) {
+                    String value = fields.get(i);
+                    if (i != rowkeyIndex && value.length() > 0) {
+                        put.add(columns[i][0], columns[i][1], Bytes.toBytes(value));
+                    }
+                }
+                if (put.isEmpty()) {
+                    throw new IllegalArgumentException("no values");
+                }
+                return put;
+            }
+        }
+    }
+
+    private static class JsonParser extends RowParser {
+
+        private final Map<String, byte[][]> columns = Maps.newHashMap();
+
+        JsonParser(BufferedReader reader, Set<String> families) {
+            super(reader, families);
+        }
+
+        @Override
+        Put next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                line++;
+                if (text == null) {
+                    return null;
+                }
+            } while (text.trim().length() == 0);
+            JSONObject object = JSON.parseObject(text);
+            if (object == null) {
+                throw new IllegalArgumentException("not a json object");
+            }
+            Object rowkey = object.get(ROWKEY);
+            if (rowkey == null || rowkey.toString().length() == 0) {
+                throw new IllegalArgumentException("no rowkey");
+            }
+            Put put = new Put(Bytes.toBytes(rowkey.toString()));
+            for (Map.Entry<String, Object> entry : object.entrySet()) {
+                if (ROWKEY.equals(entry.getKey()) || entry.getValue() == null) {
+                    continue;
+                }
+                byte[][] column = columns.get(entry.getKey());
+                if (column == null) {
+                    column = column(entry.getKey(), families);
+                    columns.put(entry.getKey(), column);
+                }
+                put.add(column[0], column[1], Bytes.toBytes(entry.getValue().toString()));
+            }
+            if (put.isEmpty()) {
+                throw new IllegalArgumentException("no values");
+            }
+            return put;
+        }
+    }
+
+    /**
+     * failed rows of an import, shared by the parser and the writers
+     */
+    static class Failures {
+
+        private long count;
+        private final List<String> reported = Lists.newArrayList();
+
+        synchronized void add(String failure) {
+            count++;
+            if (reported.size() < ImportStats.MAX_REPORTED_FAILURES) {
+                reported.add(failure);
+            }
+        }
+
+        synchronized void add(RetriesExhaustedWithDetailsException e) {
+            for (int i = 0; i < e.getNumExceptions(); i++) {
+                add("row " + Bytes.toStringBinary(e.getRow(i).getRow()) + ": "
+                        + e.getCause(i).getMessage());
+            }
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized List<String> getReported() {
+            return Lists.newArrayList(reported);
+        }
+    }
+
+    /**
+     * sends the puts of its queue through its own table handle
+     */
+    private class Writer implements Runnable {
+
+        private final BlockingQueue<Put> queue = new ArrayBlockingQueue<Put>(QUEUE_SIZE);
+        /**
+         * puts sent, less the ones refused
+         */
+        private final AtomicLong sent = new AtomicLong();
+        private final byte[] table;
+        private final AtomicBoolean cancelled;
+        private final AtomicReference<Exception> error;
+        private final Failures failures;
+
+        Writer(byte[] table, AtomicBoolean cancelled, AtomicReference<Exception> error,
+                Failures failures) {
+            this.table = table;
+            this.cancelled = cancelled;
+            this.error = error;
+            this.failures = failures;
+        }
+
+        @Override
+        public void run() {
+            HTableInterface handle = null;
+            try {
+                handle = connection.getTable(table);
+                // drop refused puts from the buffer instead of sending them again
+                handle.setAutoFlush(false, true);
+                handle.setWriteBufferSize(writeBuffer);
+                while (!cancelled.get()) {
+                    Put put = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (put == END) {
+                        break;
+                    }
+                    if (put != null) {
+                        sent.incrementAndGet();
+                        try {
+                            handle.put(put);
+                        } catch (RetriesExhaustedWithDetailsException e) {
+                            refused(e);
+                        }
+                    }
+                }
+                try {
+                    handle.flushCommits();
+                } catch (RetriesExhaustedWithDetailsException e) {
+                    refused(e);
+                }
+            } catch (Exception e) {
+                error.compareAndSet(null, e);
+                cancelled.set(true);
+            } finally {
+                if (handle != null) {
+                    try {
+                        handle.close();
+                    } catch (IOException e) {
+                        logger.warn("close import table error!", e);
+                    }
+                }
+            }
+        }
+
+        private void refused(RetriesExhaustedWithDetailsException e) {
+            sent.addAndGet(-e.getNumExceptions());
+            failures.add(e);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.alibaba.fastjson.JSON;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.nll.hbase.ui.model.HbaseSchema;
+import org.nll.hbase.ui.model.HbaseSetting;
+import org.nll.hbase.ui.model.LocalCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * connection settings and table lists kept in a local json file between
+ * runs.
+ *
+ * tables are kept by cluster, quorum and port, so settings with different
+ * names for the same cluster share them. the file is read once and written
+ * whole on every change, through a temp file so a crash never leaves half a
+ * file. a file that can not be read is ignored. thread safe.
+ *
+ * @author fivesmallq
+ */
+public class LocalStore {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(LocalStore.class);
+    private final File file;
+    private LocalCache cache;
+
+    public LocalStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * ~/.hbase-ui/cache.json
+     *
+     * @return
+     */
+    public static File defaultFile() {
+        return new File(new File(System.getProperty("user.home"), ".hbase-ui"), "cache.json");
+    }
+
+    /**
+     * @param setting
+     * @return quorum:port
+     */
+    public static String clusterKey(HbaseSetting setting) {
+        return setting.getQuorum() + ":" + setting.getPort();
+    }
+
+    private LocalCache cache() {
+        if (cache == null) {
+            cache = new LocalCache();
+            if (file.isFile()) {
+                long start = System.currentTimeMillis();
+                try {
+                    LocalCache read = JSON.parseObject(Files.toString(file, Charsets.UTF_8),
+                            LocalCache.class);
+                    if (read != null) {
+                        cache = read;
+                    }
+                    logger.info("read {} in {} ms", file, System.currentTimeMillis() - start);
+                } catch (Exception e) {
+                    logger.warn("ignore unreadable cache file " + file, e);
+                }
+            }
+        }
+        return cache;
+    }
+
+    private void save() {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            Files.createParentDirs(file);
+            Files.write(JSON.toJSONString(cache), temp, Charsets.UTF_8);
+            if (!temp.renameTo(file)) {
+                // windows does not replace on rename
+                Files.copy(temp, file);
+                temp.delete();
+            }
+        } catch (IOException e) {
+            logger.warn("write cache file error! " + file, e);
+        }
+    }
+
+    /**
+     * @return copies of the saved settings
+     */
+    public synchronized List<HbaseSetting> getSettings() {
+        List<HbaseSetting> settings = Lists.newArrayList();
+        for (String name : cache().getSettings().keySet()) {
+            settings.add(getSetting(name));
+        }
+        return settings;
+    }
+
+    /**
+     * @return null if none was connected yet
+     */
+    public synchronized HbaseSetting getLastSetting() {
+        String name = cache().getLastSetting();
+        return name == null ? null : getSetting(name);
+    }
+
+    /**
+     * @param name
+     * @return a copy of the saved setting, null if there is none
+     */
+    public synchronized HbaseSetting getSetting(String name) {
+        HbaseSetting setting = cache().getSettings().get(name);
+        return setting == null ? null : JSON.parseObject(setting.toString(), HbaseSetting.class);
+    }
+
+    /**
+     * @param setting
+     * @param last true if the setting is connected now
+     */
+    public synchronized void saveSetting(HbaseSetting setting, boolean last) {
+        cache().getSettings().put(setting.getName(), setting);
+        if (last) {
+            cache().setLastSetting(setting.getName());
+        }
+        save();
+    }
+
+    /**
+     * last known tables of the cluster, families may be out of date
+     *
+     * @param setting
+     * @return null if the cluster was never connected, else schemas not
+     * loaded in this run
+     */
+    public synchronized List<HbaseSchema> getSchemas(HbaseSetting setting) {
+        List<HbaseSchema> schemas = cache().getSchemas().get(clusterKey(setting));
+        if (schemas == null) {
+            return null;
+        }
+        List<HbaseSchema> copies = Lists.newArrayListWithCapacity(schemas.size());
+        for (HbaseSchema schema : schemas) {
+            copies.add(copyOf(schema));
+        }
+        return copies;
+    }
+
+    /**
+     * @param setting
+     * @param schemas
+     */
+    public synchronized void saveSchemas(HbaseSetting setting, List<HbaseSchema> schemas) {
+        List<HbaseSchema> copies = Lists.newArrayListWithCapacity(schemas.size());
+        for (HbaseSchema schema : schemas) {
+            synchronized (schema) {
+                copies.add(copyOf(schema));
+            }
+        }
+        cache().getSchemas().put(clusterKey(setting), copies);
+        save();
+    }
+
+    private static HbaseSchema copyOf(HbaseSchema schema) {
+        HbaseSchema copy = new HbaseSchema();
+        copy.setTableName(schema.getTableName());
+        copy.setFamilies(Lists.newArrayList(schema.getFamilies()));
+        return copy;
+    }
+}
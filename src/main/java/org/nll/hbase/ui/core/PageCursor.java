@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.nll.hbase.ui.util.HbaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * keyset pagination over a query.
+ *
+ * every page is read with a scan starting at the first rowkey of that page,
+ * so any page costs one short scan no matter how deep it is. pageSize + 1
+ * rows are read, the extra row is the first rowkey of the next page. the
+ * first rowkeys of all pages seen so far are kept, so any page seen before
+ * can be read again with a rescan of that page only. complete page reads
+ * are kept in a {@link ResultCache} when one is given, so reading a page
+ * again does not go to the cluster.
+ *
+ * @author fivesmallq
+ */
+public class PageCursor {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(PageCursor.class);
+    private final HConnection connection;
+    private final HbaseQuery query;
+    private final int pageSize;
+    /**
+     * first rowkey of each page as read, null for the start of the query
+     * range. rowkeys are not always strings
+     */
+    private final List<byte[]> pageStarts = Lists.newArrayList();
+    private volatile int lastPage = -1;
+    private final ResultCache cache;
+    private final boolean refresh;
+
+    public PageCursor(HConnection connection, HbaseQuery query) {
+        this(connection, query, null, false);
+    }
+
+    /**
+     * @param connection
+     * @param query
+     * @param cache page results, null for none
+     * @param refresh true to read every page from the cluster and replace
+     * what is cached
+     */
+    public PageCursor(HConnection connection, HbaseQuery query, ResultCache cache,
+            boolean refresh) {
+        this.connection = connection;
+        this.query = query;
+        this.pageSize = query.getPageSize();
+        this.cache = cache;
+        this.refresh = refresh;
+        pageStarts.add(null);
+    }
+
+    public HbaseQuery getQuery() {
+        return query;
+    }
+
+    public String getTableName() {
+        return query.getTableName();
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * whether the page can be read, that is all pages before it were read
+     * and the table did not end before it
+     *
+     * @param index
+     * @return
+     */
+    public synchronized boolean hasPage(int index) {
+        return index >= 0 && index < pageStarts.size()
+                && (lastPage < 0 || index <= lastPage);
+    }
+
+    /**
+     * @param index
+     * @return true if the page is known to be the last one
+     */
+    public boolean isLastPage(int index) {
+        return lastPage == index;
+    }
+
+    /**
+     * stream one page to the handler
+     *
+     * @param index
+     * @param handler
+     * @return false if the handler stopped before the page ended
+     * @throws Exception
+     */
+    public boolean read(final int index, final ResultHandler handler) throws Exception {
+        if (!hasPage(index)) {
+            throw new IllegalArgumentException("page " + index + " is not reachable yet");
+        }
+        byte[] start = pageStart(index);
+        HbaseQuery pageQuery = query.copy();
+        pageQuery.setPageSize(pageSize + 1);
+        final int[] rows = new int[1];
+        final boolean[] state = new boolean[2];
+        final ResultHandler pageHandler = new ResultHandler() {
+            @Override
+            public boolean handle(Result result) throws Exception {
+                if (rows[0] == pageSize) {
+                    // first row of the next page
+                    addPageStart(index + 1, result.getRow());
+                    state[1] = true;
+                    return false;
+                }
+                rows[0]++;
+                if (!handler.handle(result)) {
+                    state[0] = true;
+                    return false;
+                }
+                return true;
+            }
+        };
+        // toStringBinary escapes the backslash too, so no two starts share it
+        String key = cache == null ? null : ResultCache.keyOf(pageQuery)
+                + '\u0000' + (start == null ? "" : Bytes.toStringBinary(start));
+        List<Result> cached = key == null || refresh ? null : cache.get(key);
+        if (cached != null) {
+            for (Result result : cached) {
+                if (!pageHandler.handle(result)) {
+                    break;
+                }
+            }
+        } else if (key != null) {
+            final List<Result> results = Lists.newArrayList();
+            HbaseUtil.scanResults(connection, pageQuery, start, new ResultHandler() {
+                @Override
+                public boolean handle(Result result) throws Exception {
+                    results.add(result);
+                    return pageHandler.handle(result);
+                }
+            });
+            // only whole pages are cached
+            if (!state[0]) {
+                cache.put(key, results);
+            }
+        } else {
+            HbaseUtil.scanResults(connection, pageQuery, start, pageHandler);
+        }
+        if (state[0]) {
+            return false;
+        }
+        if (!state[1]) {
+            lastPage = index;
+        }
+        logger.info("read page:{} rows:{}", index, rows[0]);
+        return true;
+    }
+
+    private synchronized byte[] pageStart(int index) {
+        return pageStarts.get(index);
+    }
+
+    private synchronized void addPageStart(int index, byte[] rowkey) {
+        if (pageStarts.size() == index) {
+            pageStarts.add(rowkey);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.hadoop.hbase.client.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * rows of a paged query, addressed by row number. pages are kept in the
+ * compact {@link RowPage} format.
+ *
+ * every page except the last has exactly pageSize rows, so row n is in page
+ * n / pageSize. only the pages around the visible window are kept on the
+ * heap. with a {@link SpillStore} complete pages far away are moved to it
+ * and mapped back when they come into view, without one they are dropped
+ * and read again through the cursor. the store is not thread safe, it is
+ * meant to be used on the event dispatch thread.
+ *
+ * @author fivesmallq
+ */
+public class PageStore {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(PageStore.class);
+    /**
+     * rows kept in memory at most by default
+     */
+    public static final int MAX_CACHED_ROWS = 20000;
+    private static final int MIN_CACHED_PAGES = 3;
+    private final PageCursor cursor;
+    private final ColumnDictionary dictionary;
+    private final int pageSize;
+    private final int maxPages;
+    private final SpillStore spill;
+    private final Map<Integer, RowPage> pages = Maps.newHashMap();
+    private final Set<Integer> completePages = Sets.newHashSet();
+    private int rowCount;
+    /**
+     * highest page ever loaded
+     */
+    private int tailPage = -1;
+
+    public PageStore(PageCursor cursor, ColumnDictionary dictionary) {
+        this(cursor, dictionary, MAX_CACHED_ROWS, null);
+    }
+
+    /**
+     * @param cursor
+     * @param dictionary
+     * @param maxCachedRows rows kept in memory at most, at least three pages
+     * are kept whatever the page size
+     * @param spill store of the pages dropped from memory, null to read them
+     * again, closed with this store
+     */
+    public PageStore(PageCursor cursor, ColumnDictionary dictionary, int maxCachedRows,
+            SpillStore spill) {
+        this.cursor = cursor;
+        this.dictionary = dictionary;
+        this.pageSize = cursor.getPageSize();
+        this.maxPages = Math.max(MIN_CACHED_PAGES, maxCachedRows / pageSize);
+        this.spill = spill;
+    }
+
+    public PageCursor getCursor() {
+        return cursor;
+    }
+
+    public ColumnDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * @return null if dropped pages are not spilled
+     */
+    public SpillStore getSpill() {
+        return spill;
+    }
+
+    /**
+     * rows seen so far, including rows of dropped pages
+     *
+     * @return
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getTailPage() {
+        return tailPage;
+    }
+
+    public int pageOf(int row) {
+        return row / pageSize;
+    }
+
+    /**
+     * @param page
+     * @return null if the page is neither in memory nor spilled
+     */
+    public RowPage getPage(int page) {
+        RowPage rowPage = pages.get(page);
+        if (rowPage == null && spill != null && completePages.contains(page)) {
+            rowPage = spill.get(page, dictionary);
+            if (rowPage != null) {
+                pages.put(page, rowPage);
+            }
+        }
+        return rowPage;
+    }
+
+    /**
+     * row number inside its page
+     *
+     * @param row
+     * @return
+     */
+    public int offsetOf(int row) {
+        return row % pageSize;
+    }
+
+    /**
+     * rows of the page in memory or spilled
+     *
+     * @param page
+     * @return
+     */
+    public int getLoadedRows(int page) {
+        RowPage rowPage = getPage(page);
+        return rowPage == null ? 0 : rowPage.getRowCount();
+    }
+
+    /**
+     * whether there may be rows after the last loaded page
+     *
+     * @return
+     */
+    public boolean hasMore() {
+        return cursor.hasPage(tailPage + 1);
+    }
+
+    /**
+     * whether the page has to be read, either it was dropped or its last
+     * read did not complete
+     *
+     * @param page
+     * @return
+     */
+    public boolean needsLoad(int page) {
+        return !completePages.contains(page) && cursor.hasPage(page);
+    }
+
+    /**
+     * start reading a page, rows of an earlier read are replaced
+     *
+     * @param page
+     */
+    public void beginPage(int page) {
+        pages.put(page, new RowPage(dictionary));
+        completePages.remove(page);
+        if (spill != null) {
+            spill.remove(page);
+        }
+        tailPage = Math.max(tailPage, page);
+    }
+
+    public void append(int page, List<Result> results) {
+        RowPage rowPage = pages.get(page);
+        if (rowPage == null) {
+            return;
+        }
+        for (Result result : results) {
+            rowPage.add(result);
+        }
+        rowCount = Math.max(rowCount, page * pageSize + rowPage.getRowCount());
+    }
+
+    /**
+     * @param page
+     * @param complete false if the read was cancelled or failed
+     */
+    public void endPage(int page, boolean complete) {
+        RowPage rowPage = pages.get(page);
+        if (complete && rowPage != null) {
+            rowPage.trim();
+            completePages.add(page);
+        }
+    }
+
+    /**
+     * drop pages far from the window once more than the max pages are kept,
+     * complete pages are spilled if there is a spill store
+     *
+     * @param firstPage first page to keep, the first visible one or the
+     * one before when it is prefetched
+     * @param lastPage last page to keep, the last visible one or the last
+     * prefetched one
+     */
+    public void focus(int firstPage, int lastPage) {
+        if (pages.size() <= maxPages) {
+            return;
+        }
+        int margin = Math.max((maxPages - (lastPage - firstPage + 1)) / 2, 0);
+        Iterator<Map.Entry<Integer, RowPage>> it = pages.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, RowPage> entry = it.next();
+            int page = entry.getKey();
+            if (page < firstPage - margin || page > lastPage + margin) {
+                it.remove();
+                if (!spill(page, entry.getValue())) {
+                    completePages.remove(page);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the page can be mapped back from the spill store
+     */
+    private boolean spill(int page, RowPage rowPage) {
+        if (spill == null || !completePages.contains(page)) {
+            return false;
+        }
+        if (spill.contains(page)) {
+            // complete pages do not change, the spilled copy is still good
+            return true;
+        }
+        try {
+            return spill.put(page, rowPage);
+        } catch (IOException e) {
+            logger.warn("can not spill page " + page + ", it will be read again", e);
+            return false;
+        }
+    }
+
+    /**
+     * the pages of a query read to its end, to write them out on another
+     * thread without reading the table again. pages in memory are taken
+     * now, spilled pages are mapped back one at a time as the iterator
+     * reaches them and are not kept in memory.
+     *
+     * @return null if there may be more rows or a page was dropped without
+     * being spilled
+     */
+    public Iterator<RowPage> readAll() {
+        if (tailPage < 0 || hasMore()) {
+            return null;
+        }
+        final RowPage[] held = new RowPage[tailPage + 1];
+        for (int page = 0; page <= tailPage; page++) {
+            if (!completePages.contains(page)) {
+                return null;
+            }
+            held[page] = pages.get(page);
+            if (held[page] == null && (spill == null || !spill.contains(page))) {
+                return null;
+            }
+        }
+        return new AbstractIterator<RowPage>() {
+            private int page;
+
+            @Override
+            protected RowPage computeNext() {
+                if (page == held.length) {
+                    return endOfData();
+                }
+                RowPage rowPage = held[page];
+                held[page] = null;
+                if (rowPage == null) {
+                    rowPage = spill.get(page, dictionary);
+                }
+                if (rowPage == null) {
+                    // the store was closed by a new query
+                    throw new IllegalStateException("page " + page + " was released");
+                }
+                page++;
+                return rowPage;
+            }
+        };
+    }
+
+    /**
+     * release the spilled pages
+     */
+    public void close() {
+        if (spill != null) {
+            spill.close();
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.HbaseData;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.nll.hbase.ui.util.HbaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * scan a query range region by region on a bounded thread pool.
+ *
+ * the range is split at region boundaries and every sub range gets its own
+ * scanner. rows are merged back in rowkey order (regions do not overlap, so
+ * draining the sub ranges one after another is enough), or handed over as
+ * soon as any region returns them when order does not matter.
+ *
+ * @author fivesmallq
+ */
+public class ParallelScanner {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(ParallelScanner.class);
+    /**
+     * end of one sub range
+     */
+    private static final HbaseData END = new HbaseData();
+    private static final int DEFAULT_QUEUE_SIZE = 500;
+    private final HConnection connection;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private ColumnCodecs codecs = ColumnCodecs.DEFAULT;
+
+    /**
+     * scanner with its own pool of threads
+     *
+     * @param connection
+     * @param threads max concurrent region scans
+     */
+    public ParallelScanner(HConnection connection, int threads) {
+        this.connection = connection;
+        this.executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("parallel-scan-%d").build());
+        this.ownExecutor = true;
+    }
+
+    /**
+     * scanner sharing an executor, the executor is not shut down by
+     * {@link #close()}
+     *
+     * @param connection
+     * @param executor
+     */
+    public ParallelScanner(HConnection connection, ExecutorService executor) {
+        this.connection = connection;
+        this.executor = executor;
+        this.ownExecutor = false;
+    }
+
+    /**
+     * max rows buffered per sub range before its scanner waits for the
+     * consumer
+     *
+     * @param queueSize
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * codecs the values of scanned rows are decoded with
+     *
+     * @param codecs
+     */
+    public void setCodecs(ColumnCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    /**
+     * split the query range at region boundaries
+     *
+     * @param query
+     * @return sub ranges in rowkey order
+     * @throws Exception
+     */
+    public List<ScanRange> getRanges(HbaseQuery query) throws Exception {
+        return getRanges(connection, query);
+    }
+
+    /**
+     * split the query range at the region boundaries of a connection
+     *
+     * @param connection
+     * @param query
+     * @return sub ranges in rowkey order
+     * @throws Exception
+     */
+    public static List<ScanRange> getRanges(HConnection connection, HbaseQuery query)
+            throws Exception {
+        List<HRegionLocation> locations = Lists.newArrayList(connection
+                .locateRegions(Bytes.toBytes(query.getTableName())));
+        Collections.sort(locations, new Comparator<HRegionLocation>() {
+            @Override
+            public int compare(HRegionLocation o1, HRegionLocation o2) {
+                return Bytes.compareTo(o1.getRegionInfo().getStartKey(),
+                        o2.getRegionInfo().getStartKey());
+            }
+        });
+        int size = locations.size();
+        byte[][] startKeys = new byte[size][];
+        byte[][] endKeys = new byte[size][];
+        String[] hosts = new String[size];
+        for (int i = 0; i < size; i++) {
+            HRegionLocation location = locations.get(i);
+            startKeys[i] = location.getRegionInfo().getStartKey();
+            endKeys[i] = location.getRegionInfo().getEndKey();
+            hosts[i] = location.getHostnamePort();
+        }
+        Scan scan = HbaseUtil.buildScan(query);
+        return splitRanges(startKeys, endKeys, hosts, scan.getStartRow(),
+                scan.getStopRow());
+    }
+
+    /**
+     * intersect [start, stop) with every region, empty keys mean unbounded
+     *
+     * @param startKeys region start keys in order
+     * @param endKeys region end keys in order
+     * @param hosts region locations
+     * @param start
+     * @param stop
+     * @return
+     */
+    public static List<ScanRange> splitRanges(byte[][] startKeys, byte[][] endKeys,
+            String[] hosts, byte[] start, byte[] stop) {
+        List<ScanRange> ranges = Lists.newArrayList();
+        boolean unboundedStop = stop == null || stop.length == 0;
+        for (int i = 0; i < startKeys.length; i++) {
+            byte[] regionStart = startKeys[i];
+            byte[] regionEnd = endKeys[i];
+            boolean lastRegion = regionEnd == null || regionEnd.length == 0;
+            if (!unboundedStop && Bytes.compareTo(regionStart, stop) >= 0) {
+                break;
+            }
+            if (!lastRegion && Bytes.compareTo(regionEnd, start) <= 0) {
+                continue;
+            }
+            byte[] rangeStart = Bytes.compareTo(regionStart, start) > 0 ? regionStart : start;
+            byte[] rangeStop;
+            if (lastRegion) {
+                rangeStop = unboundedStop ? HConstants.EMPTY_END_ROW : stop;
+            } else if (unboundedStop || Bytes.compareTo(regionEnd, stop) < 0) {
+                rangeStop = regionEnd;
+            } else {
+                rangeStop = stop;
+            }
+            ranges.add(new ScanRange(rangeStart, rangeStop, hosts[i]));
+        }
+        return ranges;
+    }
+
+    /**
+     * scan all regions of the query range in parallel
+     *
+     * @param query page size is ignored, every row of the range is handled
+     * @param handler called on the caller thread
+     * @param ordered true to deliver rows in rowkey order, false to deliver
+     * them as they arrive from any region
+     * @return handled row count
+     * @throws Exception the first region error, the other regions are
+     * stopped
+     */
+    public long scan(HbaseQuery query, RowHandler handler, boolean ordered)
+            throws Exception {
+        // a page filter would stop every region after a page
+        final HbaseQuery scanQuery = query.copy();
+        scanQuery.setPageSize(0);
+        List<ScanRange> ranges = getRanges(scanQuery);
+        logger.info("parallel scan {} in {} ranges, ordered:{}",
+                new Object[]{scanQuery.getTableName(), ranges.size(), ordered});
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        List<Future<?>> futures = Lists.newArrayList();
+        List<BlockingQueue<HbaseData>> queues = Lists.newArrayList();
+        BlockingQueue<HbaseData> shared = ordered ? null
+                : new ArrayBlockingQueue<HbaseData>(queueSize);
+        for (final ScanRange range : ranges) {
+            final BlockingQueue<HbaseData> queue = ordered
+                    ? new ArrayBlockingQueue<HbaseData>(queueSize) : shared;
+            queues.add(queue);
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Scan scan = HbaseUtil.buildScan(scanQuery);
+                        scan.setStartRow(range.getStartRow());
+                        scan.setStopRow(range.getStopRow());
+                        HbaseUtil.scanResults(connection, scanQuery.getTableName(), scan,
+                                scanQuery.getBatch(), new ResultHandler() {
+                                    @Override
+                                    public boolean handle(Result result) throws Exception {
+                                        return offer(queue, HbaseUtil.toHbaseData(result, codecs),
+                                                cancelled);
+                                    }
+                                });
+                    } catch (Throwable e) {
+                        logger.error("scan range error! " + range, e);
+                        error.compareAndSet(null, e);
+                        // stops the other ranges and the merge
+                        cancelled.set(true);
+                    } finally {
+                        try {
+                            offer(queue, END, cancelled);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }));
+        }
+        AtomicLong count = new AtomicLong();
+        try {
+            if (ordered) {
+                for (BlockingQueue<HbaseData> queue : queues) {
+                    if (!drain(queue, 1, handler, count, cancelled)) {
+                        break;
+                    }
+                }
+            } else {
+                drain(shared, ranges.size(), handler, count, cancelled);
+            }
+        } finally {
+            cancelled.set(true);
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        if (error.get() != null) {
+            Throwables.propagateIfInstanceOf(error.get(), Exception.class);
+            throw Throwables.propagate(error.get());
+        }
+        return count.get();
+    }
+
+    /**
+     * exact row count of the query range, every region is counted in
+     * parallel with a key only scan, see {@link HbaseUtil#buildCountScan}
+     *
+     * @param query page size is ignored
+     * @param listener progress per region, may be null
+     * @return row count
+     * @throws Exception the first region error, InterruptedException when
+     * the caller is interrupted
+     */
+    public long count(final HbaseQuery query, final CountListener listener)
+            throws Exception {
+        final List<ScanRange> ranges = getRanges(query);
+        logger.info("parallel count {} in {} ranges", query.getTableName(), ranges.size());
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final AtomicInteger counted = new AtomicInteger();
+        List<Future<Long>> futures = Lists.newArrayList();
+        for (final ScanRange range : ranges) {
+            futures.add(executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    long rows;
+                    try {
+                        Scan scan = HbaseUtil.buildCountScan(query);
+                        scan.setStartRow(range.getStartRow());
+                        scan.setStopRow(range.getStopRow());
+                        rows = HbaseUtil.scanResults(connection, query.getTableName(), scan,
+                                new ResultHandler() {
+                                    @Override
+                                    public boolean handle(Result result) {
+                                        return !cancelled.get();
+                                    }
+                                });
+                    } catch (Throwable e) {
+                        // the count is lost, stop the other ranges
+                        cancelled.set(true);
+                        Throwables.propagateIfInstanceOf(e, Exception.class);
+                        throw Throwables.propagate(e);
+                    }
+                    if (listener != null && !cancelled.get()) {
+                        listener.regionCounted(range, rows, counted.incrementAndGet(),
+                                ranges.size());
+                    }
+                    return rows;
+                }
+            }));
+        }
+        long total = 0;
+        try {
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+        } catch (ExecutionException e) {
+            logger.error("count error! " + query.getTableName(), e.getCause());
+            Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            cancelled.set(true);
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        logger.info("counted {} rows in {}", total, query.getTableName());
+        return total;
+    }
+
+    /**
+     * hand rows to the handler until the given number of sub ranges ended
+     *
+     * @return false if the handler stopped the scan or a range failed
+     */
+    private boolean drain(BlockingQueue<HbaseData> queue, int ends,
+            RowHandler handler, AtomicLong count, AtomicBoolean cancelled)
+            throws Exception {
+        while (ends > 0) {
+            HbaseData data = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (data == null) {
+                // a failed range may not get its end into a full queue
+                if (cancelled.get()) {
+                    return false;
+                }
+                continue;
+            }
+            if (data == END) {
+                ends--;
+                continue;
+            }
+            count.incrementAndGet();
+            if (!handler.handle(data)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean offer(BlockingQueue<HbaseData> queue, HbaseData data,
+            AtomicBoolean cancelled) throws InterruptedException {
+        while (!cancelled.get()) {
+            if (queue.offer(data, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * shut down the own thread pool
+     */
+    public void close() {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+}
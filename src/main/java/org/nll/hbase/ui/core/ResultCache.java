@@ -0,0 +1,217 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.nll.hbase.ui.model.HbaseFilter;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * client side cache of query results, bounded by bytes.
+ *
+ * entries are keyed by the normalized query, so the same table, families,
+ * range, page size and filters hit the same entry whatever order the
+ * families were picked in. the least recently used entries are dropped once
+ * the cached results take more than the max bytes. thread safe.
+ *
+ * @author fivesmallq
+ */
+public class ResultCache {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(ResultCache.class);
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    /**
+     * map entry, key and list overhead of one cached result list
+     */
+    private static final long ENTRY_OVERHEAD = 200;
+    /**
+     * KeyValue object and reference overhead of one cell
+     */
+    private static final long CELL_OVERHEAD = 64;
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * normalized key of a query
+     *
+     * @param query
+     * @return
+     */
+    public static String keyOf(HbaseQuery query) {
+        List<String> families = Lists.newArrayList(query.getFamilies());
+        Collections.sort(families);
+        List<String> filters = Lists.newArrayList();
+        for (HbaseFilter filter : query.getFilters()) {
+            filters.add(fields(filter.getField(), String.valueOf(filter.getOperation()),
+                    filter.getValue()));
+        }
+        if (query.getFilters().size() > 1) {
+            Collections.sort(filters);
+            filters.add(query.isMatchAll() ? "all" : "any");
+        }
+        String rowkeys = "";
+        if (!query.getRowkeys().isEmpty()) {
+            // a digest keeps the key short for long lists, unlike hashCode
+            // it does not collide in practice
+            Hasher hasher = Hashing.md5().newHasher();
+            for (String rowkey : query.getRowkeys()) {
+                hasher.putString(rowkey, Charsets.UTF_8).putByte((byte) 0);
+            }
+            rowkeys = query.getRowkeys().size() + "#" + hasher.hash();
+        }
+        return fields(query.getTableName(), fields(families), query.getPrefixRowkey(),
+                query.getStartRowkey(), query.getStopRowkey(),
+                String.valueOf(query.getPageSize()), fields(filters), rowkeys);
+    }
+
+    /**
+     * each field with its length in front, a value can not pass for the end
+     * of a field so different fields never give the same string
+     */
+    private static String fields(String... fields) {
+        StringBuilder joined = new StringBuilder();
+        for (String field : fields) {
+            String value = Strings.nullToEmpty(field);
+            joined.append(value.length()).append(':').append(value);
+        }
+        return joined.toString();
+    }
+
+    private static String fields(List<String> fields) {
+        return fields(fields.toArray(new String[fields.size()]));
+    }
+
+    /**
+     * @param key
+     * @return cached results, null on a miss
+     */
+    public synchronized List<Result> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.results;
+    }
+
+    /**
+     * cache results, a list bigger than a quarter of the cache is not kept
+     *
+     * @param key
+     * @param results
+     */
+    public synchronized void put(String key, List<Result> results) {
+        long size = ENTRY_OVERHEAD;
+        for (Result result : results) {
+            for (KeyValue kv : result.raw()) {
+                size += kv.getLength() + CELL_OVERHEAD;
+            }
+        }
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        if (size > maxBytes / 4) {
+            return;
+        }
+        entries.put(key, new Entry(Collections.unmodifiableList(results), size));
+        bytes += size;
+        Iterator<Entry> it = entries.values().iterator();
+        int evicted = 0;
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes;
+            it.remove();
+            evicted++;
+        }
+        if (evicted > 0) {
+            evictions += evicted;
+            logger.debug("evicted {} entries, {}", evicted, this);
+        }
+    }
+
+    /**
+     * drop all entries, the counters are kept
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return Objects.toStringHelper(this)
+                .add("hits", hits)
+                .add("misses", misses)
+                .add("hitRate", String.format("%.1f%%", getHitRate() * 100))
+                .add("entries", entries.size())
+                .add("bytes", bytes)
+                .add("maxBytes", maxBytes)
+                .add("evictions", evictions)
+                .toString();
+    }
+
+    private static class Entry {
+
+        private final List<Result> results;
+        private final long bytes;
+
+        Entry(List<Result> results, long bytes) {
+            this.results = results;
+            this.bytes = bytes;
+        }
+    }
+}
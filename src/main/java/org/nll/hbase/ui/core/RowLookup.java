@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.nll.hbase.ui.util.HbaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * exact rowkey lookups with batched gets instead of a scan.
+ *
+ * the sorted keys are cut into chunks, the keys of a chunk are grouped by
+ * region server and every group is one multi get on the executor, so all
+ * servers work on a chunk at the same time. the next chunk is already sent
+ * while the rows of the current one are handed over, in rowkey order.
+ *
+ * @author fivesmallq
+ */
+public class RowLookup {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(RowLookup.class);
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    private final HConnection connection;
+    private final ExecutorService executor;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * @param connection
+     * @param executor runs the multi gets, not shut down here
+     */
+    public RowLookup(HConnection connection, ExecutorService executor) {
+        this.connection = connection;
+        this.executor = executor;
+    }
+
+    /**
+     * max keys looked up at once
+     *
+     * @param chunkSize
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * look up the rows, missing rows are skipped
+     *
+     * @param query families and filters of the gets
+     * @param rows sorted rowkeys
+     * @param handler called on the caller thread, in rowkey order
+     * @return handled row count
+     * @throws Exception
+     */
+    public long get(HbaseQuery query, List<byte[]> rows, ResultHandler handler)
+            throws Exception {
+        List<Chunk> window = Lists.newLinkedList();
+        List<List<byte[]>> parts = Lists.partition(rows, Math.max(1, chunkSize));
+        long count = 0;
+        int next = 0;
+        try {
+            while (next < parts.size() || !window.isEmpty()) {
+                // keep the next chunk in flight while handing over this one
+                while (next < parts.size() && window.size() < 2) {
+                    window.add(submit(query, parts.get(next++)));
+                }
+                Chunk chunk = window.remove(0);
+                for (Future<?> future : chunk.futures) {
+                    waitFor(future);
+                }
+                for (Result result : chunk.results) {
+                    if (result == null || result.isEmpty()) {
+                        continue;
+                    }
+                    count++;
+                    if (!handler.handle(result)) {
+                        return count;
+                    }
+                }
+            }
+        } finally {
+            for (Chunk chunk : window) {
+                for (Future<?> future : chunk.futures) {
+                    future.cancel(true);
+                }
+            }
+            logger.info("looked up {} keys in {}, found {} rows",
+                    new Object[]{rows.size(), query.getTableName(), count});
+        }
+        return count;
+    }
+
+    /**
+     * one multi get per region server, every get writes its result to the
+     * position of its key in the chunk
+     */
+    private Chunk submit(final HbaseQuery query, List<byte[]> rows) throws Exception {
+        byte[] tableName = Bytes.toBytes(query.getTableName());
+        final Chunk chunk = new Chunk(rows.size());
+        Map<String, List<Integer>> groups = Maps.newLinkedHashMap();
+        for (int i = 0; i < rows.size(); i++) {
+            String server = connection.locateRegion(tableName, rows.get(i)).getHostnamePort();
+            List<Integer> indexes = groups.get(server);
+            if (indexes == null) {
+                indexes = Lists.newArrayList();
+                groups.put(server, indexes);
+            }
+            indexes.add(i);
+        }
+        for (final List<Integer> indexes : groups.values()) {
+            final List<Get> gets = Lists.newArrayListWithCapacity(indexes.size());
+            for (int index : indexes) {
+                gets.add(HbaseUtil.buildGet(query, rows.get(index)));
+            }
+            chunk.futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    HTableInterface table = HbaseUtil.getTable(connection, query.getTableName());
+                    try {
+                        Result[] results = table.get(gets);
+                        for (int i = 0; i < results.length; i++) {
+                            chunk.results[indexes.get(i)] = results[i];
+                        }
+                    } finally {
+                        Closeables.close(table, true);
+                    }
+                    return null;
+                }
+            }));
+        }
+        return chunk;
+    }
+
+    private static void waitFor(Future<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * results of one chunk in rowkey order, complete once all futures are
+     * done
+     */
+    private static class Chunk {
+
+        private final Result[] results;
+        private final List<Future<?>> futures = Lists.newArrayList();
+
+        Chunk(int size) {
+            this.results = new Result[size];
+        }
+    }
+}
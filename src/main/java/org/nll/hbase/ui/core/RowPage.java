@@ -0,0 +1,349 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Maps;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.FamilyData;
+import org.nll.hbase.ui.model.HbaseData;
+
+/**
+ * compact page of rows.
+ *
+ * rowkeys and values are copied into one shared byte array and addressed by
+ * offset and length, cells store the column id from the table's
+ * {@link ColumnDictionary}. nothing is decoded to String until a cell is
+ * read, a decoded value is kept in the page for as long as the same
+ * {@link ColumnCodecs} are asked for. read values from one thread.
+ *
+ * @author fivesmallq
+ */
+public class RowPage {
+
+    private static final int INITIAL_ROWS = 16;
+    private static final int INITIAL_CELLS = 64;
+    private byte[] data = new byte[1024];
+    private int dataLength;
+    private int rows;
+    private int[] rowOffsets = new int[INITIAL_ROWS];
+    private int[] rowLengths = new int[INITIAL_ROWS];
+    /**
+     * index of the first cell of each row, one more entry than rows
+     */
+    private int[] firstCells = new int[INITIAL_ROWS + 1];
+    private int cells;
+    private int[] cellColumns = new int[INITIAL_CELLS];
+    private int[] valueOffsets = new int[INITIAL_CELLS];
+    private int[] valueLengths = new int[INITIAL_CELLS];
+    private final ColumnDictionary dictionary;
+    /**
+     * columns present in this page
+     */
+    private final BitSet columns = new BitSet();
+    /**
+     * values by cell decoded with {@link #decodedWith}, filled as cells are
+     * read
+     */
+    private String[] decoded;
+    private ColumnCodecs decodedWith;
+    /**
+     * approximate heap of the decoded strings
+     */
+    private long decodedBytes;
+
+    public RowPage(ColumnDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * append one result, the bytes are copied so the result can be dropped
+     *
+     * @param result
+     */
+    public void add(Result result) {
+        if (rows == rowOffsets.length) {
+            int size = rows * 2;
+            rowOffsets = Arrays.copyOf(rowOffsets, size);
+            rowLengths = Arrays.copyOf(rowLengths, size);
+            firstCells = Arrays.copyOf(firstCells, size + 1);
+        }
+        byte[] row = result.getRow();
+        rowOffsets[rows] = append(row, 0, row.length);
+        rowLengths[rows] = row.length;
+        KeyValue[] kvs = result.raw();
+        for (int i = 0; i < kvs.length; i++) {
+            KeyValue kv = kvs[i];
+            if (cells == cellColumns.length) {
+                int size = cells * 2;
+                cellColumns = Arrays.copyOf(cellColumns, size);
+                valueOffsets = Arrays.copyOf(valueOffsets, size);
+                valueLengths = Arrays.copyOf(valueLengths, size);
+            }
+            byte[] buffer = kv.getBuffer();
+            cellColumns[cells] = columnId(buffer, kv.getFamilyOffset(), kv.getFamilyLength(),
+                    kv.getQualifierOffset(), kv.getQualifierLength(), i);
+            valueOffsets[cells] = append(buffer, kv.getValueOffset(), kv.getValueLength());
+            valueLengths[cells] = kv.getValueLength();
+            cells++;
+        }
+        rows++;
+        firstCells[rows] = cells;
+    }
+
+    /**
+     * dictionary id of a column, rows of a table mostly have the same columns
+     * in the same order, so the column at the same position in the previous
+     * row is checked first and the dictionary lookup is only done on a miss
+     */
+    private int columnId(byte[] buffer, int familyOffset, int familyLength,
+            int qualifierOffset, int qualifierLength, int position) {
+        int guess = rows > 0 && firstCells[rows - 1] + position < firstCells[rows]
+                ? cellColumns[firstCells[rows - 1] + position] : -1;
+        int id = dictionary.matches(guess, buffer, familyOffset, familyLength,
+                qualifierOffset, qualifierLength) ? guess
+                : dictionary.getId(buffer, familyOffset, familyLength,
+                        qualifierOffset, qualifierLength);
+        columns.set(id);
+        return id;
+    }
+
+    private int append(byte[] bytes, int offset, int length) {
+        if (dataLength + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + length));
+        }
+        System.arraycopy(bytes, offset, data, dataLength, length);
+        int start = dataLength;
+        dataLength += length;
+        return start;
+    }
+
+    /**
+     * release the spare capacity once the page is complete
+     */
+    public void trim() {
+        data = Arrays.copyOf(data, dataLength);
+        if (decoded != null) {
+            decoded = Arrays.copyOf(decoded, cells);
+        }
+        rowOffsets = Arrays.copyOf(rowOffsets, rows);
+        rowLengths = Arrays.copyOf(rowLengths, rows);
+        firstCells = Arrays.copyOf(firstCells, rows + 1);
+        cellColumns = Arrays.copyOf(cellColumns, cells);
+        valueOffsets = Arrays.copyOf(valueOffsets, cells);
+        valueLengths = Arrays.copyOf(valueLengths, cells);
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public ColumnDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * dictionary ids of the columns present in this page
+     *
+     * @return
+     */
+    public BitSet getColumns() {
+        return columns;
+    }
+
+    public String getRowkey(int row) {
+        return Bytes.toString(data, rowOffsets[row], rowLengths[row]);
+    }
+
+    /**
+     * @param row
+     * @param column dictionary id
+     * @return the utf-8 value, null if the row has no value in the column
+     */
+    public String getValue(int row, int column) {
+        return getValue(row, column, ColumnCodecs.DEFAULT);
+    }
+
+    /**
+     * @param row
+     * @param column dictionary id
+     * @param codecs
+     * @return null if the row has no value in the column
+     */
+    public String getValue(int row, int column, ColumnCodecs codecs) {
+        for (int cell = firstCells[row]; cell < firstCells[row + 1]; cell++) {
+            if (cellColumns[cell] == column) {
+                return decode(cell, codecs);
+            }
+        }
+        return null;
+    }
+
+    private String decode(int cell, ColumnCodecs codecs) {
+        if (decoded == null || decodedWith != codecs) {
+            decoded = new String[cellColumns.length];
+            decodedWith = codecs;
+            decodedBytes = 0;
+        } else if (cell >= decoded.length) {
+            // rows were added since
+            decoded = Arrays.copyOf(decoded, cellColumns.length);
+        }
+        String value = decoded[cell];
+        if (value == null) {
+            value = codecs.decode(dictionary.getName(cellColumns[cell]), data,
+                    valueOffsets[cell], valueLengths[cell]);
+            decoded[cell] = value;
+            decodedBytes += 40 + 2L * value.length();
+        }
+        return value;
+    }
+
+    /**
+     * decode one row
+     *
+     * @param row
+     * @return
+     */
+    public HbaseData toHbaseData(int row) {
+        HbaseData hbaseData = new HbaseData();
+        hbaseData.setRowkey(getRowkey(row));
+        Map<String, FamilyData> datas = Maps.newLinkedHashMap();
+        for (int cell = firstCells[row]; cell < firstCells[row + 1]; cell++) {
+            int column = cellColumns[cell];
+            FamilyData familyData = new FamilyData();
+            familyData.setFamilyName(Bytes.toString(dictionary.getFamily(column)));
+            familyData.setKey(Bytes.toString(dictionary.getQualifier(column)));
+            familyData.setValue(Bytes.toString(data, valueOffsets[cell], valueLengths[cell]));
+            datas.put(dictionary.getName(column), familyData);
+        }
+        hbaseData.setDatas(datas);
+        return hbaseData;
+    }
+
+    /**
+     * decode one row with codecs, decoded values are not kept in the page
+     * so it can be called while the page is shown
+     *
+     * @param row
+     * @param codecs
+     * @return
+     */
+    public HbaseData toHbaseData(int row, ColumnCodecs codecs) {
+        HbaseData hbaseData = new HbaseData();
+        hbaseData.setRowkey(getRowkey(row));
+        Map<String, FamilyData> datas = Maps.newLinkedHashMap();
+        for (int cell = firstCells[row]; cell < firstCells[row + 1]; cell++) {
+            int column = cellColumns[cell];
+            String name = dictionary.getName(column);
+            FamilyData familyData = new FamilyData();
+            familyData.setFamilyName(Bytes.toString(dictionary.getFamily(column)));
+            familyData.setKey(Bytes.toString(dictionary.getQualifier(column)));
+            familyData.setValue(codecs.decode(name, data, valueOffsets[cell],
+                    valueLengths[cell]));
+            datas.put(name, familyData);
+        }
+        hbaseData.setDatas(datas);
+        return hbaseData;
+    }
+
+    /**
+     * bytes taken by {@link #writeTo(ByteBuffer)}
+     *
+     * @return
+     */
+    public int getSpillSize() {
+        return 12 + 4 * (3 * rows + 1 + 3 * cells) + dataLength;
+    }
+
+    /**
+     * write the page in a flat layout, the arrays are copied as they are so
+     * the page can be read back without parsing the rows
+     *
+     * @param buffer
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(rows);
+        buffer.putInt(cells);
+        buffer.putInt(dataLength);
+        putInts(buffer, rowOffsets, rows);
+        putInts(buffer, rowLengths, rows);
+        putInts(buffer, firstCells, rows + 1);
+        putInts(buffer, cellColumns, cells);
+        putInts(buffer, valueOffsets, cells);
+        putInts(buffer, valueLengths, cells);
+        buffer.put(data, 0, dataLength);
+    }
+
+    /**
+     * read a page written by {@link #writeTo(ByteBuffer)}
+     *
+     * @param buffer
+     * @param dictionary dictionary the page was built with
+     * @return
+     */
+    public static RowPage readFrom(ByteBuffer buffer, ColumnDictionary dictionary) {
+        RowPage page = new RowPage(dictionary);
+        page.rows = buffer.getInt();
+        page.cells = buffer.getInt();
+        page.dataLength = buffer.getInt();
+        page.rowOffsets = getInts(buffer, page.rows);
+        page.rowLengths = getInts(buffer, page.rows);
+        page.firstCells = getInts(buffer, page.rows + 1);
+        page.cellColumns = getInts(buffer, page.cells);
+        page.valueOffsets = getInts(buffer, page.cells);
+        page.valueLengths = getInts(buffer, page.cells);
+        page.data = new byte[page.dataLength];
+        buffer.get(page.data);
+        for (int cell = 0; cell < page.cells; cell++) {
+            page.columns.set(page.cellColumns[cell]);
+        }
+        return page;
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values, int length) {
+        buffer.asIntBuffer().put(values, 0, length);
+        buffer.position(buffer.position() + 4 * length);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(values);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+
+    /**
+     * approximate heap used by the page
+     *
+     * @return bytes
+     */
+    public long heapSize() {
+        long size = 16 + data.length;
+        size += 4L * (rowOffsets.length + rowLengths.length + firstCells.length);
+        size += 4L * (cellColumns.length + valueOffsets.length + valueLengths.length);
+        if (decoded != null) {
+            size += 4L * decoded.length + decodedBytes;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * a rowkey range [startRow, stopRow) inside one region, empty stopRow means
+ * the end of the table.
+ *
+ * @author fivesmallq
+ */
+public class ScanRange {
+
+    private final byte[] startRow;
+    private final byte[] stopRow;
+    /**
+     * hostname:port of the region server holding the range
+     */
+    private final String location;
+
+    public ScanRange(byte[] startRow, byte[] stopRow, String location) {
+        this.startRow = startRow;
+        this.stopRow = stopRow;
+        this.location = location;
+    }
+
+    public byte[] getStartRow() {
+        return startRow;
+    }
+
+    public byte[] getStopRow() {
+        return stopRow;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + Bytes.toStringBinary(startRow) + ", "
+                + Bytes.toStringBinary(stopRow) + ") @" + location;
+    }
+}
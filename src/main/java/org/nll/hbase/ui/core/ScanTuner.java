@@ -0,0 +1,274 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * adaptive scanner caching and batch size of one table.
+ *
+ * every scan measures the row size and the round trip time of its first few
+ * RPCs, the averages are used to size caching for the next scans so that one
+ * RPC carries about {@link #TARGET_RPC_BYTES} and stays under
+ * {@link #LATENCY_BUDGET_MILLIS}. rows bigger than the target are fetched in
+ * batches of cells. the 0.94 client fixes caching when the scanner is
+ * opened, so a scan is tuned from what the previous scans measured.
+ *
+ * @author fivesmallq
+ */
+public class ScanTuner {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(ScanTuner.class);
+    public static final int INITIAL_CACHING = 100;
+    public static final int MAX_CACHING = 5000;
+    public static final long TARGET_RPC_BYTES = 2 * 1024 * 1024;
+    public static final long LATENCY_BUDGET_MILLIS = 500;
+    /**
+     * round trips measured per scan
+     */
+    private static final int PROBE_RPCS = 3;
+    private static final Map<HConnection, Map<String, ScanTuner>> tuners =
+            new WeakHashMap<HConnection, Map<String, ScanTuner>>();
+    private final String tableName;
+    /**
+     * moving averages, 0 until the first scan is measured
+     */
+    private double bytesPerRow;
+    private double cellsPerRow;
+    private double millisPerResult;
+    private double millisPerRpc;
+    private int caching = INITIAL_CACHING;
+    private int batch;
+    private long scans;
+
+    ScanTuner(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * tuner of a table, shared by all scans on the connection
+     *
+     * @param connection
+     * @param tableName
+     * @return
+     */
+    public static ScanTuner forTable(HConnection connection, String tableName) {
+        synchronized (tuners) {
+            Map<String, ScanTuner> tables = tuners.get(connection);
+            if (tables == null) {
+                tables = Maps.newHashMap();
+                tuners.put(connection, tables);
+            }
+            ScanTuner tuner = tables.get(tableName);
+            if (tuner == null) {
+                tuner = new ScanTuner(tableName);
+                tables.put(tableName, tuner);
+            }
+            return tuner;
+        }
+    }
+
+    /**
+     * set caching and batch on a scan that does not have them set yet. only
+     * scans tuned here are measured, scans with their own caching may read
+     * rows that do not look like the table (key only counts and so on).
+     *
+     * @param scan
+     * @param limit max rows the caller reads, 0 for no limit
+     * @return probe to measure the scan with
+     */
+    public Probe configure(Scan scan, int limit) {
+        return configure(scan, limit, 0);
+    }
+
+    /**
+     * like {@link #configure(Scan, int)} with a batch asked for by the user
+     * in place of the tuned one. a scan whose filter works on whole rows
+     * (page filter, column value filter) can not be batched, it keeps
+     * reading whole rows.
+     *
+     * @param scan
+     * @param limit max rows the caller reads, 0 for no limit
+     * @param batch max cells per result, 0 to tune it
+     * @return probe to measure the scan with
+     */
+    public synchronized Probe configure(Scan scan, int limit, int batch) {
+        boolean tuned = scan.getCaching() <= 0;
+        if (tuned) {
+            scan.setCaching(limit > 0 ? Math.min(caching, limit) : caching);
+        }
+        int cells = batch > 0 ? batch : this.batch;
+        if (scan.getBatch() <= 0 && cells > 0 && !filtersRows(scan.getFilter())) {
+            scan.setBatch(cells);
+        }
+        return new Probe(scan.getCaching(), tuned);
+    }
+
+    /**
+     * true if the filter decides on whole rows. the 0.94 filters do not all
+     * say so by hasFilterRow, a page or column value filter would see the
+     * parts of a batched row as rows of their own.
+     *
+     * @param filter
+     * @return
+     */
+    static boolean filtersRows(Filter filter) {
+        if (filter == null) {
+            return false;
+        }
+        if (filter.hasFilterRow() || filter instanceof PageFilter
+                || filter instanceof SingleColumnValueFilter) {
+            return true;
+        }
+        if (filter instanceof FilterList) {
+            for (Filter child : ((FilterList) filter).getFilters()) {
+                if (filtersRows(child)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private synchronized void update(Probe probe) {
+        double weight = scans == 0 ? 1.0 : 0.5;
+        scans++;
+        bytesPerRow = average(bytesPerRow, (double) probe.bytes / probe.rows, weight);
+        cellsPerRow = average(cellsPerRow, (double) probe.cells / probe.rows, weight);
+        if (probe.rpcs > 0) {
+            double rpcMillis = probe.rpcNanos / 1000000.0 / probe.rpcs;
+            millisPerRpc = average(millisPerRpc, rpcMillis, weight);
+            millisPerResult = average(millisPerResult,
+                    probe.rpcNanos / 1000000.0 / probe.results, weight);
+        }
+        double rpcBytes = bytesPerRow;
+        batch = 0;
+        if (bytesPerRow > TARGET_RPC_BYTES && cellsPerRow > 1) {
+            double bytesPerCell = bytesPerRow / cellsPerRow;
+            batch = (int) Math.max(1, TARGET_RPC_BYTES / bytesPerCell);
+            rpcBytes = batch * bytesPerCell;
+        }
+        double rows = TARGET_RPC_BYTES / Math.max(1.0, rpcBytes);
+        if (millisPerResult > 0) {
+            rows = Math.min(rows, LATENCY_BUDGET_MILLIS / millisPerResult);
+        }
+        caching = (int) Math.max(1, Math.min(MAX_CACHING, rows));
+        logger.info("tuned scan on {}: {}", tableName, this);
+    }
+
+    private static double average(double current, double sample, double weight) {
+        return current + (sample - current) * weight;
+    }
+
+    public synchronized int getCaching() {
+        return caching;
+    }
+
+    public synchronized int getBatch() {
+        return batch;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("caching=%d batch=%d row=%.0fB cells=%.1f rpc=%.1fms scans=%d",
+                caching, batch, bytesPerRow, cellsPerRow, millisPerRpc, scans);
+    }
+
+    /**
+     * measurement of the first round trips of one scan, not thread safe.
+     * call {@link #before()} and {@link #after(Result)} around every scanner
+     * next, {@link #row()} for every whole row and {@link #done()} when the
+     * scan ends.
+     */
+    public class Probe {
+
+        private final int caching;
+        private final boolean tuned;
+        private long results;
+        private long rows;
+        private long bytes;
+        private long cells;
+        private int rpcs;
+        private long rpcNanos;
+        private long started;
+        private boolean closed;
+        private boolean recorded;
+
+        Probe(int caching, boolean tuned) {
+            this.caching = Math.max(1, caching);
+            this.tuned = tuned;
+        }
+
+        public void before() {
+            started = System.nanoTime();
+        }
+
+        /**
+         * @param result partial or whole row, null at the end of the scan
+         */
+        public void after(Result result) {
+            if (!tuned || closed || result == null) {
+                return;
+            }
+            if (results % caching == 0) {
+                // the client cache was empty, this call went to the server
+                if (rpcs == PROBE_RPCS) {
+                    closed = true;
+                    return;
+                }
+                rpcs++;
+                rpcNanos += System.nanoTime() - started;
+            }
+            results++;
+            for (KeyValue kv : result.raw()) {
+                bytes += kv.getLength();
+            }
+            cells += result.size();
+        }
+
+        /**
+         * one whole row was read
+         */
+        public void row() {
+            if (!closed) {
+                rows++;
+            }
+        }
+
+        /**
+         * feed the measurement to the tuner, once
+         */
+        public void done() {
+            if (tuned && !recorded && rows > 0) {
+                recorded = true;
+                update(this);
+            }
+        }
+    }
+}
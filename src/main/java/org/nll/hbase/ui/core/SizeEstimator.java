@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.util.Map;
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HServerLoad;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.TableEstimate;
+import org.nll.hbase.ui.util.HbaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * approximate table sizes without scanning the tables.
+ *
+ * store sizes and file counts come from the region loads in the cluster
+ * status, one call to the master for all tables. rows are estimated from a
+ * short sample scan of the biggest region: store size / sampled bytes per
+ * row. store files are compressed and sampled cells are not, so the row
+ * estimate is low for compressed tables. the 0.94 region load has no per
+ * family numbers, family sizes are the store size split by the sampled
+ * bytes of each family.
+ *
+ * @author fivesmallq
+ */
+public class SizeEstimator {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(SizeEstimator.class);
+    public static final int SAMPLE_ROWS = 1000;
+    private static final long MB = 1024 * 1024;
+    private final HConnection connection;
+    /**
+     * start key of the biggest region of each table, from the last status
+     */
+    private final Map<String, byte[]> sampleStarts = Maps.newHashMap();
+
+    public SizeEstimator(HConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * store sizes of all online tables, without rows
+     *
+     * @return estimates by table name
+     * @throws IOException
+     */
+    public synchronized Map<String, TableEstimate> getTableSizes() throws IOException {
+        long start = System.currentTimeMillis();
+        ClusterStatus status = ConnectionManager.getInstance().getAdmin(connection)
+                .getClusterStatus();
+        Map<String, TableEstimate> tables = Maps.newTreeMap();
+        Map<String, Integer> biggest = Maps.newHashMap();
+        sampleStarts.clear();
+        for (ServerName server : status.getServers()) {
+            HServerLoad load = status.getLoad(server);
+            for (HServerLoad.RegionLoad region : load.getRegionsLoad().values()) {
+                byte[][] parts = HRegionInfo.parseRegionName(region.getName());
+                String tableName = Bytes.toString(parts[0]);
+                TableEstimate estimate = tables.get(tableName);
+                if (estimate == null) {
+                    estimate = new TableEstimate();
+                    estimate.setTableName(tableName);
+                    tables.put(tableName, estimate);
+                }
+                estimate.setRegions(estimate.getRegions() + 1);
+                estimate.setStores(estimate.getStores() + region.getStores());
+                estimate.setStorefiles(estimate.getStorefiles() + region.getStorefiles());
+                estimate.setStorefileSizeMB(estimate.getStorefileSizeMB()
+                        + region.getStorefileSizeMB());
+                estimate.setMemStoreSizeMB(estimate.getMemStoreSizeMB()
+                        + region.getMemStoreSizeMB());
+                Integer size = biggest.get(tableName);
+                if (size == null || region.getStorefileSizeMB() > size) {
+                    biggest.put(tableName, region.getStorefileSizeMB());
+                    sampleStarts.put(tableName, parts[1]);
+                }
+            }
+        }
+        logger.info("read sizes of {} tables in {} ms", tables.size(),
+                System.currentTimeMillis() - start);
+        return tables;
+    }
+
+    /**
+     * store sizes of a table plus rows and family sizes from a sample scan
+     *
+     * @param tableName
+     * @return
+     * @throws Exception
+     */
+    public TableEstimate estimate(String tableName) throws Exception {
+        long start = System.currentTimeMillis();
+        TableEstimate estimate = getTableSizes().get(tableName);
+        if (estimate == null) {
+            // no region online
+            estimate = new TableEstimate();
+            estimate.setTableName(tableName);
+        }
+        Scan scan = new Scan();
+        synchronized (this) {
+            byte[] sampleStart = sampleStarts.get(tableName);
+            if (sampleStart != null) {
+                scan.setStartRow(sampleStart);
+            }
+        }
+        scan.setCaching(SAMPLE_ROWS);
+        scan.setCacheBlocks(false);
+        final Map<String, long[]> familyBytes = Maps.newTreeMap();
+        final long[] sampleBytes = new long[1];
+        final int[] rows = new int[1];
+        HbaseUtil.scanResults(connection, tableName, scan, new ResultHandler() {
+            @Override
+            public boolean handle(Result result) {
+                for (KeyValue kv : result.raw()) {
+                    String family = Bytes.toString(kv.getBuffer(),
+                            kv.getFamilyOffset(), kv.getFamilyLength());
+                    long[] bytes = familyBytes.get(family);
+                    if (bytes == null) {
+                        bytes = new long[1];
+                        familyBytes.put(family, bytes);
+                    }
+                    bytes[0] += kv.getLength();
+                    sampleBytes[0] += kv.getLength();
+                }
+                return ++rows[0] < SAMPLE_ROWS;
+            }
+        });
+        estimate.setSampledRows(rows[0]);
+        if (rows[0] > 0) {
+            long bytesPerRow = Math.max(1, sampleBytes[0] / rows[0]);
+            long totalMB = estimate.getStorefileSizeMB() + estimate.getMemStoreSizeMB();
+            estimate.setBytesPerRow(bytesPerRow);
+            if (rows[0] < SAMPLE_ROWS && estimate.getRegions() <= 1) {
+                // the sample read the whole table
+                estimate.setEstimatedRows(rows[0]);
+            } else {
+                estimate.setEstimatedRows(Math.max(rows[0], totalMB * MB / bytesPerRow));
+            }
+            Map<String, Long> familySizes = Maps.newLinkedHashMap();
+            for (Map.Entry<String, long[]> entry : familyBytes.entrySet()) {
+                familySizes.put(entry.getKey(), totalMB * entry.getValue()[0] / sampleBytes[0]);
+            }
+            estimate.setFamilySizeMB(familySizes);
+        } else {
+            estimate.setEstimatedRows(0);
+        }
+        logger.info("estimated {} in {} ms: {}", new Object[]{tableName,
+            System.currentTimeMillis() - start, estimate});
+        return estimate;
+    }
+}
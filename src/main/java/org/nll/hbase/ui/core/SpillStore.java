@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * pages dropped from memory, kept in a memory mapped temp file.
+ *
+ * pages are appended to the file in the {@link RowPage#writeTo} layout and
+ * found again through an index from page number to file position, the page
+ * of a row is row / pageSize. the file is mapped in segments so the mapped
+ * bytes live in the page cache of the os and not on the java heap, a page
+ * never crosses a segment and pages bigger than a segment are not kept. the
+ * file is created on the first page and deleted on close. thread safe.
+ *
+ * @author fivesmallq
+ */
+public class SpillStore {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(SpillStore.class);
+    public static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private final File directory;
+    private final int segmentSize;
+    private final Map<Integer, Long> positions = Maps.newHashMap();
+    private final List<MappedByteBuffer> segments = Lists.newArrayList();
+    private File file;
+    private RandomAccessFile access;
+    private long end;
+    private boolean closed;
+
+    /**
+     * spill to the default temp directory
+     */
+    public SpillStore() {
+        this(null, SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory temp file directory, null for the default one
+     * @param segmentSize bytes mapped at once
+     */
+    public SpillStore(File directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * write a page, an older copy of the page is replaced
+     *
+     * @param page
+     * @param rowPage
+     * @return false if the page is bigger than a segment or the store is
+     * closed
+     * @throws IOException
+     */
+    public synchronized boolean put(int page, RowPage rowPage) throws IOException {
+        int size = rowPage.getSpillSize();
+        if (closed || size > segmentSize) {
+            return false;
+        }
+        int segment = (int) (end / segmentSize);
+        int offset = (int) (end % segmentSize);
+        if (offset + size > segmentSize) {
+            segment++;
+            offset = 0;
+        }
+        ByteBuffer buffer = segment(segment).duplicate();
+        buffer.position(offset);
+        rowPage.writeTo(buffer);
+        long position = (long) segment * segmentSize + offset;
+        positions.put(page, position);
+        end = position + size;
+        return true;
+    }
+
+    /**
+     * @param page
+     * @param dictionary dictionary of the store the page came from
+     * @return null if the page was not spilled
+     */
+    public synchronized RowPage get(int page, ColumnDictionary dictionary) {
+        Long position = positions.get(page);
+        if (position == null) {
+            return null;
+        }
+        ByteBuffer buffer = segments.get((int) (position / segmentSize)).duplicate();
+        buffer.position((int) (position % segmentSize));
+        return RowPage.readFrom(buffer, dictionary);
+    }
+
+    public synchronized boolean contains(int page) {
+        return positions.containsKey(page);
+    }
+
+    /**
+     * forget a page, its bytes stay in the file until it is closed
+     *
+     * @param page
+     */
+    public synchronized void remove(int page) {
+        positions.remove(page);
+    }
+
+    public synchronized int getPageCount() {
+        return positions.size();
+    }
+
+    /**
+     * bytes written to the file
+     *
+     * @return
+     */
+    public synchronized long getBytes() {
+        return end;
+    }
+
+    private MappedByteBuffer segment(int segment) throws IOException {
+        if (access == null) {
+            file = File.createTempFile("hbase-ui-", ".pages", directory);
+            file.deleteOnExit();
+            access = new RandomAccessFile(file, "rw");
+            logger.info("spilling pages to {}", file);
+        }
+        while (segments.size() <= segment) {
+            segments.add(access.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                    (long) segments.size() * segmentSize, segmentSize));
+        }
+        return segments.get(segment);
+    }
+
+    /**
+     * drop all pages and delete the file
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        positions.clear();
+        // mapped segments are unmapped by the garbage collector
+        segments.clear();
+        if (access != null) {
+            Closeables.closeQuietly(access);
+            if (!file.delete()) {
+                logger.debug("{} is still mapped, deleted on exit", file);
+            }
+            logger.info("closed {}", this);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return Objects.toStringHelper(this)
+                .add("file", file)
+                .add("pages", positions.size())
+                .add("bytes", end)
+                .toString();
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HServerLoad;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.master.AssignmentManager;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest.CompactionState;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.AdminOperation;
+import org.nll.hbase.ui.model.AdminTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs an admin operation on many tables at once.
+ *
+ * every table gets its own thread, so a table waiting for its regions to
+ * close does not hold up the others. the operations are started with the
+ * asynchronous admin calls and then followed by polling the cluster
+ * status: regions online and in transition for disable, enable and split,
+ * compacted cells for a compaction, flushed regions for a flush. an
+ * interrupted run stops polling, what the master already started goes on.
+ *
+ * @author fivesmallq
+ */
+public class TableAdmin {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(TableAdmin.class);
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+    /**
+     * polls a requested compaction or split gets to show up, or to go on
+     * after a pause, before the table counts as done
+     */
+    static final int QUIET_POLLS = 5;
+    private static final long PROGRESS_MILLIS = 1000;
+    private final HBaseAdmin admin;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private long pollMillis = DEFAULT_POLL_MILLIS;
+
+    /**
+     * @param admin shared admin of the connection, see
+     * {@link ConnectionManager#getAdmin}
+     */
+    public TableAdmin(HBaseAdmin admin) {
+        this.admin = admin;
+    }
+
+    /**
+     * tables worked on at the same time
+     *
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void setPollMillis(long pollMillis) {
+        this.pollMillis = Math.max(1, pollMillis);
+    }
+
+    /**
+     * run the operation on the tables and wait for all of them. a table
+     * that fails is reported in its task, the others go on
+     *
+     * @param operation
+     * @param tableNames
+     * @param listener may be null
+     * @return a task per table, in the order given
+     * @throws InterruptedException when the caller is interrupted, the
+     * tables not done are cancelled
+     */
+    public List<AdminTask> run(AdminOperation operation, List<String> tableNames,
+            AdminListener listener) throws InterruptedException {
+        List<AdminTask> tasks = Lists.newArrayList();
+        for (String tableName : tableNames) {
+            tasks.add(new AdminTask(operation, tableName));
+        }
+        if (tasks.isEmpty()) {
+            return tasks;
+        }
+        logger.info("{} {} tables", operation, tasks.size());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("admin-%d").build());
+        List<Future<Void>> futures = Lists.newArrayList();
+        try {
+            for (final AdminTask task : tasks) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        runTask(task);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                while (true) {
+                    try {
+                        future.get(PROGRESS_MILLIS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (listener != null) {
+                            listener.progress(copy(tasks));
+                        }
+                    } catch (ExecutionException e) {
+                        // runTask keeps its errors in the task
+                        logger.error("admin error!", e.getCause());
+                        break;
+                    }
+                }
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            pool.shutdownNow();
+            for (AdminTask task : tasks) {
+                if (!task.getState().isFinished()) {
+                    task.setState(AdminTask.State.CANCELLED);
+                }
+            }
+        }
+        if (listener != null) {
+            listener.progress(copy(tasks));
+        }
+        return tasks;
+    }
+
+    private static List<AdminTask> copy(List<AdminTask> tasks) {
+        List<AdminTask> copies = Lists.newArrayListWithCapacity(tasks.size());
+        for (AdminTask task : tasks) {
+            copies.add(task.copy());
+        }
+        return copies;
+    }
+
+    void runTask(AdminTask task) {
+        long start = System.currentTimeMillis();
+        task.setState(AdminTask.State.RUNNING);
+        byte[] table = Bytes.toBytes(task.getTableName());
+        try {
+            switch (task.getOperation()) {
+                case DISABLE:
+                    disable(task, table, 0, 100);
+                    break;
+                case ENABLE:
+                    enable(task, table, admin.getTableRegions(table).size(), 0, 100);
+                    break;
+                case DELETE:
+                    delete(task, table, 0, 100);
+                    break;
+                case TRUNCATE:
+                    truncate(task, table);
+                    break;
+                case FLUSH:
+                    flush(task, table);
+                    break;
+                case COMPACT:
+                    compact(task, table, false);
+                    break;
+                case MAJOR_COMPACT:
+                    compact(task, table, true);
+                    break;
+                case SPLIT:
+                    split(task, table);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown operation " + task.getOperation());
+            }
+            task.setPercent(100);
+            task.setState(AdminTask.State.DONE);
+        } catch (InterruptedException e) {
+            task.setState(AdminTask.State.CANCELLED);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                task.setState(AdminTask.State.CANCELLED);
+                return;
+            }
+            logger.error(task.getOperation() + " error! " + task.getTableName(), e);
+            task.setMessage(e.getMessage() == null ? e.toString() : e.getMessage());
+            task.setState(AdminTask.State.FAILED);
+        } finally {
+            task.setMillis(System.currentTimeMillis() - start);
+            logger.info("{}", task);
+        }
+    }
+
+    /**
+     * wait for the regions of the table to close
+     */
+    private void disable(AdminTask task, byte[] table, int from, int to) throws Exception {
+        if (admin.isTableDisabled(table)) {
+            task.setPercent(to);
+            return;
+        }
+        int regions = admin.getTableRegions(table).size();
+        admin.disableTableAsync(table);
+        while (!admin.isTableDisabled(table)) {
+            sleep();
+            int closed = Math.max(0, regions - TableLoad.of(admin.getClusterStatus(), table).regions);
+            task.setPercent(scale(from, to, closed, regions));
+            task.setMessage(closed + " of " + regions + " regions closed");
+        }
+        task.setPercent(to);
+        task.setMessage("disabled");
+    }
+
+    /**
+     * wait for the regions of the table to open
+     */
+    private void enable(AdminTask task, byte[] table, int regions, int from, int to)
+            throws Exception {
+        if (!admin.isTableEnabled(table)) {
+            admin.enableTableAsync(table);
+        }
+        while (!admin.isTableEnabled(table) || !admin.isTableAvailable(table)) {
+            sleep();
+            int opened = Math.min(regions, TableLoad.of(admin.getClusterStatus(), table).regions);
+            task.setPercent(scale(from, to, opened, regions));
+            task.setMessage(opened + " of " + regions + " regions open");
+        }
+        task.setPercent(to);
+        task.setMessage("enabled");
+    }
+
+    private void delete(AdminTask task, byte[] table, int from, int to) throws Exception {
+        int disabled = from + (to - from) * 4 / 5;
+        disable(task, table, from, disabled);
+        task.setMessage("deleting");
+        // returns once the regions are out of .META.
+        admin.deleteTable(table);
+        task.setPercent(to);
+        task.setMessage("deleted");
+    }
+
+    private void truncate(AdminTask task, byte[] table) throws Exception {
+        HTableDescriptor descriptor = admin.getTableDescriptor(table);
+        byte[][] splits = splitKeys(admin.getTableRegions(table));
+        delete(task, table, 0, 50);
+        task.setMessage("creating");
+        admin.createTableAsync(descriptor, splits.length == 0 ? null : splits);
+        enable(task, table, splits.length + 1, 50, 100);
+        task.setMessage("truncated to " + (splits.length + 1) + " empty regions");
+    }
+
+    /**
+     * start keys of the regions but the first
+     */
+    static byte[][] splitKeys(List<HRegionInfo> regions) {
+        List<byte[]> keys = Lists.newArrayList();
+        for (HRegionInfo region : regions) {
+            if (region.getStartKey().length > 0) {
+                keys.add(region.getStartKey());
+            }
+        }
+        byte[][] splits = keys.toArray(new byte[keys.size()][]);
+        Arrays.sort(splits, Bytes.BYTES_COMPARATOR);
+        return splits;
+    }
+
+    /**
+     * one region after the other, each flush returns once the region is
+     * written out
+     */
+    private void flush(AdminTask task, byte[] table) throws Exception {
+        List<HRegionInfo> regions = admin.getTableRegions(table);
+        for (int i = 0; i < regions.size(); i++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            admin.flush(regions.get(i).getRegionName());
+            task.setPercent(scale(0, 100, i + 1, regions.size()));
+            task.setMessage((i + 1) + " of " + regions.size() + " regions flushed");
+        }
+    }
+
+    /**
+     * the region servers queue the compaction, it is done when no region
+     * compacts anymore. a compaction with nothing to do never shows up
+     */
+    private void compact(AdminTask task, byte[] table, boolean major) throws Exception {
+        if (major) {
+            admin.majorCompact(table);
+        } else {
+            admin.compact(table);
+        }
+        task.setMessage("requested");
+        boolean started = false;
+        int quiet = 0;
+        while (true) {
+            sleep();
+            if (admin.getCompactionState(table) != CompactionState.NONE) {
+                started = true;
+                quiet = 0;
+            } else if (started || ++quiet >= QUIET_POLLS) {
+                break;
+            }
+            TableLoad load = TableLoad.of(admin.getClusterStatus(), table);
+            if (load.compactingKVs > 0) {
+                task.setPercent(scale(0, 99, load.compactedKVs, load.compactingKVs));
+                task.setMessage(load.compactedKVs + " of " + load.compactingKVs
+                        + " cells compacted");
+            }
+        }
+        task.setMessage(started ? "compacted" : "nothing to compact");
+    }
+
+    /**
+     * every region splits at its middle key at most once, it is done when
+     * the region count stays the same and no region is in transition
+     */
+    private void split(AdminTask task, byte[] table) throws Exception {
+        int before = admin.getTableRegions(table).size();
+        admin.split(table);
+        task.setMessage("requested");
+        int last = before;
+        int quiet = 0;
+        while (quiet < QUIET_POLLS) {
+            sleep();
+            int regions = admin.getTableRegions(table).size();
+            TableLoad load = TableLoad.of(admin.getClusterStatus(), table);
+            if (regions != last || load.inTransition > 0) {
+                quiet = 0;
+                last = regions;
+            } else {
+                quiet++;
+            }
+            task.setPercent(scale(0, 99, regions - before, before));
+            task.setMessage(regions + " regions, " + load.inTransition + " in transition");
+        }
+        task.setMessage(last == before ? "no region split" : before + " to " + last + " regions");
+    }
+
+    private void sleep() throws InterruptedException {
+        Thread.sleep(pollMillis);
+    }
+
+    static int scale(int from, int to, long done, long total) {
+        if (total <= 0) {
+            return from;
+        }
+        return from + (int) ((to - from) * Math.min(done, total) / total);
+    }
+
+    /**
+     * the regions of a table in the cluster status, as the region servers
+     * last reported them
+     */
+    static class TableLoad {
+
+        /**
+         * regions online
+         */
+        int regions;
+        int inTransition;
+        long compactingKVs;
+        long compactedKVs;
+
+        static TableLoad of(ClusterStatus status, byte[] table) {
+            TableLoad load = new TableLoad();
+            for (ServerName server : status.getServers()) {
+                HServerLoad serverLoad = status.getLoad(server);
+                if (serverLoad == null) {
+                    continue;
+                }
+                for (HServerLoad.RegionLoad region : serverLoad.getRegionsLoad().values()) {
+                    if (Bytes.equals(table, HRegionInfo.getTableName(region.getName()))) {
+                        load.regions++;
+                        load.compactingKVs += region.getTotalCompactingKVs();
+                        load.compactedKVs += region.getCurrentCompactedKVs();
+                    }
+                }
+            }
+            for (AssignmentManager.RegionState state : status.getRegionsInTransition().values()) {
+                if (Bytes.equals(table, state.getRegion().getTableName())) {
+                    load.inTransition++;
+                }
+            }
+            return load;
+        }
+    }
+}
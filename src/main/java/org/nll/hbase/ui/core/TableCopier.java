@@ -0,0 +1,498 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import com.alibaba.fastjson.JSON;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.CopyCheckpoint;
+import org.nll.hbase.ui.model.CopyStats;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.nll.hbase.ui.util.HbaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * copies the rows of a query range from one table to another, on the same
+ * or another cluster. cells keep their timestamps, so copying a row again
+ * writes the same cells.
+ *
+ * the range is split at the source regions and a number of regions are
+ * copied at the same time. every region scans while its previous batch is
+ * being written, one batch in flight at a time so the batches of a region
+ * land in order. after a batch is flushed its last row is committed to the
+ * checkpoint file; a copy started again with resume goes on after the last
+ * committed row of every region. ranges that changed because a region split
+ * in between are copied again from their start.
+ *
+ * @author fivesmallq
+ */
+public class TableCopier {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(TableCopier.class);
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_BATCH_ROWS = 1000;
+    public static final long DEFAULT_BATCH_BYTES = 2 * 1024 * 1024;
+    private static final long PROGRESS_MILLIS = 1000;
+    private static final long SAVE_MILLIS = 1000;
+    private final HConnection source;
+    private final HConnection target;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int batchRows = DEFAULT_BATCH_ROWS;
+    private long batchBytes = DEFAULT_BATCH_BYTES;
+    private double maxRowsPerSecond;
+    private double maxMBPerSecond;
+    private List<String> columns = Lists.newArrayList();
+    private File checkpointFile;
+
+    /**
+     * @param source
+     * @param target the same connection to copy within a cluster
+     */
+    public TableCopier(HConnection source, HConnection target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * regions copied at the same time
+     *
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * a batch is written when it has this many rows or bytes
+     *
+     * @param batchRows
+     * @param batchBytes
+     */
+    public void setBatch(int batchRows, long batchBytes) {
+        this.batchRows = Math.max(1, batchRows);
+        this.batchBytes = batchBytes;
+    }
+
+    /**
+     * @param maxRowsPerSecond 0 for no limit
+     */
+    public void setMaxRowsPerSecond(double maxRowsPerSecond) {
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    /**
+     * @param maxMBPerSecond 0 for no limit
+     */
+    public void setMaxMBPerSecond(double maxMBPerSecond) {
+        this.maxMBPerSecond = maxMBPerSecond;
+    }
+
+    /**
+     * copy only these columns
+     *
+     * @param columns family or family:qualifier, empty for the families of
+     * the query
+     */
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * @param checkpointFile where the progress is kept, null to keep none
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * copy the query range, the target table must exist with the families
+     * copied
+     *
+     * @param query page size is ignored
+     * @param targetTable
+     * @param resume go on from the checkpoint file if it belongs to this
+     * copy
+     * @param listener may be null
+     * @return
+     * @throws Exception the first error of a region, InterruptedException
+     * when the caller is interrupted. the checkpoint is kept for a resume.
+     */
+    public CopyStats copy(HbaseQuery query, String targetTable, boolean resume,
+            CopyListener listener) throws Exception {
+        final HbaseQuery copyQuery = query.copy();
+        copyQuery.setPageSize(0);
+        if (HbaseUtil.lookupRows(copyQuery) != null) {
+            throw new IllegalArgumentException("a copy needs a key range, not a rowkey list");
+        }
+        if (source == target && copyQuery.getTableName().equals(targetTable)) {
+            throw new IllegalArgumentException("can not copy a table onto itself");
+        }
+        String key = Joiner.on('\u0000').join(ResultCache.keyOf(copyQuery), targetTable,
+                Joiner.on(',').join(columns));
+        CopyCheckpoint checkpoint = resume ? readCheckpoint(key) : null;
+        if (checkpoint == null) {
+            checkpoint = new CopyCheckpoint();
+            checkpoint.setKey(key);
+        }
+        List<ScanRange> ranges = ParallelScanner.getRanges(source, copyQuery);
+        Copy copy = new Copy(copyQuery, targetTable, checkpoint, ranges.size());
+        logger.info("copy {} to {} in {} ranges, {} done before", new Object[]{
+            copyQuery.getTableName(), targetTable, ranges.size(),
+            checkpoint.getFinished().size()});
+        ExecutorService scanPool = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("copy-scan-%d").build());
+        ExecutorService writePool = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("copy-write-%d").build());
+        List<Future<Void>> futures = Lists.newArrayList();
+        boolean done = false;
+        try {
+            for (ScanRange range : ranges) {
+                if (copy.isFinished(range)) {
+                    copy.finished.incrementAndGet();
+                } else {
+                    futures.add(scanPool.submit(copy.range(range, writePool)));
+                }
+            }
+            for (Future<Void> future : futures) {
+                while (true) {
+                    try {
+                        future.get(PROGRESS_MILLIS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (listener != null) {
+                            listener.progress(copy.stats());
+                        }
+                    }
+                }
+            }
+            done = true;
+        } catch (ExecutionException e) {
+            logger.error("copy error! " + copyQuery.getTableName(), e.getCause());
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        } finally {
+            copy.cancelled.set(true);
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            scanPool.shutdownNow();
+            writePool.shutdownNow();
+            if (done) {
+                deleteCheckpoint();
+            } else {
+                copy.save(true);
+            }
+        }
+        CopyStats stats = copy.stats();
+        if (listener != null) {
+            listener.progress(stats);
+        }
+        logger.info("copied {} to {}: {}", new Object[]{copyQuery.getTableName(), targetTable,
+            stats});
+        return stats;
+    }
+
+    private CopyCheckpoint readCheckpoint(String key) {
+        if (checkpointFile == null || !checkpointFile.isFile()) {
+            return null;
+        }
+        try {
+            CopyCheckpoint checkpoint = JSON.parseObject(
+                    Files.toString(checkpointFile, Charsets.UTF_8), CopyCheckpoint.class);
+            if (checkpoint != null && key.equals(checkpoint.getKey())) {
+                return checkpoint;
+            }
+            logger.info("checkpoint {} is of another copy", checkpointFile);
+        } catch (Exception e) {
+            logger.warn("ignore unreadable checkpoint " + checkpointFile, e);
+        }
+        return null;
+    }
+
+    private void deleteCheckpoint() {
+        if (checkpointFile != null && checkpointFile.exists() && !checkpointFile.delete()) {
+            logger.warn("can not delete checkpoint {}", checkpointFile);
+        }
+    }
+
+    /**
+     * restrict the scan to the copied columns
+     */
+    private void addColumns(Scan scan) {
+        if (columns.isEmpty()) {
+            return;
+        }
+        scan.setFamilyMap(new TreeMap<byte[], java.util.NavigableSet<byte[]>>(
+                Bytes.BYTES_COMPARATOR));
+        for (String column : columns) {
+            int colon = column.indexOf(':');
+            if (colon < 0) {
+                scan.addFamily(Bytes.toBytes(column));
+            } else {
+                scan.addColumn(Bytes.toBytes(column.substring(0, colon)),
+                        Bytes.toBytes(column.substring(colon + 1)));
+            }
+        }
+    }
+
+    /**
+     * state of one copy shared by its regions
+     */
+    private class Copy {
+
+        private final HbaseQuery query;
+        private final String targetTable;
+        private final CopyCheckpoint checkpoint;
+        private final int ranges;
+        private final Throttle rowThrottle = new Throttle(maxRowsPerSecond);
+        private final Throttle byteThrottle = new Throttle(maxMBPerSecond * 1024L * 1024L);
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicInteger finished = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final long start = System.currentTimeMillis();
+        private long saved;
+
+        Copy(HbaseQuery query, String targetTable, CopyCheckpoint checkpoint, int ranges) {
+            this.query = query;
+            this.targetTable = targetTable;
+            this.checkpoint = checkpoint;
+            this.ranges = ranges;
+        }
+
+        boolean isFinished(ScanRange range) {
+            synchronized (checkpoint) {
+                return checkpoint.getFinished().contains(Bytes.toStringBinary(range.getStartRow()));
+            }
+        }
+
+        /**
+         * first row still to copy in the range
+         */
+        byte[] resumeRow(ScanRange range) {
+            String last;
+            synchronized (checkpoint) {
+                last = checkpoint.getCommitted().get(Bytes.toStringBinary(range.getStartRow()));
+            }
+            // the smallest row after the committed one
+            return last == null ? range.getStartRow()
+                    : Bytes.add(Bytes.toBytesBinary(last), new byte[]{0});
+        }
+
+        void commit(ScanRange range, byte[] lastRow, int rows) {
+            synchronized (checkpoint) {
+                checkpoint.getCommitted().put(Bytes.toStringBinary(range.getStartRow()),
+                        Bytes.toStringBinary(lastRow));
+                checkpoint.setRows(checkpoint.getRows() + rows);
+            }
+            save(false);
+        }
+
+        void finish(ScanRange range) {
+            String key = Bytes.toStringBinary(range.getStartRow());
+            synchronized (checkpoint) {
+                checkpoint.getCommitted().remove(key);
+                checkpoint.getFinished().add(key);
+            }
+            finished.incrementAndGet();
+            save(false);
+        }
+
+        /**
+         * write the checkpoint file, at most once a second unless forced
+         */
+        void save(boolean force) {
+            if (checkpointFile == null) {
+                return;
+            }
+            String json;
+            synchronized (checkpoint) {
+                long now = System.currentTimeMillis();
+                if (!force && now - saved < SAVE_MILLIS) {
+                    return;
+                }
+                saved = now;
+                json = JSON.toJSONString(checkpoint);
+            }
+            synchronized (this) {
+                File temp = new File(checkpointFile.getPath() + ".tmp");
+                try {
+                    Files.createParentDirs(checkpointFile);
+                    Files.write(json, temp, Charsets.UTF_8);
+                    if (!temp.renameTo(checkpointFile)) {
+                        // windows does not replace on rename
+                        Files.copy(temp, checkpointFile);
+                        temp.delete();
+                    }
+                } catch (IOException e) {
+                    logger.warn("write checkpoint error! " + checkpointFile, e);
+                }
+            }
+        }
+
+        CopyStats stats() {
+            CopyStats stats = new CopyStats();
+            synchronized (checkpoint) {
+                stats.setRows(checkpoint.getRows());
+            }
+            stats.setBytes(bytes.get());
+            stats.setRanges(ranges);
+            stats.setFinishedRanges(finished.get());
+            stats.setMillis(System.currentTimeMillis() - start);
+            return stats;
+        }
+
+        Callable<Void> range(final ScanRange range, final ExecutorService writePool) {
+            return new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    if (cancelled.get()) {
+                        return null;
+                    }
+                    try {
+                        copyRange(range, writePool);
+                    } catch (Exception e) {
+                        // stop the other regions at once
+                        cancelled.set(true);
+                        throw e;
+                    }
+                    return null;
+                }
+            };
+        }
+
+        /**
+         * scan the range and write it in batches, the next batch is read
+         * while the last one is written
+         */
+        private void copyRange(final ScanRange range, final ExecutorService writePool)
+                throws Exception {
+            final HTableInterface table = target.getTable(targetTable);
+            // the batch being written
+            final Future<?>[] pending = new Future<?>[1];
+            try {
+                // flushed by the copy only, after every batch
+                table.setAutoFlush(false, true);
+                table.setWriteBufferSize(Long.MAX_VALUE);
+                Scan scan = HbaseUtil.buildScan(query);
+                scan.setStartRow(resumeRow(range));
+                scan.setStopRow(range.getStopRow());
+                addColumns(scan);
+                final List<Put> batch = Lists.newArrayList();
+                final long[] batchSize = new long[1];
+                HbaseUtil.scanResults(source, query.getTableName(), scan, query.getBatch(),
+                        new ResultHandler() {
+                            @Override
+                            public boolean handle(Result result) throws Exception {
+                                if (cancelled.get()) {
+                                    return false;
+                                }
+                                Put put = new Put(result.getRow());
+                                for (KeyValue cell : result.raw()) {
+                                    put.add(cell);
+                                    batchSize[0] += cell.getLength();
+                                }
+                                batch.add(put);
+                                if (batch.size() >= batchRows || batchSize[0] >= batchBytes) {
+                                    pending[0] = submit(table, range, Lists.newArrayList(batch),
+                                            batchSize[0], pending[0], writePool);
+                                    batch.clear();
+                                    batchSize[0] = 0;
+                                }
+                                return true;
+                            }
+                        });
+                if (!cancelled.get() && !batch.isEmpty()) {
+                    pending[0] = submit(table, range, batch, batchSize[0], pending[0], writePool);
+                }
+                waitFor(pending[0]);
+                pending[0] = null;
+                if (!cancelled.get()) {
+                    finish(range);
+                }
+            } finally {
+                if (pending[0] == null || pending[0].isDone()) {
+                    table.close();
+                } else {
+                    // a handle is not thread safe, leave it to the running write
+                    pending[0].cancel(true);
+                }
+            }
+        }
+
+        /**
+         * wait for the previous batch, then write this one in the background
+         */
+        private Future<?> submit(final HTableInterface table, final ScanRange range,
+                final List<Put> puts, final long size, Future<?> previous,
+                ExecutorService writePool) throws Exception {
+            waitFor(previous);
+            rowThrottle.acquire(puts.size());
+            byteThrottle.acquire(size);
+            return writePool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    table.put(puts);
+                    table.flushCommits();
+                    bytes.addAndGet(size);
+                    commit(range, puts.get(puts.size() - 1).getRow(), puts.size());
+                    return null;
+                }
+            });
+        }
+
+        private void waitFor(Future<?> future) throws Exception {
+            if (future == null) {
+                return;
+            }
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
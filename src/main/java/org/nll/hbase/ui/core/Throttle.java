@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * spaces out work to a rate, shared by the threads of a job.
+ *
+ * every caller takes its permits from a common schedule and sleeps until
+ * its turn, so a big request delays the ones after it and not itself.
+ * there is no burst: time not used is not saved up.
+ *
+ * @author fivesmallq
+ */
+public class Throttle {
+
+    private final double nanosPerPermit;
+    private long next = System.nanoTime();
+
+    /**
+     * @param perSecond permits a second, 0 or less for no limit
+     */
+    public Throttle(double perSecond) {
+        this.nanosPerPermit = perSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / perSecond : 0;
+    }
+
+    public boolean isLimited() {
+        return nanosPerPermit > 0;
+    }
+
+    /**
+     * wait for the permits
+     *
+     * @param permits
+     * @throws InterruptedException
+     */
+    public void acquire(long permits) throws InterruptedException {
+        if (nanosPerPermit <= 0 || permits <= 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (next < now) {
+                next = now;
+            }
+            wait = next - now;
+            next += (long) (permits * nanosPerPermit);
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.core;
+
+/**
+ * turns the bytes of a cell value into the text shown and exported.
+ *
+ * more codecs can be added by a jar on the class path listing its classes
+ * in META-INF/services/org.nll.hbase.ui.core.ValueCodec, they need a public
+ * no argument constructor. implementations must be thread safe.
+ *
+ * @author fivesmallq
+ */
+public interface ValueCodec {
+
+    /**
+     * unique name, kept in the setting of the columns decoded with it
+     *
+     * @return
+     */
+    String getName();
+
+    /**
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return the text, never null
+     */
+    String decode(byte[] bytes, int offset, int length);
+}
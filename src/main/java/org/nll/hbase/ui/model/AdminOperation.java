@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+/**
+ * table administration run by the admin of a connection
+ *
+ * @author fivesmallq
+ */
+public enum AdminOperation {
+
+    DISABLE("Disable", true),
+    ENABLE("Enable", false),
+    /**
+     * disables the table first if needed
+     */
+    DELETE("Delete", true),
+    /**
+     * drop and create again with the same descriptor and region splits
+     */
+    TRUNCATE("Truncate", true),
+    FLUSH("Flush", false),
+    COMPACT("Compact", false),
+    MAJOR_COMPACT("Major Compact", false),
+    SPLIT("Split", false);
+    private final String label;
+    private final boolean dangerous;
+
+    private AdminOperation(String label, boolean dangerous) {
+        this.label = label;
+        this.dangerous = dangerous;
+    }
+
+    /**
+     * takes the table offline or loses data, asked before running
+     *
+     * @return
+     */
+    public boolean isDangerous() {
+        return dangerous;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+/**
+ * one table of an admin operation and how far it got. written by the
+ * thread running the operation, listeners get copies.
+ *
+ * @author fivesmallq
+ */
+public class AdminTask {
+
+    public enum State {
+
+        PENDING, RUNNING, DONE, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this != PENDING && this != RUNNING;
+        }
+    }
+    private final AdminOperation operation;
+    private final String tableName;
+    private volatile State state = State.PENDING;
+    /**
+     * 0 to 100
+     */
+    private volatile int percent;
+    /**
+     * what the operation is waiting for, or the error
+     */
+    private volatile String message = "";
+    private volatile long millis;
+
+    public AdminTask(AdminOperation operation, String tableName) {
+        this.operation = operation;
+        this.tableName = tableName;
+    }
+
+    public AdminOperation getOperation() {
+        return operation;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public int getPercent() {
+        return percent;
+    }
+
+    public void setPercent(int percent) {
+        this.percent = Math.max(0, Math.min(100, percent));
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message == null ? "" : message;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    public AdminTask copy() {
+        AdminTask copy = new AdminTask(operation, tableName);
+        copy.state = state;
+        copy.percent = percent;
+        copy.message = message;
+        copy.millis = millis;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(operation).append(' ').append(tableName).append(": ");
+        switch (state) {
+            case RUNNING:
+                text.append(percent).append('%');
+                break;
+            default:
+                text.append(state.name().toLowerCase());
+                if (state.isFinished()) {
+                    text.append(String.format(" in %.1f s", millis / 1000.0));
+                }
+        }
+        if (!message.isEmpty()) {
+            text.append(", ").append(message);
+        }
+        return text.toString();
+    }
+}
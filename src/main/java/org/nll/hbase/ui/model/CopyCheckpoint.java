@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * how far a table copy got, kept in a file so a failed copy can go on from
+ * there. keys are written with Bytes.toStringBinary.
+ *
+ * @author fivesmallq
+ */
+public class CopyCheckpoint {
+
+    /**
+     * source, target and query of the copy, a checkpoint of another copy is
+     * not used
+     */
+    private String key;
+    /**
+     * last row written and flushed, by range start
+     */
+    private Map<String, String> committed = Maps.newHashMap();
+    /**
+     * starts of the ranges copied completely
+     */
+    private Set<String> finished = Sets.newHashSet();
+    private long rows;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Map<String, String> getCommitted() {
+        return committed;
+    }
+
+    public void setCommitted(Map<String, String> committed) {
+        this.committed = committed;
+    }
+
+    public Set<String> getFinished() {
+        return finished;
+    }
+
+    public void setFinished(Set<String> finished) {
+        this.finished = finished;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+}
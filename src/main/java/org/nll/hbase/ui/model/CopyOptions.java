@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+
+/**
+ * where and how a table copy writes.
+ *
+ * @author fivesmallq
+ */
+public class CopyOptions {
+
+    /**
+     * connection of the target table, may be the source connection
+     */
+    private String targetName;
+    private String targetTable;
+    /**
+     * family or family:qualifier, empty to copy the families of the query
+     */
+    private List<String> columns = Lists.newArrayList();
+    /**
+     * regions copied at the same time
+     */
+    private int parallelism = 4;
+    /**
+     * 0 for no limit
+     */
+    private double maxRowsPerSecond;
+    /**
+     * 0 for no limit
+     */
+    private double maxMBPerSecond;
+    /**
+     * go on after the rows a failed copy committed
+     */
+    private boolean resume = true;
+
+    public String getTargetName() {
+        return targetName;
+    }
+
+    public void setTargetName(String targetName) {
+        this.targetName = targetName;
+    }
+
+    public String getTargetTable() {
+        return targetTable;
+    }
+
+    public void setTargetTable(String targetTable) {
+        this.targetTable = targetTable;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public double getMaxRowsPerSecond() {
+        return maxRowsPerSecond;
+    }
+
+    public void setMaxRowsPerSecond(double maxRowsPerSecond) {
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    public double getMaxMBPerSecond() {
+        return maxMBPerSecond;
+    }
+
+    public void setMaxMBPerSecond(double maxMBPerSecond) {
+        this.maxMBPerSecond = maxMBPerSecond;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+/**
+ * progress of a table copy.
+ *
+ * @author fivesmallq
+ */
+public class CopyStats {
+
+    /**
+     * rows written to the target, rows of a resumed copy included
+     */
+    private long rows;
+    /**
+     * cell bytes written in this run
+     */
+    private long bytes;
+    private long millis;
+    /**
+     * key ranges of the copy, one per source region
+     */
+    private int ranges;
+    private int finishedRanges;
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    public int getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(int ranges) {
+        this.ranges = ranges;
+    }
+
+    public int getFinishedRanges() {
+        return finishedRanges;
+    }
+
+    public void setFinishedRanges(int finishedRanges) {
+        this.finishedRanges = finishedRanges;
+    }
+
+    public double getMBPerSecond() {
+        return millis == 0 ? 0 : bytes * 1000.0 / millis / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows, %d/%d regions, %.1f MB in %.1f s (%.1f MB/s)", rows,
+                finishedRanges, ranges, bytes / (1024.0 * 1024), millis / 1000.0,
+                getMBPerSecond());
+    }
+}
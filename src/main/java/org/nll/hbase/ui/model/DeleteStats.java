@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+/**
+ * progress of a bulk delete.
+ *
+ * @author fivesmallq
+ */
+public class DeleteStats {
+
+    /**
+     * rows deleted, or rows that would be deleted in a dry run
+     */
+    private long rows;
+    private boolean dryRun;
+    private long millis;
+    /**
+     * key ranges of the delete, one per region
+     */
+    private int ranges;
+    private int finishedRanges;
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    public int getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(int ranges) {
+        this.ranges = ranges;
+    }
+
+    public int getFinishedRanges() {
+        return finishedRanges;
+    }
+
+    public void setFinishedRanges(int finishedRanges) {
+        this.finishedRanges = finishedRanges;
+    }
+
+    public double getRowsPerSecond() {
+        return millis == 0 ? 0 : rows * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows %s, %d/%d regions in %.1f s (%.0f rows/s)", rows,
+                dryRun ? "to delete" : "deleted", finishedRanges, ranges, millis / 1000.0,
+                getRowsPerSecond());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+/**
+ * progress of an export.
+ *
+ * @author fivesmallq
+ */
+public class ExportStats {
+
+    private long rows;
+    /**
+     * bytes written to the output, after compression
+     */
+    private long bytes;
+    private long millis;
+    /**
+     * csv columns first seen after the header was written, their values
+     * are not exported
+     */
+    private int skippedColumns;
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    public int getSkippedColumns() {
+        return skippedColumns;
+    }
+
+    public void setSkippedColumns(int skippedColumns) {
+        this.skippedColumns = skippedColumns;
+    }
+
+    public double getRowsPerSecond() {
+        return millis == 0 ? 0 : rows * 1000.0 / millis;
+    }
+
+    public double getMBPerSecond() {
+        return millis == 0 ? 0 : bytes * 1000.0 / millis / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows, %.1f MB in %.1f s (%.0f rows/s, %.1f MB/s)", rows,
+                bytes / (1024.0 * 1024), millis / 1000.0, getRowsPerSecond(), getMBPerSecond());
+    }
+}
@@ -26,6 +26,9 @@ import java.util.Map;
 public class HbaseData {
 
     private String rowkey;
+    /**
+     * cells keyed by family:qualifier
+     */
     private Map<String, FamilyData> datas = Maps.newLinkedHashMap();
 
     public String getRowkey() {
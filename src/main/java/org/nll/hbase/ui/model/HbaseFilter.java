@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+/**
+ * one filter condition, field operation value
+ *
+ * @author fivesmallq
+ */
+public class HbaseFilter {
+
+    /**
+     * compare the value of any cell
+     */
+    public static final String ANY_VALUE = "<any value>";
+    /**
+     * compare the qualifier of any cell
+     */
+    public static final String QUALIFIER = "<qualifier>";
+    /**
+     * family:qualifier, {@link #ANY_VALUE} or {@link #QUALIFIER}
+     */
+    private String field;
+    private FilterOperation operation = FilterOperation.EQUAL;
+    private String value;
+
+    public HbaseFilter() {
+    }
+
+    public HbaseFilter(String field, FilterOperation operation, String value) {
+        this.field = field;
+        this.operation = operation;
+        this.value = value;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public FilterOperation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(FilterOperation operation) {
+        this.operation = operation;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    @Override
+    public String toString() {
+        return field + " " + operation + " " + value;
+    }
+}
@@ -29,8 +29,28 @@ public class HbaseQuery {
     private String prefixRowkey;
     private String startRowkey;
     private String stopRowkey;
+    /**
+     * max rows returned, 0 for no limit
+     */
     private int pageSize = 10;
     private List<String> families = Lists.newArrayList();
+    private List<HbaseFilter> filters = Lists.newArrayList();
+    /**
+     * true to AND the filters, false to OR them
+     */
+    private boolean matchAll = true;
+    /**
+     * exact rowkeys to look up with gets instead of a scan, empty to scan
+     */
+    private List<String> rowkeys = Lists.newArrayList();
+    /**
+     * scanner caching, 0 to tune it from the table
+     */
+    private int caching;
+    /**
+     * cells per result, 0 to tune it from the table
+     */
+    private int batch;
 
     public String getTableName() {
         return tableName;
@@ -80,6 +100,68 @@ public class HbaseQuery {
         this.families = families;
     }
 
+    public List<HbaseFilter> getFilters() {
+        return filters;
+    }
+
+    public void setFilters(List<HbaseFilter> filters) {
+        this.filters = filters;
+    }
+
+    public boolean isMatchAll() {
+        return matchAll;
+    }
+
+    public void setMatchAll(boolean matchAll) {
+        this.matchAll = matchAll;
+    }
+
+    public List<String> getRowkeys() {
+        return rowkeys;
+    }
+
+    public void setRowkeys(List<String> rowkeys) {
+        this.rowkeys = rowkeys;
+    }
+
+    public int getCaching() {
+        return caching;
+    }
+
+    public void setCaching(int caching) {
+        this.caching = caching;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public void setBatch(int batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * copy of this query, the families and filters lists are copied too.
+     * rowkeys are shared, they can be a long list and are not changed
+     *
+     * @return
+     */
+    public HbaseQuery copy() {
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName(tableName);
+        query.setPrefixRowkey(prefixRowkey);
+        query.setStartRowkey(startRowkey);
+        query.setStopRowkey(stopRowkey);
+        query.setPageSize(pageSize);
+        query.setFamilies(Lists.newArrayList(families));
+        query.setFilters(Lists.newArrayList(filters));
+        query.setMatchAll(matchAll);
+        query.setRowkeys(rowkeys);
+        query.setCaching(caching);
+        query.setBatch(batch);
+        return query;
+    }
+
     @Override
     public String toString() {
         return JSON.toJSONString(this); //To change body of generated methods, choose Tools | Templates.
@@ -16,10 +16,13 @@
 package org.nll.hbase.ui.model;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.annotation.JSONField;
 import com.google.common.collect.Lists;
 import java.util.List;
 
 /**
+ * table name and families, the families of a table are read when it is
+ * first used.
  *
  * @author fivesmallq
  */
@@ -27,6 +30,10 @@ public class HbaseSchema {
 
     private String tableName;
     private List<String> families = Lists.newArrayList();
+    /**
+     * false until the families were read
+     */
+    private boolean loaded;
 
     public String getTableName() {
         return tableName;
@@ -44,6 +51,15 @@ public class HbaseSchema {
         this.families = families;
     }
 
+    @JSONField(serialize = false)
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void setLoaded(boolean loaded) {
+        this.loaded = loaded;
+    }
+
     @Override
     public String toString() {
         return JSON.toJSONString(this); //To change body of generated methods, choose Tools | Templates.
@@ -16,6 +16,8 @@
 package org.nll.hbase.ui.model;
 
 import com.alibaba.fastjson.JSON;
+import com.google.common.collect.Maps;
+import java.util.Map;
 
 /**
  *
@@ -36,6 +38,53 @@ public class HbaseSetting {
      * hbase.zookeeper.quorum
      */
     private String quorum;
+    /**
+     * scanner caching of every scan, 0 to tune it per table
+     */
+    private int caching;
+    /**
+     * scanner batch of every scan, 0 to tune it per table
+     */
+    private int batch;
+    /**
+     * pages read ahead of the visible rows while browsing
+     */
+    private int prefetchPages = 1;
+    /**
+     * rows of a query kept in memory at most
+     */
+    private int maxCachedRows = 20000;
+    /**
+     * keep pages dropped from memory in a memory mapped temp file instead of
+     * reading them again
+     */
+    private boolean spillPages = true;
+    /**
+     * size of the query result cache
+     */
+    private int resultCacheMB = 64;
+    /**
+     * writer threads of an import
+     */
+    private int importWriters = 4;
+    /**
+     * client write buffer of every import writer
+     */
+    private int writeBufferMB = 4;
+    /**
+     * where a bulk load writes its hfiles, a directory the region servers
+     * can reach such as hdfs://namenode:8020/tmp
+     */
+    private String bulkLoadDir;
+    /**
+     * memory for sorting a bulk load, more goes to local temp files
+     */
+    private int sortBufferMB = 64;
+    /**
+     * value codec names by table/family:qualifier, table/family or table,
+     * see {@link org.nll.hbase.ui.core.ColumnCodecs}
+     */
+    private Map<String, String> codecs = Maps.newHashMap();
 
     public String getName() {
         return name;
@@ -69,6 +118,94 @@ public class HbaseSetting {
         this.quorum = quorum;
     }
 
+    public int getCaching() {
+        return caching;
+    }
+
+    public void setCaching(int caching) {
+        this.caching = caching;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public void setBatch(int batch) {
+        this.batch = batch;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    public void setPrefetchPages(int prefetchPages) {
+        this.prefetchPages = prefetchPages;
+    }
+
+    public int getMaxCachedRows() {
+        return maxCachedRows;
+    }
+
+    public void setMaxCachedRows(int maxCachedRows) {
+        this.maxCachedRows = maxCachedRows;
+    }
+
+    public boolean isSpillPages() {
+        return spillPages;
+    }
+
+    public void setSpillPages(boolean spillPages) {
+        this.spillPages = spillPages;
+    }
+
+    public int getResultCacheMB() {
+        return resultCacheMB;
+    }
+
+    public void setResultCacheMB(int resultCacheMB) {
+        this.resultCacheMB = resultCacheMB;
+    }
+
+    public int getImportWriters() {
+        return importWriters;
+    }
+
+    public void setImportWriters(int importWriters) {
+        this.importWriters = importWriters;
+    }
+
+    public int getWriteBufferMB() {
+        return writeBufferMB;
+    }
+
+    public void setWriteBufferMB(int writeBufferMB) {
+        this.writeBufferMB = writeBufferMB;
+    }
+
+    public String getBulkLoadDir() {
+        return bulkLoadDir;
+    }
+
+    public void setBulkLoadDir(String bulkLoadDir) {
+        this.bulkLoadDir = bulkLoadDir;
+    }
+
+    public int getSortBufferMB() {
+        return sortBufferMB;
+    }
+
+    public void setSortBufferMB(int sortBufferMB) {
+        this.sortBufferMB = sortBufferMB;
+    }
+
+    public Map<String, String> getCodecs() {
+        return codecs;
+    }
+
+    public void setCodecs(Map<String, String> codecs) {
+        this.codecs = codecs == null ? Maps.<String, String>newHashMap() : codecs;
+    }
+
     @Override
     public String toString() {
         return JSON.toJSONString(this);
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+
+/**
+ * progress of an import.
+ *
+ * @author fivesmallq
+ */
+public class ImportStats {
+
+    /**
+     * failures kept for the report, the rest are only counted
+     */
+    public static final int MAX_REPORTED_FAILURES = 100;
+    /**
+     * rows sent to the writers, less the ones the servers refused
+     */
+    private long rows;
+    private long failedRows;
+    /**
+     * bytes read from the input, before decompression
+     */
+    private long bytes;
+    private long millis;
+    private List<String> failures = Lists.newArrayList();
+    /**
+     * what a bulk load is doing now, null for an import through puts
+     */
+    private String stage;
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getFailedRows() {
+        return failedRows;
+    }
+
+    public void setFailedRows(long failedRows) {
+        this.failedRows = failedRows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * the first failed rows with the reason, as "line 12: ..." for rows the
+     * input could not give and "row abc: ..." for rows the servers refused
+     *
+     * @return
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(List<String> failures) {
+        this.failures = failures;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public double getRowsPerSecond() {
+        return millis == 0 ? 0 : rows * 1000.0 / millis;
+    }
+
+    public double getMBPerSecond() {
+        return millis == 0 ? 0 : bytes * 1000.0 / millis / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows, %d failed, %.1f MB read in %.1f s (%.0f rows/s, %.1f MB/s)",
+                rows, failedRows, bytes / (1024.0 * 1024), millis / 1000.0, getRowsPerSecond(),
+                getMBPerSecond());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+import com.google.common.collect.Maps;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * content of the local cache file, connection settings and the last known
+ * tables of each cluster.
+ *
+ * @author fivesmallq
+ */
+public class LocalCache {
+
+    /**
+     * name of the setting connected last
+     */
+    private String lastSetting;
+    private Map<String, HbaseSetting> settings = Maps.newLinkedHashMap();
+    /**
+     * tables by cluster, see {@link org.nll.hbase.ui.core.LocalStore#clusterKey}
+     */
+    private Map<String, List<HbaseSchema>> schemas = Maps.newHashMap();
+
+    public String getLastSetting() {
+        return lastSetting;
+    }
+
+    public void setLastSetting(String lastSetting) {
+        this.lastSetting = lastSetting;
+    }
+
+    public Map<String, HbaseSetting> getSettings() {
+        return settings;
+    }
+
+    public void setSettings(Map<String, HbaseSetting> settings) {
+        this.settings = settings;
+    }
+
+    public Map<String, List<HbaseSchema>> getSchemas() {
+        return schemas;
+    }
+
+    public void setSchemas(Map<String, List<HbaseSchema>> schemas) {
+        this.schemas = schemas;
+    }
+}
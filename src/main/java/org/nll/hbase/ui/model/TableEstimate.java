@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.model;
+
+import com.alibaba.fastjson.JSON;
+import com.google.common.collect.Maps;
+import java.util.Map;
+
+/**
+ * approximate size of a table from region metadata, rows and family sizes
+ * are only known after a sample scan.
+ *
+ * @author fivesmallq
+ */
+public class TableEstimate {
+
+    private String tableName;
+    private int regions;
+    private int stores;
+    private int storefiles;
+    private long storefileSizeMB;
+    private long memStoreSizeMB;
+    /**
+     * -1 until sampled
+     */
+    private long estimatedRows = -1;
+    private int sampledRows;
+    private long bytesPerRow;
+    /**
+     * store size of each family in MB, split by the sampled bytes
+     */
+    private Map<String, Long> familySizeMB = Maps.newLinkedHashMap();
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public int getRegions() {
+        return regions;
+    }
+
+    public void setRegions(int regions) {
+        this.regions = regions;
+    }
+
+    public int getStores() {
+        return stores;
+    }
+
+    public void setStores(int stores) {
+        this.stores = stores;
+    }
+
+    public int getStorefiles() {
+        return storefiles;
+    }
+
+    public void setStorefiles(int storefiles) {
+        this.storefiles = storefiles;
+    }
+
+    public long getStorefileSizeMB() {
+        return storefileSizeMB;
+    }
+
+    public void setStorefileSizeMB(long storefileSizeMB) {
+        this.storefileSizeMB = storefileSizeMB;
+    }
+
+    public long getMemStoreSizeMB() {
+        return memStoreSizeMB;
+    }
+
+    public void setMemStoreSizeMB(long memStoreSizeMB) {
+        this.memStoreSizeMB = memStoreSizeMB;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    public int getSampledRows() {
+        return sampledRows;
+    }
+
+    public void setSampledRows(int sampledRows) {
+        this.sampledRows = sampledRows;
+    }
+
+    public long getBytesPerRow() {
+        return bytesPerRow;
+    }
+
+    public void setBytesPerRow(long bytesPerRow) {
+        this.bytesPerRow = bytesPerRow;
+    }
+
+    public Map<String, Long> getFamilySizeMB() {
+        return familySizeMB;
+    }
+
+    public void setFamilySizeMB(Map<String, Long> familySizeMB) {
+        this.familySizeMB = familySizeMB;
+    }
+
+    /**
+     * short text for the table list, like "1.2 GB, ~3.4M rows"
+     *
+     * @return
+     */
+    public String toSummary() {
+        long mb = storefileSizeMB + memStoreSizeMB;
+        String size = mb >= 1024 ? String.format("%.1f GB", mb / 1024.0) : mb + " MB";
+        if (estimatedRows < 0) {
+            return size;
+        }
+        return size + ", ~" + formatCount(estimatedRows) + " rows";
+    }
+
+    private static String formatCount(long count) {
+        if (count >= 1000000000L) {
+            return String.format("%.1fG", count / 1e9);
+        } else if (count >= 1000000L) {
+            return String.format("%.1fM", count / 1e6);
+        } else if (count >= 1000L) {
+            return String.format("%.1fK", count / 1e3);
+        }
+        return String.valueOf(count);
+    }
+
+    @Override
+    public String toString() {
+        return JSON.toJSONString(this);
+    }
+}
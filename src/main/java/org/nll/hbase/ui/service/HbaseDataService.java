@@ -15,13 +15,47 @@
  */
 package org.nll.hbase.ui.service;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.io.File;
+import java.util.Iterator;
 import java.util.List;
-import org.apache.hadoop.conf.Configuration;
+import java.util.Map;
 import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.Result;
+import org.nll.hbase.ui.core.AdminListener;
+import org.nll.hbase.ui.core.BulkDeleter;
+import org.nll.hbase.ui.core.BulkLoader;
+import org.nll.hbase.ui.core.ConnectionManager;
+import org.nll.hbase.ui.core.CopyListener;
+import org.nll.hbase.ui.core.CountListener;
+import org.nll.hbase.ui.core.DeleteListener;
+import org.nll.hbase.ui.core.ExportFormat;
+import org.nll.hbase.ui.core.ExportListener;
+import org.nll.hbase.ui.core.Exporter;
 import org.nll.hbase.ui.core.HbaseContext;
+import org.nll.hbase.ui.core.ImportListener;
+import org.nll.hbase.ui.core.Importer;
+import org.nll.hbase.ui.core.LocalStore;
+import org.nll.hbase.ui.core.ParallelScanner;
+import org.nll.hbase.ui.core.ResultHandler;
+import org.nll.hbase.ui.core.RowPage;
+import org.nll.hbase.ui.core.SizeEstimator;
+import org.nll.hbase.ui.core.TableAdmin;
+import org.nll.hbase.ui.core.TableCopier;
+import org.nll.hbase.ui.model.AdminOperation;
+import org.nll.hbase.ui.model.AdminTask;
+import org.nll.hbase.ui.model.CopyOptions;
+import org.nll.hbase.ui.model.CopyStats;
+import org.nll.hbase.ui.model.DeleteStats;
+import org.nll.hbase.ui.model.ExportStats;
+import org.nll.hbase.ui.model.HbaseQuery;
 import org.nll.hbase.ui.model.HbaseSchema;
 import org.nll.hbase.ui.model.HbaseSetting;
+import org.nll.hbase.ui.model.ImportStats;
+import org.nll.hbase.ui.model.TableEstimate;
 import org.nll.hbase.ui.util.HbaseUtil;
+import org.nll.hbase.ui.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,13 +68,440 @@ public class HbaseDataService {
     private final static Logger logger = LoggerFactory
             .getLogger(HbaseUtil.class);
 
-    public void connect(HbaseSetting hbaseSetting) throws Exception {
-        Configuration configuration = HbaseUtil.createConf(hbaseSetting);
-        HConnection connection = HbaseUtil.createConnection(configuration);
-        HbaseContext.addConn(hbaseSetting.getName(), connection);
-        List<HbaseSchema> hbaseSchemas = HbaseUtil.getTableSchema(connection);
-        HbaseContext.addSchema(hbaseSetting.getName(), hbaseSchemas);
-        logger.info("schemas:{}", hbaseSchemas);
+    /**
+     * regions counted at the same time by one count
+     */
+    private static final int COUNT_THREADS = 4;
+    private final ConnectionManager connectionManager = ConnectionManager.getInstance();
+
+    /**
+     * register the setting and show the tables last seen on its cluster,
+     * nothing is read from the cluster
+     *
+     * @param hbaseSetting
+     * @return cached tables, null if the cluster was never connected
+     */
+    public List<HbaseSchema> connectCached(HbaseSetting hbaseSetting) {
+        String name = hbaseSetting.getName();
+        connectionManager.register(hbaseSetting);
+        HbaseContext.saveSetting(hbaseSetting, true);
+        List<HbaseSchema> hbaseSchemas = HbaseContext.getLocalStore().getSchemas(hbaseSetting);
+        if (hbaseSchemas != null) {
+            HbaseContext.addSchema(name, hbaseSchemas);
+            logger.info("{} cached tables of {}", hbaseSchemas.size(), name);
+        }
+        return hbaseSchemas;
+    }
+
+    /**
+     * open the connection and read the table names, tables already known
+     * keep their schema objects and families
+     *
+     * @param hbaseSetting
+     * @return true if the tables differ from the ones known before
+     * @throws Exception
+     */
+    public boolean connect(HbaseSetting hbaseSetting) throws Exception {
+        String name = hbaseSetting.getName();
+        connectionManager.register(hbaseSetting);
+        HbaseContext.saveSetting(hbaseSetting, true);
+        HConnection connection = connectionManager.acquire(name);
+        boolean changed;
+        try {
+            // names only, families are read when a table is used
+            List<HbaseSchema> hbaseSchemas = HbaseUtil.getTableNames(connection);
+            List<HbaseSchema> known = HbaseContext.getSchemas(name);
+            Map<String, HbaseSchema> byName = Maps.newHashMap();
+            if (known != null) {
+                for (HbaseSchema hbaseSchema : known) {
+                    byName.put(hbaseSchema.getTableName(), hbaseSchema);
+                }
+            }
+            changed = known == null || known.size() != hbaseSchemas.size();
+            for (int i = 0; i < hbaseSchemas.size(); i++) {
+                HbaseSchema old = byName.get(hbaseSchemas.get(i).getTableName());
+                if (old != null) {
+                    hbaseSchemas.set(i, old);
+                } else {
+                    changed = true;
+                }
+            }
+            HbaseContext.addSchema(name, hbaseSchemas);
+            HbaseContext.getLocalStore().saveSchemas(hbaseSetting, hbaseSchemas);
+            logger.info("{} tables, changed: {}", hbaseSchemas.size(), changed);
+        } finally {
+            connectionManager.release(name);
+        }
         logger.info("added connection by setting:{}", hbaseSetting);
+        return changed;
+    }
+
+    /**
+     * write the tables of a connection and their families to the local
+     * store
+     *
+     * @param name connection name
+     */
+    public void saveSchemas(String name) {
+        HbaseSetting hbaseSetting = HbaseContext.getSetting(name);
+        List<HbaseSchema> hbaseSchemas = HbaseContext.getSchemas(name);
+        if (hbaseSetting != null && hbaseSchemas != null) {
+            HbaseContext.getLocalStore().saveSchemas(hbaseSetting, hbaseSchemas);
+        }
+    }
+
+    /**
+     * families of a table, read from the master on first use
+     *
+     * @param name connection name
+     * @param tableName
+     * @return
+     * @throws Exception
+     */
+    public List<String> getFamilies(String name, String tableName) throws Exception {
+        HbaseSchema hbaseSchema = HbaseContext.getSchema(name, tableName);
+        if (hbaseSchema == null) {
+            return Lists.newArrayList();
+        }
+        synchronized (hbaseSchema) {
+            if (!hbaseSchema.isLoaded()) {
+                loadFamilies(name, Lists.newArrayList(hbaseSchema));
+            }
+            return hbaseSchema.getFamilies();
+        }
+    }
+
+    /**
+     * read the families of some tables not used yet
+     *
+     * @param name connection name
+     * @param max tables read at most
+     * @return tables read, 0 once all are loaded
+     * @throws Exception
+     */
+    public int prefetchFamilies(String name, int max) throws Exception {
+        List<HbaseSchema> hbaseSchemas = HbaseContext.getSchemas(name);
+        if (hbaseSchemas == null) {
+            return 0;
+        }
+        List<HbaseSchema> pending = Lists.newArrayList();
+        for (HbaseSchema hbaseSchema : hbaseSchemas) {
+            if (!hbaseSchema.isLoaded() && pending.size() < max) {
+                pending.add(hbaseSchema);
+            }
+        }
+        if (!pending.isEmpty()) {
+            loadFamilies(name, pending);
+        }
+        return pending.size();
+    }
+
+    private void loadFamilies(String name, List<HbaseSchema> hbaseSchemas)
+            throws Exception {
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            HbaseUtil.loadFamilies(connection, hbaseSchemas);
+        } finally {
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * store sizes of all tables from the cluster status, fast
+     *
+     * @param name connection name
+     * @return estimates by table name, without rows
+     * @throws Exception
+     */
+    public Map<String, TableEstimate> getTableSizes(String name) throws Exception {
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            return new SizeEstimator(connection).getTableSizes();
+        } finally {
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * approximate size, rows and family sizes of a table
+     *
+     * @param name connection name
+     * @param tableName
+     * @return
+     * @throws Exception
+     */
+    public TableEstimate estimate(String name, String tableName) throws Exception {
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            return new SizeEstimator(connection).estimate(tableName);
+        } finally {
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * exact row count of the query range, regions are counted in parallel
+     *
+     * @param name connection name
+     * @param query table, prefix, start and stop rows and filters are used
+     * @param listener progress per region, may be null
+     * @return
+     * @throws Exception
+     */
+    public long count(String name, HbaseQuery query, CountListener listener)
+            throws Exception {
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            if (HbaseUtil.lookupRows(query) != null) {
+                // a rowkey list, count the keys that exist
+                HbaseQuery countQuery = query.copy();
+                countQuery.setPageSize(0);
+                return HbaseUtil.scanResults(connection, countQuery, new ResultHandler() {
+                    @Override
+                    public boolean handle(Result result) {
+                        return true;
+                    }
+                });
+            }
+            // a pool of its own, a long count must not take the threads of
+            // row lookups
+            ParallelScanner scanner = new ParallelScanner(connection, COUNT_THREADS);
+            try {
+                return scanner.count(query, listener);
+            } finally {
+                scanner.close();
+            }
+        } finally {
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * write the whole query range to a file, the format comes from the file
+     * name: .csv or .jsonl, gzipped with a .gz suffix
+     *
+     * @param name connection name
+     * @param query page size is ignored
+     * @param file
+     * @param parallel scan regions in parallel
+     * @param pages rows of the query already read, written instead of
+     * scanning, null to scan
+     * @param listener progress, may be null
+     * @return
+     * @throws Exception
+     */
+    public ExportStats export(String name, HbaseQuery query, File file, boolean parallel,
+            Iterator<RowPage> pages, ExportListener listener) throws Exception {
+        ExportFormat format = ExportFormat.of(file.getName());
+        if (format == null) {
+            throw new IllegalArgumentException("unknown export format: " + file.getName());
+        }
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            Exporter exporter = new Exporter(connection, format);
+            exporter.setGzip(file.getName().toLowerCase().endsWith(".gz"));
+            exporter.setParallel(parallel);
+            exporter.setPages(pages);
+            exporter.setCodecs(HbaseContext.getCodecs(name, query.getTableName()));
+            return exporter.export(query, file, listener);
+        } finally {
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * write the rows of a file to a table, the format comes from the file
+     * name like {@link #export}. writers and write buffer come from the
+     * setting, the result cache of the connection is cleared.
+     *
+     * @param name connection name
+     * @param tableName
+     * @param file
+     * @param listener progress, may be null
+     * @return
+     * @throws Exception
+     */
+    public ImportStats importRows(String name, String tableName, File file,
+            ImportListener listener) throws Exception {
+        ExportFormat format = ExportFormat.of(file.getName());
+        if (format == null) {
+            throw new IllegalArgumentException("unknown import format: " + file.getName());
+        }
+        HbaseSetting setting = HbaseContext.getSetting(name);
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            Importer importer = new Importer(connection, tableName, format);
+            importer.setGzip(file.getName().toLowerCase().endsWith(".gz"));
+            if (setting != null) {
+                importer.setWriters(setting.getImportWriters());
+                importer.setWriteBuffer(setting.getWriteBufferMB() * 1024L * 1024);
+            }
+            return importer.importRows(file, listener);
+        } finally {
+            // cached pages may miss the new rows
+            HbaseContext.getResultCache(name).clear();
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * load the rows of a file as hfiles, without puts. the files are written
+     * under the bulk load directory of the setting.
+     *
+     * @param name connection name
+     * @param tableName
+     * @param file
+     * @param listener progress, may be null
+     * @return
+     * @throws Exception
+     */
+    public ImportStats bulkLoad(String name, String tableName, File file,
+            ImportListener listener) throws Exception {
+        ExportFormat format = ExportFormat.of(file.getName());
+        if (format == null) {
+            throw new IllegalArgumentException("unknown import format: " + file.getName());
+        }
+        HbaseSetting setting = HbaseContext.getSetting(name);
+        if (setting == null || StringUtils.isBlank(setting.getBulkLoadDir())) {
+            throw new IllegalArgumentException("no bulk load directory set");
+        }
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            BulkLoader loader = new BulkLoader(connection, connectionManager.getExecutor(),
+                    tableName, format);
+            loader.setGzip(file.getName().toLowerCase().endsWith(".gz"));
+            loader.setSortBuffer(setting.getSortBufferMB() * 1024L * 1024);
+            return loader.load(file, setting.getBulkLoadDir(), listener);
+        } finally {
+            HbaseContext.getResultCache(name).clear();
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * copy the query range to a table of the same or another connection.
+     * progress is kept in a checkpoint file next to the local store until
+     * the copy is complete.
+     *
+     * @param name source connection name
+     * @param query page size is ignored
+     * @param options
+     * @param listener progress, may be null
+     * @return
+     * @throws Exception
+     */
+    public CopyStats copy(String name, HbaseQuery query, CopyOptions options,
+            CopyListener listener) throws Exception {
+        HbaseSetting sourceSetting = HbaseContext.getSetting(name);
+        if (sourceSetting == null) {
+            throw new IllegalArgumentException("no connection " + name);
+        }
+        String targetName = options.getTargetName();
+        HbaseSetting targetSetting = HbaseContext.getSetting(targetName);
+        if (targetSetting == null) {
+            // a saved connection not used in this run yet
+            targetSetting = HbaseContext.getLocalStore().getSetting(targetName);
+            if (targetSetting == null) {
+                throw new IllegalArgumentException("no connection " + targetName);
+            }
+            connectionManager.register(targetSetting);
+        }
+        File checkpoint = new File(LocalStore.defaultFile().getParentFile(), "copy-"
+                + StringUtils.md5(LocalStore.clusterKey(sourceSetting) + "/"
+                        + query.getTableName() + "/" + LocalStore.clusterKey(targetSetting)
+                        + "/" + options.getTargetTable()) + ".json");
+        HConnection source = connectionManager.acquire(name);
+        try {
+            HConnection target = connectionManager.acquire(targetName);
+            try {
+                TableCopier copier = new TableCopier(source, target);
+                copier.setParallelism(options.getParallelism());
+                copier.setMaxRowsPerSecond(options.getMaxRowsPerSecond());
+                copier.setMaxMBPerSecond(options.getMaxMBPerSecond());
+                copier.setColumns(options.getColumns());
+                copier.setCheckpointFile(checkpoint);
+                return copier.copy(query, options.getTargetTable(), options.isResume(),
+                        listener);
+            } finally {
+                HbaseContext.getResultCache(targetName).clear();
+                connectionManager.release(targetName);
+            }
+        } finally {
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * delete the rows of the query range, or count them in a dry run
+     *
+     * @param name connection name
+     * @param query page size is ignored
+     * @param dryRun count only
+     * @param maxRowsPerSecond 0 for no limit
+     * @param listener progress, may be null
+     * @return
+     * @throws Exception
+     */
+    public DeleteStats bulkDelete(String name, HbaseQuery query, boolean dryRun,
+            double maxRowsPerSecond, DeleteListener listener) throws Exception {
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            BulkDeleter deleter = new BulkDeleter(connection);
+            deleter.setDryRun(dryRun);
+            deleter.setMaxRowsPerSecond(maxRowsPerSecond);
+            return deleter.delete(query, listener);
+        } finally {
+            if (!dryRun) {
+                HbaseContext.getResultCache(name).clear();
+            }
+            connectionManager.release(name);
+        }
+    }
+
+    /**
+     * run an admin operation on tables of a connection, all at once. deleted
+     * tables are dropped from the known tables
+     *
+     * @param name connection name
+     * @param operation
+     * @param tableNames
+     * @param listener progress, may be null
+     * @return a task per table, failed tables carry the error
+     * @throws Exception
+     */
+    public List<AdminTask> admin(String name, AdminOperation operation, List<String> tableNames,
+            AdminListener listener) throws Exception {
+        HConnection connection = connectionManager.acquire(name);
+        try {
+            TableAdmin tableAdmin = new TableAdmin(connectionManager.getAdmin(connection));
+            List<AdminTask> tasks = tableAdmin.run(operation, tableNames, listener);
+            if (operation == AdminOperation.DELETE) {
+                removeSchemas(name, tasks);
+            }
+            return tasks;
+        } finally {
+            if (operation == AdminOperation.DELETE || operation == AdminOperation.TRUNCATE) {
+                HbaseContext.getResultCache(name).clear();
+            }
+            connectionManager.release(name);
+        }
+    }
+
+    private void removeSchemas(String name, List<AdminTask> tasks) {
+        List<HbaseSchema> known = HbaseContext.getSchemas(name);
+        if (known == null) {
+            return;
+        }
+        Map<String, HbaseSchema> byName = Maps.newLinkedHashMap();
+        for (HbaseSchema hbaseSchema : known) {
+            byName.put(hbaseSchema.getTableName(), hbaseSchema);
+        }
+        for (AdminTask task : tasks) {
+            if (task.getState() == AdminTask.State.DONE) {
+                byName.remove(task.getTableName());
+            }
+        }
+        HbaseContext.addSchema(name, Lists.newArrayList(byName.values()));
+        saveSchemas(name);
     }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 fivesmallq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nll.hbase.ui.util;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.QualifierFilter;
+import org.apache.hadoop.hbase.filter.RegexStringComparator;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.filter.SubstringComparator;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.filter.WritableByteArrayComparable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.FilterOperation;
+import org.nll.hbase.ui.model.HbaseFilter;
+
+/**
+ * compile filter conditions to hbase server side filters, so rows that do
+ * not match never leave the region server.
+ *
+ * @author fivesmallq
+ */
+public class FilterBuilder {
+
+    /**
+     * build one filter from the conditions
+     *
+     * @param filters
+     * @param matchAll true to AND the conditions, false to OR them
+     * @return null if there is no condition
+     */
+    public static Filter build(List<HbaseFilter> filters, boolean matchAll) {
+        if (filters == null || filters.isEmpty()) {
+            return null;
+        }
+        if (filters.size() == 1) {
+            return build(filters.get(0));
+        }
+        List<Filter> list = Lists.newArrayList();
+        for (HbaseFilter filter : filters) {
+            list.add(build(filter));
+        }
+        return new FilterList(matchAll ? FilterList.Operator.MUST_PASS_ALL
+                : FilterList.Operator.MUST_PASS_ONE, list);
+    }
+
+    /**
+     * whether the conditions drop single cells rather than whole rows. a row
+     * whose cells were all dropped still goes through PageFilter, so the page
+     * hint can not be used then.
+     *
+     * @param filters
+     * @return
+     */
+    public static boolean filtersCells(List<HbaseFilter> filters) {
+        if (filters == null) {
+            return false;
+        }
+        for (HbaseFilter filter : filters) {
+            if (HbaseFilter.ANY_VALUE.equals(filter.getField())
+                    || HbaseFilter.QUALIFIER.equals(filter.getField())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * build the filter of one condition
+     *
+     * @param filter
+     * @return
+     */
+    public static Filter build(HbaseFilter filter) {
+        CompareOp op = compareOp(filter.getOperation());
+        WritableByteArrayComparable comparator = comparator(filter);
+        String field = filter.getField();
+        if (HbaseFilter.ANY_VALUE.equals(field)) {
+            return new ValueFilter(op, comparator);
+        }
+        if (HbaseFilter.QUALIFIER.equals(field)) {
+            return new QualifierFilter(op, comparator);
+        }
+        byte[][] column = column(filter);
+        SingleColumnValueFilter columnFilter = new SingleColumnValueFilter(column[0],
+                column[1], op, comparator);
+        // rows without the column do not match
+        columnFilter.setFilterIfMissing(true);
+        columnFilter.setLatestVersionOnly(true);
+        return columnFilter;
+    }
+
+    /**
+     * the column a condition compares. a scan restricted to some families
+     * has to read it too, or the condition never sees the value.
+     *
+     * @param filter
+     * @return family and qualifier, null for {@link HbaseFilter#ANY_VALUE}
+     * and {@link HbaseFilter#QUALIFIER}
+     */
+    public static byte[][] column(HbaseFilter filter) {
+        String field = filter.getField();
+        if (HbaseFilter.ANY_VALUE.equals(field) || HbaseFilter.QUALIFIER.equals(field)) {
+            return null;
+        }
+        int index = field == null ? -1 : field.indexOf(':');
+        if (index <= 0) {
+            throw new IllegalArgumentException("field must be family:qualifier, "
+                    + HbaseFilter.ANY_VALUE + " or " + HbaseFilter.QUALIFIER + ": " + field);
+        }
+        return new byte[][]{Bytes.toBytes(field.substring(0, index)),
+            Bytes.toBytes(field.substring(index + 1))};
+    }
+
+    private static WritableByteArrayComparable comparator(HbaseFilter filter) {
+        String value = filter.getValue() == null ? "" : filter.getValue();
+        switch (filter.getOperation()) {
+            case REGEX:
+                return new RegexStringComparator(value);
+            case SUBSTRING:
+                return new SubstringComparator(value);
+            default:
+                return new BinaryComparator(Bytes.toBytes(value));
+        }
+    }
+
+    private static CompareOp compareOp(FilterOperation operation) {
+        switch (operation) {
+            case NOT_EQUAL:
+                return CompareOp.NOT_EQUAL;
+            case LESS:
+                return CompareOp.LESS;
+            case LESS_OR_EQUAL:
+                return CompareOp.LESS_OR_EQUAL;
+            case GREATER:
+                return CompareOp.GREATER;
+            case GREATER_OR_EQUAL:
+                return CompareOp.GREATER_OR_EQUAL;
+            default:
+                // regex and substring comparators match with EQUAL
+                return CompareOp.EQUAL;
+        }
+    }
+}
@@ -19,14 +19,17 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.KeyValue;
-import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HConnection;
 import org.apache.hadoop.hbase.client.HConnectionManager;
 import org.apache.hadoop.hbase.client.HTableInterface;
@@ -35,11 +38,20 @@ import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.filter.PageFilter;
 import org.apache.hadoop.hbase.filter.PrefixFilter;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.core.ColumnCodecs;
+import org.nll.hbase.ui.core.ConnectionManager;
+import org.nll.hbase.ui.core.ResultHandler;
+import org.nll.hbase.ui.core.RowHandler;
+import org.nll.hbase.ui.core.RowLookup;
+import org.nll.hbase.ui.core.ScanTuner;
 import org.nll.hbase.ui.model.FamilyData;
 import org.nll.hbase.ui.model.HbaseData;
+import org.nll.hbase.ui.model.HbaseFilter;
 import org.nll.hbase.ui.model.HbaseQuery;
 import org.nll.hbase.ui.model.HbaseSchema;
 import org.nll.hbase.ui.model.HbaseSetting;
@@ -50,11 +62,10 @@ public class HbaseUtil {
 
     private final static Logger logger = LoggerFactory
             .getLogger(HbaseUtil.class);
-    private static HConnection defaultConnection = null;
-
-    public static void setDefaultConnection(HConnection connection) {
-        defaultConnection = connection;
-    }
+    /**
+     * rows per RPC of key only count scans
+     */
+    private static final int COUNT_CACHING = 1000;
 
     public static Configuration createConf(HbaseSetting hbaseSetting) {
         Configuration conf = HBaseConfiguration.create();
@@ -64,7 +75,7 @@ public class HbaseUtil {
         return conf;
     }
 
-    public static HConnection createConnection(Configuration configuration) throws Exception {
+    public static HConnection createConnection(Configuration configuration) throws IOException {
         HConnection connection = HConnectionManager.createConnection(configuration);
         return connection;
     }
@@ -81,109 +92,525 @@ public class HbaseUtil {
                 familes.add(Bytes.toString(key));
             }
             hbaseSchema.setFamilies(familes);
+            hbaseSchema.setLoaded(true);
             hbaseSchemas.add(hbaseSchema);
         }
         return hbaseSchemas;
     }
 
     /**
-     * 获取table操作对象
+     * table names only, one light call to the master. families are read
+     * later with {@link #loadFamilies}
      *
      * @param connection
-     * @param tableName
-     * @return
-     * @throws Exception
+     * @return schemas not loaded yet, sorted by name
+     * @throws IOException
      */
-    public static HTableInterface getTable(HConnection connection, String tableName) throws Exception {
-        HTableInterface table = connection.getTable(tableName);
-        return table;
+    public static List<HbaseSchema> getTableNames(HConnection connection) throws IOException {
+        String[] names = connection.getTableNames();
+        Arrays.sort(names);
+        List<HbaseSchema> hbaseSchemas = Lists.newArrayListWithCapacity(names.length);
+        for (String name : names) {
+            HbaseSchema hbaseSchema = new HbaseSchema();
+            hbaseSchema.setTableName(name);
+            hbaseSchemas.add(hbaseSchema);
+        }
+        return hbaseSchemas;
     }
 
     /**
-     * 删除表
+     * read the families of the tables with one call to the master, the
+     * schemas are updated while holding their lock. a table the master does
+     * not return, dropped since it was listed, is loaded without families.
      *
-     * @param tableName
-     * @param configuration
+     * @param connection
+     * @param hbaseSchemas
      * @throws IOException
      */
-    public static void dropData(String tableName, Configuration configuration) throws IOException {
-        // 新建一个数据库管理员
-        HBaseAdmin hAdmin;
-        hAdmin = new HBaseAdmin(configuration);
-        // 关闭一个表
-        hAdmin.disableTable(tableName);
-        // 删除一个表
-        hAdmin.deleteTable(tableName);
-        logger.info("drop table success! [{}]", tableName);
+    public static void loadFamilies(HConnection connection, List<HbaseSchema> hbaseSchemas)
+            throws IOException {
+        Map<String, HbaseSchema> byName = Maps.newHashMap();
+        for (HbaseSchema hbaseSchema : hbaseSchemas) {
+            byName.put(hbaseSchema.getTableName(), hbaseSchema);
+        }
+        HTableDescriptor[] descriptors = connection.getHTableDescriptors(
+                Lists.newArrayList(byName.keySet()));
+        if (descriptors != null) {
+            for (HTableDescriptor descriptor : descriptors) {
+                HbaseSchema hbaseSchema = byName.remove(descriptor.getNameAsString());
+                if (hbaseSchema == null) {
+                    continue;
+                }
+                List<String> familes = Lists.newArrayList();
+                for (byte[] key : descriptor.getFamiliesKeys()) {
+                    familes.add(Bytes.toString(key));
+                }
+                synchronized (hbaseSchema) {
+                    hbaseSchema.setFamilies(familes);
+                    hbaseSchema.setLoaded(true);
+                }
+            }
+        }
+        for (HbaseSchema hbaseSchema : byName.values()) {
+            logger.warn("no descriptor of table {}, it may be dropped",
+                    hbaseSchema.getTableName());
+            synchronized (hbaseSchema) {
+                hbaseSchema.setFamilies(Lists.<String>newArrayList());
+                hbaseSchema.setLoaded(true);
+            }
+        }
     }
 
     /**
-     * scan data
+     * 获取table操作对象, a light handle of the connection, close it when done
      *
      * @param connection
-     * @param query
+     * @param tableName
      * @return
      * @throws Exception
      */
-    public static List<HbaseData> scan(HConnection connection, HbaseQuery query)
-            throws Exception {
-        List<HbaseData> datas = Lists.newLinkedList();
+    public static HTableInterface getTable(HConnection connection, String tableName) throws Exception {
+        HTableInterface table = connection.getTable(tableName);
+        return table;
+    }
+
+    /**
+     * build scan from query
+     *
+     * @param query
+     * @return
+     */
+    public static Scan buildScan(HbaseQuery query) {
         List<Filter> listForFilters = Lists.newArrayList();
 
         Scan scan = new Scan();
         if (StringUtils.isNotNullOrEmpty(query.getPrefixRowkey())) {
             listForFilters.add(new PrefixFilter(Bytes.toBytes(query.getPrefixRowkey())));
         }
-        //FIXME set 10 but return 20
-        PageFilter pageFilter = new PageFilter(query.getPageSize());
-        listForFilters.add(pageFilter);
+        Filter userFilter = FilterBuilder.build(query.getFilters(), query.isMatchAll());
+        if (userFilter != null) {
+            listForFilters.add(userFilter);
+        }
+        if (query.getPageSize() > 0 && !FilterBuilder.filtersCells(query.getFilters())) {
+            // PageFilter is applied per region, so it is only a hint to stop
+            // each region early. the exact limit is enforced on the client.
+            // it has to be the last filter to count only matching rows.
+            listForFilters.add(new PageFilter(query.getPageSize()));
+        }
         if (listForFilters.size() == 1) {
             scan.setFilter(listForFilters.get(0));
-        } else {
+        } else if (listForFilters.size() > 1) {
             Filter filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL,
                     listForFilters);
             scan.setFilter(filterList);
         }
         if (StringUtils.isNotNullOrEmpty(query.getStartRowkey())) {
             scan.setStartRow(Bytes.toBytes(query.getStartRowkey()));
+        } else if (StringUtils.isNotNullOrEmpty(query.getPrefixRowkey())) {
+            // start at the prefix instead of the table start
+            scan.setStartRow(Bytes.toBytes(query.getPrefixRowkey()));
         }
         if (StringUtils.isNotNullOrEmpty(query.getStopRowkey())) {
             scan.setStopRow(Bytes.toBytes(query.getStopRowkey()));
+        } else if (StringUtils.isNotNullOrEmpty(query.getPrefixRowkey())) {
+            scan.setStopRow(prefixStopRow(Bytes.toBytes(query.getPrefixRowkey())));
         }
         for (String family : query.getFamilies()) {
             scan.addFamily(Bytes.toBytes(family));
         }
-        scan.setCaching(100);
+        for (byte[][] column : filterColumns(query)) {
+            scan.addColumn(column[0], column[1]);
+        }
+        // caching left unset is tuned when the scan is run, the batch is
+        // always set there, see ScanTuner#configure(Scan, int, int)
+        if (query.getCaching() > 0) {
+            scan.setCaching(query.getPageSize() > 0
+                    ? Math.min(query.getCaching(), query.getPageSize()) : query.getCaching());
+        }
+        return scan;
+    }
+
+    /**
+     * build a scan that returns only the first key of every row of the
+     * query range, value and other cells are left on the server. with user
+     * filters every cell has to be seen by the filters, so only the values
+     * are dropped. the page size is ignored.
+     *
+     * @param query
+     * @return
+     */
+    public static Scan buildCountScan(HbaseQuery query) {
+        HbaseQuery countQuery = query.copy();
+        countQuery.setPageSize(0);
+        Scan scan = buildScan(countQuery);
+        List<Filter> filters = Lists.newArrayList();
+        if (scan.getFilter() != null) {
+            filters.add(scan.getFilter());
+        }
+        if (FilterBuilder.build(query.getFilters(), query.isMatchAll()) == null) {
+            filters.add(new FirstKeyOnlyFilter());
+        }
+        filters.add(new KeyOnlyFilter());
+        scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, filters));
+        if (query.getCaching() <= 0) {
+            scan.setCaching(COUNT_CACHING);
+        }
+        // a one-off full pass, keep the block cache for the real reads
+        scan.setCacheBlocks(false);
+        return scan;
+    }
+
+    /**
+     * columns of the filter conditions outside the families of the query.
+     * the server filters only the cells it reads, so a column filter on a
+     * family that is not read drops every row.
+     *
+     * @param query
+     * @return family and qualifier pairs, empty if all families are read
+     */
+    static List<byte[][]> filterColumns(HbaseQuery query) {
+        List<byte[][]> columns = Lists.newArrayList();
+        if (query.getFamilies().isEmpty() || query.getFilters() == null) {
+            return columns;
+        }
+        for (HbaseFilter filter : query.getFilters()) {
+            byte[][] column = FilterBuilder.column(filter);
+            if (column != null && !query.getFamilies().contains(Bytes.toString(column[0]))) {
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * build a get of one row with the families and filters of the query
+     *
+     * @param query
+     * @param row
+     * @return
+     * @throws IOException
+     */
+    public static Get buildGet(HbaseQuery query, byte[] row) throws IOException {
+        Get get = new Get(row);
+        for (String family : query.getFamilies()) {
+            get.addFamily(Bytes.toBytes(family));
+        }
+        for (byte[][] column : filterColumns(query)) {
+            get.addColumn(column[0], column[1]);
+        }
+        Filter userFilter = FilterBuilder.build(query.getFilters(), query.isMatchAll());
+        if (userFilter != null) {
+            get.setFilter(userFilter);
+        }
+        return get;
+    }
+
+    /**
+     * rowkeys to look up instead of scanning: the rowkey list of the query
+     * inside its range and prefix, or the start row when it equals the stop
+     * row
+     *
+     * @param query
+     * @return sorted distinct rowkeys, null to scan
+     */
+    public static List<byte[]> lookupRows(HbaseQuery query) {
+        String start = query.getStartRowkey();
+        String stop = query.getStopRowkey();
+        if (query.getRowkeys().isEmpty()) {
+            if (StringUtils.isNotNullOrEmpty(start) && start.equals(stop)) {
+                List<byte[]> rows = Lists.newArrayList();
+                rows.add(Bytes.toBytes(start));
+                return rows;
+            }
+            return null;
+        }
+        byte[] startRow = StringUtils.isNotNullOrEmpty(start) ? Bytes.toBytes(start) : null;
+        byte[] stopRow = StringUtils.isNotNullOrEmpty(stop) ? Bytes.toBytes(stop) : null;
+        byte[] prefix = StringUtils.isNotNullOrEmpty(query.getPrefixRowkey())
+                ? Bytes.toBytes(query.getPrefixRowkey()) : null;
+        TreeSet<byte[]> rows = new TreeSet<byte[]>(Bytes.BYTES_COMPARATOR);
+        for (String rowkey : query.getRowkeys()) {
+            byte[] row = Bytes.toBytes(rowkey);
+            if ((startRow == null || Bytes.compareTo(row, startRow) >= 0)
+                    && (stopRow == null || Bytes.compareTo(row, stopRow) < 0)
+                    && (prefix == null || Bytes.startsWith(row, prefix))) {
+                rows.add(row);
+            }
+        }
+        return Lists.newArrayList(rows);
+    }
+
+    /**
+     * the first rowkey after all rowkeys starting with the prefix
+     *
+     * @param prefix
+     * @return empty array if there is no such rowkey
+     */
+    public static byte[] prefixStopRow(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xff) {
+                byte[] stop = Arrays.copyOf(prefix, i + 1);
+                stop[i]++;
+                return stop;
+            }
+        }
+        return HConstants.EMPTY_END_ROW;
+    }
+
+    /**
+     * convert one scan result to row data, cells are keyed by family:qualifier
+     *
+     * @param r
+     * @return
+     */
+    public static HbaseData toHbaseData(Result r) {
+        return toHbaseData(r, ColumnCodecs.DEFAULT);
+    }
+
+    /**
+     * convert one scan result to row data, values decoded with the codecs
+     * of their columns
+     *
+     * @param r
+     * @param codecs
+     * @return
+     */
+    public static HbaseData toHbaseData(Result r, ColumnCodecs codecs) {
+        HbaseData data = new HbaseData();
+        data.setRowkey(Bytes.toString(r.getRow()));
+        Map<String, FamilyData> dataValues = Maps.newLinkedHashMap();
+        for (KeyValue kv : r.list()) {
+            FamilyData familyData = new FamilyData();
+            String family = Bytes.toString(kv.getFamily());
+            String key = Bytes.toString(kv.getQualifier());
+            String column = family + ":" + key;
+            String value = codecs.decode(column, kv.getBuffer(), kv.getValueOffset(),
+                    kv.getValueLength());
+            familyData.setFamilyName(family);
+            familyData.setKey(key);
+            familyData.setValue(value);
+            dataValues.put(column, familyData);
+        }
+        data.setDatas(dataValues);
+        return data;
+    }
+
+    /**
+     * scan data
+     *
+     * @param connection
+     * @param query
+     * @return
+     * @throws Exception
+     */
+    public static List<HbaseData> scan(HConnection connection, HbaseQuery query)
+            throws Exception {
+        final List<HbaseData> datas = Lists.newLinkedList();
+        scanRows(connection, query, new RowHandler() {
+            @Override
+            public boolean handle(HbaseData data) {
+                datas.add(data);
+                return true;
+            }
+        });
+        return datas;
+    }
+
+    /**
+     * streaming scan, each row is handed to the handler as soon as the scanner
+     * returns it, nothing is kept in memory here. at most pageSize rows are
+     * returned when the query has a page size.
+     *
+     * @param connection
+     * @param query
+     * @param handler return false to stop the scan
+     * @return handled row count
+     * @throws Exception
+     */
+    public static long scanRows(HConnection connection, HbaseQuery query,
+            RowHandler handler) throws Exception {
+        return scanResults(connection, query, toResultHandler(handler));
+    }
+
+    /**
+     * streaming scan on raw results, see
+     * {@link #scanRows(HConnection, HbaseQuery, RowHandler)}
+     *
+     * @param connection
+     * @param query
+     * @param handler return false to stop the scan
+     * @return handled row count
+     * @throws Exception
+     */
+    public static long scanResults(HConnection connection, HbaseQuery query,
+            ResultHandler handler) throws Exception {
+        return scanResults(connection, query, null, handler);
+    }
+
+    /**
+     * streaming scan on raw results from a rowkey that may not be a string,
+     * see {@link #scanRows(HConnection, HbaseQuery, RowHandler)}
+     *
+     * @param connection
+     * @param query
+     * @param startRow first rowkey, after the start of the query. null to
+     * start where the query does
+     * @param handler return false to stop the scan
+     * @return handled row count
+     * @throws Exception
+     */
+    public static long scanResults(HConnection connection, HbaseQuery query, byte[] startRow,
+            final ResultHandler handler) throws Exception {
+        final int limit = query.getPageSize();
+        ResultHandler limited = handler;
+        if (limit > 0) {
+            final int[] count = new int[1];
+            limited = new ResultHandler() {
+                @Override
+                public boolean handle(Result result) throws Exception {
+                    return handler.handle(result) && ++count[0] < limit;
+                }
+            };
+        }
+        List<byte[]> rows = lookupRows(query);
+        if (rows != null && startRow != null) {
+            List<byte[]> after = Lists.newArrayList();
+            for (byte[] row : rows) {
+                if (Bytes.compareTo(row, startRow) >= 0) {
+                    after.add(row);
+                }
+            }
+            rows = after;
+        }
+        if (rows != null) {
+            // exact rowkeys, missing rows are skipped so a page may need
+            // more keys than rows
+            RowLookup lookup = new RowLookup(connection,
+                    ConnectionManager.getInstance().getExecutor());
+            if (limit > 0) {
+                lookup.setChunkSize(Math.min(limit, RowLookup.DEFAULT_CHUNK_SIZE));
+            }
+            return lookup.get(query, rows, limited);
+        }
+        Scan scan = buildScan(query);
+        if (startRow != null) {
+            scan.setStartRow(startRow);
+        }
+        return scan(connection, query.getTableName(), scan, limit, query.getBatch(), limited);
+    }
+
+    /**
+     * streaming scan with a prepared scan
+     *
+     * @param connection
+     * @param tableName
+     * @param scan
+     * @param handler return false to stop the scan
+     * @return handled row count
+     * @throws Exception
+     */
+    public static long scanRows(HConnection connection, String tableName, Scan scan,
+            RowHandler handler) throws Exception {
+        return scanResults(connection, tableName, scan, toResultHandler(handler));
+    }
+
+    /**
+     * streaming scan on raw results with a prepared scan
+     *
+     * @param connection
+     * @param tableName
+     * @param scan
+     * @param handler return false to stop the scan
+     * @return handled row count
+     * @throws Exception
+     */
+    public static long scanResults(HConnection connection, String tableName, Scan scan,
+            ResultHandler handler) throws Exception {
+        return scanResults(connection, tableName, scan, 0, handler);
+    }
+
+    /**
+     * streaming scan on raw results with a prepared scan built from a query,
+     * see {@link #buildScan(HbaseQuery)}
+     *
+     * @param connection
+     * @param tableName
+     * @param scan
+     * @param batch batch of the query, 0 to tune it
+     * @param handler return false to stop the scan
+     * @return handled row count
+     * @throws Exception
+     */
+    public static long scanResults(HConnection connection, String tableName, Scan scan,
+            int batch, ResultHandler handler) throws Exception {
+        return scan(connection, tableName, scan, 0, batch, handler);
+    }
+
+    /**
+     * caching and batch not set on the scan are taken from the
+     * {@link ScanTuner} of the table, and the scan is measured for it. rows
+     * split by batch are merged again before they reach the handler.
+     */
+    private static long scan(HConnection connection, String tableName, Scan scan,
+            int limit, int batch, ResultHandler handler) throws Exception {
+        ScanTuner.Probe probe = ScanTuner.forTable(connection, tableName)
+                .configure(scan, limit, batch);
+        boolean batched = scan.getBatch() > 0;
         ResultScanner rs = null;
         HTableInterface table = null;
+        long count = 0;
         try {
-            table = getTable(connection, query.getTableName());
+            table = getTable(connection, tableName);
             rs = table.getScanner(scan);
-            int count = 0;
-            for (Result r : rs) {
+            List<KeyValue> pending = null;
+            while (true) {
+                probe.before();
+                Result r = rs.next();
+                probe.after(r);
+                if (batched && r != null && pending != null
+                        && Bytes.equals(pending.get(0).getRow(), r.getRow())) {
+                    // another batch of the same row
+                    pending.addAll(Arrays.asList(r.raw()));
+                    continue;
+                }
+                if (pending != null) {
+                    probe.row();
+                    count++;
+                    if (!handler.handle(new Result(pending))) {
+                        break;
+                    }
+                    pending = null;
+                }
+                if (r == null) {
+                    break;
+                }
+                if (batched) {
+                    pending = Lists.newArrayList(r.raw());
+                    continue;
+                }
+                probe.row();
                 count++;
-                HbaseData data = new HbaseData();
-                data.setRowkey(Bytes.toString(r.getRow()));
-                Map<String, FamilyData> dataValues = Maps.newLinkedHashMap();
-                for (KeyValue kv : r.list()) {
-                    FamilyData familyData = new FamilyData();
-                    String family = Bytes.toString(kv.getFamily());
-                    String key = Bytes.toString(kv.getQualifier());
-                    String value = Bytes.toString(kv.getValue());
-                    familyData.setFamilyName(family);
-                    familyData.setKey(key);
-                    familyData.setValue(value);
-                    dataValues.put(key, familyData);
+                if (!handler.handle(r)) {
+                    break;
                 }
-                data.setDatas(dataValues);
-                datas.add(data);
             }
-            logger.info("hbase return data size:{}", count);
+            probe.done();
+            logger.info("hbase return data size:{}, caching:{}, batch:{}",
+                    new Object[]{count, scan.getCaching(), scan.getBatch()});
         } finally {
             Closeables.close(rs, true);
             Closeables.close(table, true);
         }
-        return datas;
+        return count;
+    }
+
+    private static ResultHandler toResultHandler(final RowHandler handler) {
+        return new ResultHandler() {
+            @Override
+            public boolean handle(Result result) throws Exception {
+                return handler.handle(toHbaseData(result));
+            }
+        };
     }
 
     /*
@@ -191,10 +618,11 @@ public class HbaseUtil {
      *
      * @tableName 表名
      */
-    public static void getResultScann(String tableName) throws Exception {
+    public static void getResultScann(HConnection connection, String tableName)
+            throws Exception {
         Scan scan = new Scan();
         ResultScanner rs = null;
-        HTableInterface table = getTable(defaultConnection, tableName);
+        HTableInterface table = getTable(connection, tableName);
         try {
             rs = table.getScanner(scan);
             for (Result r : rs) {
@@ -217,11 +645,11 @@ public class HbaseUtil {
         }
     }
 
-    public static void getResultScann(String tableName, String start_rowkey,
-            String stop_rowkey) throws Exception {
+    public static void getResultScann(HConnection connection, String tableName,
+            String start_rowkey, String stop_rowkey) throws Exception {
         Scan scan = new Scan(Bytes.toBytes(start_rowkey));
         ResultScanner rs = null;
-        HTableInterface table = getTable(defaultConnection, tableName);
+        HTableInterface table = getTable(connection, tableName);
         try {
             rs = table.getScanner(scan);
             for (Result r : rs) {
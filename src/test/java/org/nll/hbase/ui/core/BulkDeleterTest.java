@@ -0,0 +1,56 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.DeleteStats;
+import org.nll.hbase.ui.model.HbaseQuery;
+
+/**
+ * dry run counts and batched deletes per region against a fake table.
+ */
+public class BulkDeleterTest extends TestCase {
+
+    private final FakeHBase hbase = new FakeHBase("t", "r10").addRows("r%02d", 25);
+
+    private static HbaseQuery query() {
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("t");
+        query.setStartRowkey("r05");
+        query.setStopRowkey("r20");
+        return query;
+    }
+
+    public void testDryRun() throws Exception {
+        BulkDeleter deleter = new BulkDeleter(hbase.connection());
+        deleter.setDryRun(true);
+        DeleteStats stats = deleter.delete(query(), null);
+        assertEquals(15, stats.getRows());
+        assertEquals(2, stats.getFinishedRanges());
+        assertTrue(hbase.deletes.isEmpty());
+    }
+
+    public void testDeleteFamilies() throws Exception {
+        BulkDeleter deleter = new BulkDeleter(hbase.connection());
+        deleter.setBatchRows(4);
+        HbaseQuery query = query();
+        query.setFamilies(Lists.newArrayList("f"));
+        DeleteStats stats = deleter.delete(query, null);
+        assertEquals(15, stats.getRows());
+        assertEquals(15, hbase.deletes.size());
+        for (Delete delete : hbase.deletes) {
+            assertTrue(delete.getFamilyMap().containsKey(Bytes.toBytes("f")));
+        }
+    }
+
+    public void testDeleteWholeRows() throws Exception {
+        DeleteStats stats = new BulkDeleter(hbase.connection()).delete(query(), null);
+        assertEquals(15, stats.getRows());
+        assertEquals(15, hbase.deletes.size());
+        for (Delete delete : hbase.deletes) {
+            // no family, the whole row is deleted
+            assertTrue(delete.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.ImportStats;
+
+/**
+ * external sort and hfiles split at region boundaries, written to the local
+ * file system.
+ */
+public class BulkLoaderTest extends TestCase {
+
+    private final Configuration conf = new Configuration();
+    private final FakeHBase hbase = new FakeHBase("t", "r50").families("f", "g")
+            .configuration(conf);
+    private File dir;
+
+    @Override
+    protected void setUp() {
+        dir = Files.createTempDir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileSystem.getLocal(conf).delete(new Path(dir.getPath()), true);
+    }
+
+    private List<KeyValue> read(FileSystem fs, Path path) throws Exception {
+        HFile.Reader reader = HFile.createReader(fs, path, new CacheConfig(conf));
+        List<KeyValue> cells = Lists.newArrayList();
+        try {
+            reader.loadFileInfo();
+            HFileScanner scanner = reader.getScanner(false, false);
+            if (scanner.seekTo()) {
+                do {
+                    cells.add(scanner.getKeyValue());
+                } while (scanner.next());
+            }
+        } finally {
+            reader.close(false);
+        }
+        return cells;
+    }
+
+    public void testSortRunKeepsLastValue() {
+        byte[] f = Bytes.toBytes("f");
+        byte[] q = Bytes.toBytes("q");
+        List<KeyValue> cells = Lists.newArrayList(
+                new KeyValue(Bytes.toBytes("b"), f, q, 1, Bytes.toBytes("1")),
+                new KeyValue(Bytes.toBytes("a"), f, q, 1, Bytes.toBytes("2")),
+                new KeyValue(Bytes.toBytes("b"), f, q, 1, Bytes.toBytes("3")));
+        List<KeyValue> sorted = BulkLoader.sortRun(cells);
+        assertEquals(2, sorted.size());
+        assertEquals("a", Bytes.toString(sorted.get(0).getRow()));
+        assertEquals("3", Bytes.toString(sorted.get(1).getValue()));
+    }
+
+    public void testWriteHFiles() throws Exception {
+        StringBuilder text = new StringBuilder("rowkey,f:a,g:b\n");
+        for (int i = 99; i >= 0; i--) {
+            text.append("r").append(i < 10 ? "0" : "").append(i).append(',').append(i)
+                    .append(",x\n");
+        }
+        text.append("r07,again,\n");
+        BulkLoader loader = new BulkLoader(hbase.connection(), null, "t", ExportFormat.CSV);
+        loader.setSortBuffer(2000);
+        loader.setTempDir(dir);
+        FileSystem fs = FileSystem.getLocal(conf);
+        Path out = new Path(dir.getPath(), "hfiles");
+        ImportStats stats = loader.writeHFiles(
+                new ByteArrayInputStream(text.toString().getBytes(Charsets.UTF_8)), fs, out, null);
+        assertEquals(101, stats.getRows());
+        assertEquals(0, stats.getFailedRows());
+        List<KeyValue> low = read(fs, new Path(new Path(out, "f"), "region0"));
+        List<KeyValue> high = read(fs, new Path(new Path(out, "f"), "region1"));
+        assertEquals(50, low.size());
+        assertEquals(50, high.size());
+        assertEquals("r00", Bytes.toString(low.get(0).getRow()));
+        assertEquals("again", Bytes.toString(low.get(7).getValue()));
+        assertEquals("r50", Bytes.toString(high.get(0).getRow()));
+        for (int i = 1; i < high.size(); i++) {
+            assertTrue(KeyValue.COMPARATOR.compare(high.get(i - 1), high.get(i)) < 0);
+        }
+        assertEquals(50, read(fs, new Path(new Path(out, "g"), "region1")).size());
+        // only the hfiles are left, the runs are deleted
+        assertEquals(1, dir.listFiles().length);
+    }
+}
@@ -0,0 +1,81 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.ImmutableMap;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * built in and plugged in codecs, column rules and decoded values kept by a
+ * page.
+ */
+public class CodecRegistryTest extends TestCase {
+
+    /**
+     * listed in META-INF/services of the tests
+     */
+    public static class Reversed implements ValueCodec {
+
+        @Override
+        public String getName() {
+            return "reversed";
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            return new StringBuilder(Bytes.toString(bytes, offset, length)).reverse().toString();
+        }
+    }
+
+    private static String decode(String codec, byte[] value) {
+        return CodecRegistry.getCodec(codec).decode(value, 0, value.length);
+    }
+
+    public void testBuiltInCodecs() {
+        assertEquals("-42", decode("long", Bytes.toBytes(-42L)));
+        assertEquals("7", decode("int", Bytes.toBytes(7)));
+        assertEquals("1.5", decode("double", Bytes.toBytes(1.5d)));
+        assertEquals("00ff10", decode("hex", new byte[]{0, (byte) 0xff, 0x10}));
+        assertEquals("héllo", decode("utf8", Bytes.toBytes("héllo")));
+        assertEquals("{\n\t\"a\":1\n}", decode("json", Bytes.toBytes("{\"a\":1}")));
+        assertEquals("not json", decode("json", Bytes.toBytes("not json")));
+        // a value of the wrong size is escaped
+        assertEquals("a\\x00", decode("long", new byte[]{'a', 0}));
+    }
+
+    public void testServiceLoaderCodec() {
+        assertTrue(CodecRegistry.getNames().contains("reversed"));
+        assertEquals("cba", decode("reversed", Bytes.toBytes("abc")));
+        assertEquals("utf8", CodecRegistry.getNames().get(0));
+    }
+
+    public void testMostSpecificRuleWins() {
+        ColumnCodecs codecs = new ColumnCodecs("t", ImmutableMap.of(
+                "t", "hex",
+                "t/f", "long",
+                "t/f:name", "utf8",
+                "t/g:x", "missing"));
+        assertEquals("utf8", codecs.getCodec("f:name").getName());
+        assertEquals("long", codecs.getCodec("f:count").getName());
+        assertEquals("hex", codecs.getCodec("g:y").getName());
+        // an unknown codec falls back to the next rule
+        assertEquals("hex", codecs.getCodec("g:x").getName());
+        assertEquals("utf8", ColumnCodecs.DEFAULT.getCodec("f:count").getName());
+    }
+
+    public void testPageKeepsDecodedValues() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        RowPage page = new RowPage(dictionary);
+        page.add(new Result(new KeyValue[]{new KeyValue(Bytes.toBytes("r1"), Bytes.toBytes("f"),
+            Bytes.toBytes("n"), Bytes.toBytes(5L))}));
+        page.trim();
+        int column = dictionary.getId("f:n");
+        ColumnCodecs longs = new ColumnCodecs("t", ImmutableMap.of("t/f", "long"));
+        String value = page.getValue(0, column, longs);
+        assertEquals("5", value);
+        assertSame(value, page.getValue(0, column, longs));
+        ColumnCodecs hex = new ColumnCodecs("t", ImmutableMap.of("t/f:n", "hex"));
+        assertEquals("0000000000000005", page.getValue(0, column, hex));
+    }
+}
@@ -0,0 +1,90 @@
+package org.nll.hbase.ui.core;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.nll.hbase.ui.model.HbaseSetting;
+
+/**
+ * reference counting and idle close of connections.
+ */
+public class ConnectionManagerTest extends TestCase {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final FakeHBase hbase = new FakeHBase("t");
+    private ConnectionManager manager;
+
+    private ConnectionManager newManager(long idleMillis) {
+        ConnectionManager connections = new ConnectionManager(idleMillis,
+                new ConnectionManager.Opener() {
+            @Override
+            public HConnection open(HbaseSetting setting) {
+                opened.incrementAndGet();
+                return hbase.connection();
+            }
+        });
+        HbaseSetting setting = new HbaseSetting();
+        setting.setName("test");
+        connections.register(setting);
+        return connections;
+    }
+
+    @Override
+    protected void setUp() {
+        manager = newManager(Long.MAX_VALUE / 2);
+    }
+
+    @Override
+    protected void tearDown() {
+        manager.shutdown();
+    }
+
+    public void testAcquireOpensOnce() throws Exception {
+        assertNull(manager.getConnection("test"));
+        HConnection first = manager.acquire("test");
+        assertSame(first, manager.acquire("test"));
+        assertSame(first, manager.getConnection("test"));
+        assertEquals(1, opened.get());
+    }
+
+    public void testUnknownConnection() {
+        try {
+            manager.acquire("missing");
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testHeldConnectionIsNotClosedWhenIdle() throws Exception {
+        manager.shutdown();
+        manager = newManager(0);
+        manager.acquire("test");
+        Thread.sleep(5);
+        manager.closeIdle();
+        assertEquals(0, hbase.closed.get());
+        manager.release("test");
+        Thread.sleep(5);
+        manager.closeIdle();
+        assertEquals(1, hbase.closed.get());
+        assertNull(manager.getConnection("test"));
+        manager.acquire("test");
+        assertEquals(2, opened.get());
+    }
+
+    public void testAdminIsSharedUntilClose() throws Exception {
+        HConnection connection = manager.acquire("test");
+        HBaseAdmin admin = manager.getAdmin(connection);
+        assertSame(admin, manager.getAdmin(connection));
+        manager.close("test");
+        try {
+            manager.getAdmin(connection);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertNotSame(admin, manager.getAdmin(manager.acquire("test")));
+    }
+}
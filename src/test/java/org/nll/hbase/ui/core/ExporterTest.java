@@ -0,0 +1,221 @@
+package org.nll.hbase.ui.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import junit.framework.TestCase;
+import org.nll.hbase.ui.model.ExportStats;
+import org.apache.hadoop.hbase.client.Result;
+import org.nll.hbase.ui.model.HbaseQuery;
+
+/**
+ * csv quoting, format detection and the export pipeline against a fake
+ * table.
+ */
+public class ExporterTest extends TestCase {
+
+    private final FakeHBase hbase = new FakeHBase("t", "r10").addRows("r%02d", 20);
+    private File dir;
+
+    @Override
+    protected void setUp() {
+        dir = Files.createTempDir();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private static HbaseQuery query() {
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("t");
+        return query;
+    }
+
+    private static String csv(String value) {
+        StringBuilder text = new StringBuilder();
+        Exporter.appendCsvValue(text, value);
+        return text.toString();
+    }
+
+    public void testCsvValue() {
+        assertEquals("", csv(null));
+        assertEquals("plain", csv("plain"));
+        assertEquals("\"a,b\"", csv("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", csv("say \"hi\""));
+        assertEquals("\"two\nlines\"", csv("two\nlines"));
+    }
+
+    public void testFormat() {
+        assertEquals(ExportFormat.CSV, ExportFormat.of("rows.csv"));
+        assertEquals(ExportFormat.CSV, ExportFormat.of("ROWS.CSV.gz"));
+        assertEquals(ExportFormat.JSONL, ExportFormat.of("rows.jsonl.gz"));
+        assertEquals(ExportFormat.JSONL, ExportFormat.of("rows.json"));
+        assertNull(ExportFormat.of("rows.txt"));
+    }
+
+    private static List<String> lines(File file, boolean gzip) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return CharStreams.readLines(new InputStreamReader(gzip ? new GZIPInputStream(in)
+                    : in, Charsets.UTF_8));
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testHeaderFromSampleRows() throws Exception {
+        FakeHBase table = new FakeHBase("t");
+        int rows = Exporter.HEADER_SAMPLE_ROWS + 100;
+        for (int i = 0; i < rows; i++) {
+            String row = String.format("r%04d", i);
+            table.add(row, "f", "q", "v" + i);
+            if (i >= Exporter.HEADER_SAMPLE_ROWS) {
+                table.add(row, "f", "late", "x");
+            }
+        }
+        File file = new File(dir, "rows.csv");
+        ExportStats stats = new Exporter(table.connection(), ExportFormat.CSV).export(query(),
+                file, null);
+        assertEquals(rows, stats.getRows());
+        assertEquals(1, stats.getSkippedColumns());
+        List<String> lines = lines(file, false);
+        assertEquals(rows + 1, lines.size());
+        assertEquals("rowkey,f:q", lines.get(0));
+        assertEquals("r1050,v1050", lines.get(1051));
+        assertEquals(file.length(), stats.getBytes());
+    }
+
+    public void testGzipRoundTrip() throws Exception {
+        hbase.add("r03", "f", "r", "a,\"b\"");
+        File file = new File(dir, "rows.csv.gz");
+        Exporter exporter = new Exporter(hbase.connection(), ExportFormat.CSV);
+        exporter.setGzip(true);
+        ExportStats stats = exporter.export(query(), file, null);
+        assertEquals(20, stats.getRows());
+        List<String> lines = lines(file, true);
+        assertEquals(21, lines.size());
+        assertEquals("rowkey,f:q,f:r", lines.get(0));
+        assertEquals("r00,vr00,", lines.get(1));
+        assertEquals("r03,vr03,\"a,\"\"b\"\"\"", lines.get(4));
+        assertEquals("r19,vr19,", lines.get(20));
+    }
+
+    public void testJsonLinesInOrder() throws Exception {
+        File file = new File(dir, "rows.jsonl");
+        Exporter exporter = new Exporter(hbase.connection(), ExportFormat.JSONL);
+        exporter.setParallel(true);
+        exporter.setParallelism(2);
+        assertEquals(20, exporter.export(query(), file, null).getRows());
+        List<String> lines = lines(file, false);
+        assertEquals(20, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            JSONObject row = JSON.parseObject(lines.get(i));
+            String rowkey = String.format("r%02d", i);
+            assertEquals(rowkey, row.getString("rowkey"));
+            assertEquals("v" + rowkey, row.getString("f:q"));
+        }
+        // one scan per region
+        assertEquals(2, hbase.scans.size());
+    }
+
+    /**
+     * read the query page by page like the table view, keeping at most
+     * three pages in memory
+     */
+    private static PageStore browse(FakeHBase table, HbaseQuery query, int pages)
+            throws Exception {
+        final PageStore store = new PageStore(new PageCursor(table.connection(), query),
+                new ColumnDictionary(), 1, new SpillStore(null, 4096));
+        for (int page = 0; page < pages && store.hasMore(); page++) {
+            store.beginPage(page);
+            final int current = page;
+            boolean complete = store.getCursor().read(page, new ResultHandler() {
+                @Override
+                public boolean handle(Result result) {
+                    store.append(current, Lists.newArrayList(result));
+                    return true;
+                }
+            });
+            store.endPage(page, complete);
+            store.focus(page, page);
+        }
+        return store;
+    }
+
+    public void testExportLoadedPages() throws Exception {
+        HbaseQuery query = query();
+        query.setPageSize(6);
+        PageStore partial = browse(hbase, query, 2);
+        assertNull(partial.readAll());
+        partial.close();
+        PageStore store = browse(hbase, query, Integer.MAX_VALUE);
+        try {
+            assertTrue(store.getSpill().getPageCount() > 0);
+            Iterator<RowPage> pages = store.readAll();
+            assertNotNull(pages);
+            // the loaded rows are written, the table is not scanned again
+            hbase.failScans(new IOException("scanned"));
+            File file = new File(dir, "rows.jsonl");
+            Exporter exporter = new Exporter(hbase.connection(), ExportFormat.JSONL);
+            exporter.setPages(pages);
+            assertEquals(20, exporter.export(query, file, null).getRows());
+            List<String> lines = lines(file, false);
+            assertEquals(20, lines.size());
+            assertEquals("vr13", JSON.parseObject(lines.get(13)).getString("f:q"));
+        } finally {
+            store.close();
+        }
+    }
+
+    public void testPartialFileDeletedOnScanError() throws Exception {
+        hbase.failScans(new IOException("down"));
+        File file = new File(dir, "rows.csv");
+        try {
+            new Exporter(hbase.connection(), ExportFormat.CSV).export(query(), file, null);
+            fail();
+        } catch (IOException e) {
+            assertEquals("down", e.getMessage());
+        }
+        assertFalse(file.exists());
+    }
+
+    public void testPartialFileDeletedOnCancel() throws Exception {
+        File file = new File(dir, "rows.csv");
+        // a cancelled job interrupts the thread running the export
+        Thread.currentThread().interrupt();
+        try {
+            new Exporter(hbase.connection(), ExportFormat.CSV).export(query(), file, null);
+            fail();
+        } catch (InterruptedException e) {
+            // expected
+        }
+        assertFalse(file.exists());
+    }
+
+    public void testScanErrorIsNotSuccess() throws Exception {
+        hbase.failScans(new AssertionError("broken"));
+        File file = new File(dir, "rows.csv");
+        try {
+            new Exporter(hbase.connection(), ExportFormat.CSV).export(query(), file, null);
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("broken", e.getMessage());
+        }
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,391 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * one table in memory behind proxies of a connection, its table handles and
+ * scanners, for tests of code running against a connection.
+ *
+ * scans read the rows of their range and apply the scan families and filter
+ * the way a region server does. puts are kept in {@link #puts} once
+ * flushed, deletes in {@link #deletes}, the rows themselves do not change.
+ * override {@link #commit} or {@link #delete} to fail writes.
+ */
+public class FakeHBase {
+
+    public final List<Put> puts = Collections.synchronizedList(Lists.<Put>newArrayList());
+    public final List<Delete> deletes = Collections.synchronizedList(Lists.<Delete>newArrayList());
+    /**
+     * scans started, in the order they were opened
+     */
+    public final List<Scan> scans = Collections.synchronizedList(Lists.<Scan>newArrayList());
+    public final AtomicInteger closed = new AtomicInteger();
+    private final String tableName;
+    private final List<byte[]> splits = Lists.newArrayList();
+    private final List<String> families = Lists.newArrayList();
+    private final NavigableMap<byte[], List<KeyValue>> rows = Maps.newTreeMap(
+            Bytes.BYTES_COMPARATOR);
+    private Configuration conf = new Configuration(false);
+    private volatile Throwable scanError;
+
+    /**
+     * @param tableName
+     * @param splits start keys of the regions after the first
+     */
+    public FakeHBase(String tableName, String... splits) {
+        this.tableName = tableName;
+        for (String split : splits) {
+            this.splits.add(Bytes.toBytes(split));
+        }
+    }
+
+    public FakeHBase families(String... names) {
+        families.addAll(Lists.newArrayList(names));
+        return this;
+    }
+
+    public FakeHBase configuration(Configuration conf) {
+        this.conf = conf;
+        return this;
+    }
+
+    /**
+     * scans fail when opened
+     *
+     * @param error an IOException, unchecked exception or error, null to
+     * scan again
+     */
+    public void failScans(Throwable error) {
+        this.scanError = error;
+    }
+
+    public synchronized FakeHBase add(String row, String family, String qualifier, String value) {
+        return add(row, family, qualifier, Bytes.toBytes(value));
+    }
+
+    public synchronized FakeHBase add(String row, String family, String qualifier, byte[] value) {
+        return add(Bytes.toBytes(row), family, qualifier, value);
+    }
+
+    public synchronized FakeHBase add(byte[] key, String family, String qualifier, byte[] value) {
+        List<KeyValue> cells = rows.get(key);
+        if (cells == null) {
+            cells = Lists.newArrayList();
+            rows.put(key, cells);
+        }
+        cells.add(new KeyValue(key, Bytes.toBytes(family), Bytes.toBytes(qualifier), 1, value));
+        Collections.sort(cells, KeyValue.COMPARATOR);
+        return this;
+    }
+
+    /**
+     * rows named with the format, one cell f:q each
+     *
+     * @param format such as r%02d
+     * @param count
+     */
+    public FakeHBase addRows(String format, int count) {
+        for (int i = 0; i < count; i++) {
+            String row = String.format(format, i);
+            add(row, "f", "q", "v" + row);
+        }
+        return this;
+    }
+
+    /**
+     * written rowkeys in the order they were flushed
+     */
+    public List<String> writtenRows() {
+        List<String> written = Lists.newArrayList();
+        synchronized (puts) {
+            for (Put put : puts) {
+                written.add(Bytes.toString(put.getRow()));
+            }
+        }
+        return written;
+    }
+
+    /**
+     * a flush of one table handle
+     *
+     * @param batch
+     * @throws IOException
+     */
+    protected void commit(List<Put> batch) throws IOException {
+        puts.addAll(batch);
+    }
+
+    /**
+     * like the real table, deletes done are taken out of the list
+     *
+     * @param batch
+     * @throws IOException
+     */
+    protected void delete(List<Delete> batch) throws IOException {
+        deletes.addAll(batch);
+        batch.clear();
+    }
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(FakeHBase.class.getClassLoader(), new Class<?>[]{type},
+                handler);
+    }
+
+    /**
+     * identity of a proxy, for the methods every proxy has to answer
+     *
+     * @return null if not an object method
+     */
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        }
+        if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        }
+        if (method.getName().equals("toString")) {
+            return "fake " + method.getDeclaringClass().getSimpleName();
+        }
+        return null;
+    }
+
+    public HConnection connection() {
+        return (HConnection) proxy(HConnection.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                Object identity = objectMethod(proxy, method, args);
+                if (identity != null) {
+                    return identity;
+                }
+                String name = method.getName();
+                if (name.equals("getConfiguration")) {
+                    return conf;
+                }
+                if (name.equals("locateRegions")) {
+                    return locations();
+                }
+                if (name.equals("getHTableDescriptor")) {
+                    return descriptor();
+                }
+                if (name.equals("getHTableDescriptors")) {
+                    List<HTableDescriptor> descriptors = Lists.newArrayList();
+                    for (Object table : (List<?>) args[0]) {
+                        if (tableName.equals(table)) {
+                            descriptors.add(descriptor());
+                        }
+                    }
+                    return descriptors.toArray(new HTableDescriptor[descriptors.size()]);
+                }
+                if (name.equals("getTable")) {
+                    return table();
+                }
+                if (name.equals("close")) {
+                    closed.incrementAndGet();
+                }
+                return null;
+            }
+        });
+    }
+
+    private HTableDescriptor descriptor() {
+        HTableDescriptor descriptor = new HTableDescriptor(tableName);
+        for (String family : families) {
+            descriptor.addFamily(new HColumnDescriptor(family));
+        }
+        return descriptor;
+    }
+
+    /**
+     * the last region first, a connection does not promise an order
+     */
+    private List<HRegionLocation> locations() {
+        List<HRegionLocation> locations = Lists.newArrayList();
+        byte[] table = Bytes.toBytes(tableName);
+        byte[] start = new byte[0];
+        for (int i = 0; i <= splits.size(); i++) {
+            byte[] end = i < splits.size() ? splits.get(i) : new byte[0];
+            locations.add(0, new HRegionLocation(new HRegionInfo(table, start, end),
+                    "host" + i, 1));
+            start = end;
+        }
+        return locations;
+    }
+
+    /**
+     * a new handle with its own write buffer, auto flush on like a real one
+     *
+     * @return
+     */
+    public HTableInterface table() {
+        final List<Put> buffer = Lists.newArrayList();
+        final boolean[] autoFlush = {true};
+        return (HTableInterface) proxy(HTableInterface.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object identity = objectMethod(proxy, method, args);
+                if (identity != null) {
+                    return identity;
+                }
+                String name = method.getName();
+                if (name.equals("getScanner")) {
+                    return scanner((Scan) args[0]);
+                }
+                if (name.equals("getTableName")) {
+                    return Bytes.toBytes(tableName);
+                }
+                if (name.equals("setAutoFlush")) {
+                    autoFlush[0] = (Boolean) args[0];
+                } else if (name.equals("put")) {
+                    if (args[0] instanceof Put) {
+                        buffer.add((Put) args[0]);
+                    } else {
+                        for (Object put : (List<?>) args[0]) {
+                            buffer.add((Put) put);
+                        }
+                    }
+                    if (autoFlush[0]) {
+                        flush(buffer);
+                    }
+                } else if (name.equals("flushCommits") || name.equals("close")) {
+                    flush(buffer);
+                } else if (name.equals("delete")) {
+                    if (args[0] instanceof Delete) {
+                        delete(Lists.newArrayList((Delete) args[0]));
+                    } else {
+                        List<Delete> batch = Lists.newArrayList();
+                        for (Object delete : (List<?>) args[0]) {
+                            batch.add((Delete) delete);
+                        }
+                        delete(batch);
+                        // keep only the deletes that failed in the caller's list
+                        ((List<?>) args[0]).retainAll(batch);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    private void flush(List<Put> buffer) throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<Put> batch = Lists.newArrayList(buffer);
+        buffer.clear();
+        commit(batch);
+    }
+
+    private ResultScanner scanner(Scan scan) throws Throwable {
+        if (scanError != null) {
+            throw scanError;
+        }
+        scans.add(scan);
+        final List<Result> results = read(scan);
+        return (ResultScanner) proxy(ResultScanner.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                Object identity = objectMethod(proxy, method, args);
+                if (identity != null) {
+                    return identity;
+                }
+                String name = method.getName();
+                if (name.equals("next") && args == null) {
+                    return results.isEmpty() ? null : results.remove(0);
+                }
+                if (name.equals("next")) {
+                    int count = Math.min((Integer) args[0], results.size());
+                    List<Result> batch = Lists.newArrayList(results.subList(0, count));
+                    results.subList(0, count).clear();
+                    return batch.toArray(new Result[batch.size()]);
+                }
+                if (name.equals("iterator")) {
+                    return Iterators.consumingIterator(results.iterator());
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * rows of the scan range with the scan families and filter applied
+     */
+    private synchronized List<Result> read(Scan scan) throws IOException {
+        List<Result> results = Lists.newArrayList();
+        NavigableMap<byte[], List<KeyValue>> range = scan.getStopRow().length == 0
+                ? rows.tailMap(scan.getStartRow(), true)
+                : rows.subMap(scan.getStartRow(), true, scan.getStopRow(), false);
+        Filter filter = scan.getFilter();
+        Map<byte[], NavigableSet<byte[]>> columns = scan.getFamilyMap();
+        for (Map.Entry<byte[], List<KeyValue>> row : range.entrySet()) {
+            if (filter != null) {
+                if (filter.filterAllRemaining()) {
+                    break;
+                }
+                filter.reset();
+                if (filter.filterRowKey(row.getKey(), 0, row.getKey().length)) {
+                    continue;
+                }
+            }
+            List<KeyValue> kept = Lists.newArrayList();
+            for (KeyValue kv : row.getValue()) {
+                if (!columns.isEmpty()) {
+                    NavigableSet<byte[]> qualifiers = columns.get(kv.getFamily());
+                    if (!columns.containsKey(kv.getFamily()) || (qualifiers != null
+                            && !qualifiers.contains(kv.getQualifier()))) {
+                        continue;
+                    }
+                }
+                if (filter == null) {
+                    kept.add(kv);
+                    continue;
+                }
+                Filter.ReturnCode code = filter.filterKeyValue(kv);
+                if (code == Filter.ReturnCode.INCLUDE
+                        || code == Filter.ReturnCode.INCLUDE_AND_NEXT_COL) {
+                    kept.add(filter.transform(kv));
+                } else if (code == Filter.ReturnCode.NEXT_ROW) {
+                    break;
+                }
+            }
+            if (filter != null) {
+                if (filter.hasFilterRow()) {
+                    filter.filterRow(kept);
+                }
+                if (filter.filterRow()) {
+                    continue;
+                }
+            }
+            if (!kept.isEmpty()) {
+                results.add(new Result(kept));
+            }
+        }
+        return results;
+    }
+}
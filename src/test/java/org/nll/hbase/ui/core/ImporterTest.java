@@ -0,0 +1,80 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.ImportStats;
+
+/**
+ * parsing, region grouping and the writer pipeline against a fake table.
+ */
+public class ImporterTest extends TestCase {
+
+    private final FakeHBase hbase = new FakeHBase("t", "m").families("f");
+
+    private static List<String> csv(String text) throws Exception {
+        List<String> fields = Lists.newArrayList();
+        Importer.readCsvRecord(new BufferedReader(new StringReader(text)), fields);
+        return fields;
+    }
+
+    public void testCsvRecord() throws Exception {
+        assertEquals(Lists.newArrayList("a", "", "c"), csv("a,,c"));
+        assertEquals(Lists.newArrayList("a,b", "say \"hi\""), csv("\"a,b\",\"say \"\"hi\"\"\""));
+        assertEquals(Lists.newArrayList("two\nlines", "x"), csv("\"two\nlines\",x\nnext"));
+        StringBuilder text = new StringBuilder();
+        Exporter.appendCsvValue(text, "q\"uo,te\nd");
+        assertEquals(Lists.newArrayList("q\"uo,te\nd"), csv(text.toString()));
+    }
+
+    public void testRegionIndex() {
+        byte[][] keys = {new byte[0], Bytes.toBytes("g"), Bytes.toBytes("p")};
+        assertEquals(0, Importer.regionIndex(keys, Bytes.toBytes("a")));
+        assertEquals(1, Importer.regionIndex(keys, Bytes.toBytes("g")));
+        assertEquals(1, Importer.regionIndex(keys, Bytes.toBytes("o")));
+        assertEquals(2, Importer.regionIndex(keys, Bytes.toBytes("z")));
+    }
+
+    public void testCsvImport() throws Exception {
+        String text = "rowkey,f:a,f:b\n"
+                + "r1,1,x\n"
+                + "z2,\"2,2\",\n"
+                + "r3,,\n"
+                + "r4,4,4,4\n"
+                + "\n"
+                + "r5,5,\"multi\nline\"\n";
+        Importer importer = new Importer(hbase.connection(), "t", ExportFormat.CSV);
+        importer.setWriters(2);
+        ImportStats stats = importer.importRows(
+                new ByteArrayInputStream(text.getBytes(Charsets.UTF_8)), null);
+        assertEquals(3, stats.getRows());
+        assertEquals(2, stats.getFailedRows());
+        assertEquals("line 4: no values", stats.getFailures().get(0));
+        assertTrue(stats.getFailures().get(1).startsWith("line 5: "));
+        assertEquals(3, hbase.puts.size());
+        for (Put put : hbase.puts) {
+            if (Bytes.toString(put.getRow()).equals("z2")) {
+                assertEquals("2,2", Bytes.toString(put.get(Bytes.toBytes("f"),
+                        Bytes.toBytes("a")).get(0).getValue()));
+                assertEquals(1, put.size());
+            }
+        }
+    }
+
+    public void testJsonImport() throws Exception {
+        String text = "{\"rowkey\":\"r1\",\"f:a\":\"1\"}\n"
+                + "{\"rowkey\":\"r2\",\"g:a\":\"2\"}\n"
+                + "not json\n";
+        ImportStats stats = new Importer(hbase.connection(), "t", ExportFormat.JSONL).importRows(
+                new ByteArrayInputStream(text.getBytes(Charsets.UTF_8)), null);
+        assertEquals(1, stats.getRows());
+        assertEquals(2, stats.getFailedRows());
+        assertEquals("line 2: no family g", stats.getFailures().get(0));
+    }
+}
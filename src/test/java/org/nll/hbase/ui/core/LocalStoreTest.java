@@ -0,0 +1,68 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.File;
+import java.util.List;
+import junit.framework.TestCase;
+import org.nll.hbase.ui.model.HbaseSchema;
+import org.nll.hbase.ui.model.HbaseSetting;
+
+/**
+ * settings and tables read back from the cache file.
+ */
+public class LocalStoreTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("hbase-ui-", ".json");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private static HbaseSetting setting(String name, String quorum) {
+        HbaseSetting setting = new HbaseSetting();
+        setting.setName(name);
+        setting.setQuorum(quorum);
+        setting.setMaster(quorum + ":60000");
+        setting.setPrefetchPages(3);
+        return setting;
+    }
+
+    public void testRoundTrip() {
+        LocalStore store = new LocalStore(file);
+        store.saveSetting(setting("a", "zk1"), false);
+        store.saveSetting(setting("b", "zk2"), true);
+        HbaseSchema schema = new HbaseSchema();
+        schema.setTableName("t1");
+        schema.setFamilies(Lists.newArrayList("f1", "f2"));
+        schema.setLoaded(true);
+        store.saveSchemas(setting("b", "zk2"), Lists.newArrayList(schema));
+
+        LocalStore read = new LocalStore(file);
+        assertEquals(2, read.getSettings().size());
+        assertEquals("b", read.getLastSetting().getName());
+        assertEquals(3, read.getSetting("a").getPrefetchPages());
+        // same cluster under another name
+        List<HbaseSchema> schemas = read.getSchemas(setting("c", "zk2"));
+        assertEquals(1, schemas.size());
+        assertEquals("t1", schemas.get(0).getTableName());
+        assertEquals(Lists.newArrayList("f1", "f2"), schemas.get(0).getFamilies());
+        assertFalse(schemas.get(0).isLoaded());
+        assertNull(read.getSchemas(setting("a", "zk1")));
+    }
+
+    public void testUnreadableFileIsIgnored() throws Exception {
+        Files.write("{not json", file, Charsets.UTF_8);
+        LocalStore store = new LocalStore(file);
+        assertNull(store.getLastSetting());
+        assertTrue(store.getSettings().isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.HbaseQuery;
+
+/**
+ * keyset pages of a fake table.
+ */
+public class PageCursorTest extends TestCase {
+
+    private static HbaseQuery query(int pageSize) {
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("t");
+        query.setPageSize(pageSize);
+        return query;
+    }
+
+    private static List<byte[]> read(PageCursor cursor, int index) throws Exception {
+        final List<byte[]> rows = Lists.newArrayList();
+        cursor.read(index, new ResultHandler() {
+            @Override
+            public boolean handle(Result result) {
+                rows.add(result.getRow());
+                return true;
+            }
+        });
+        return rows;
+    }
+
+    public void testPages() throws Exception {
+        FakeHBase hbase = new FakeHBase("t").addRows("r%02d", 25);
+        PageCursor cursor = new PageCursor(hbase.connection(), query(10));
+        assertFalse(cursor.hasPage(1));
+        assertEquals("r00", Bytes.toString(read(cursor, 0).get(0)));
+        assertTrue(cursor.hasPage(1));
+        assertEquals("r10", Bytes.toString(read(cursor, 1).get(0)));
+        List<byte[]> last = read(cursor, 2);
+        assertEquals(5, last.size());
+        assertTrue(cursor.isLastPage(2));
+        assertFalse(cursor.hasPage(3));
+    }
+
+    public void testBinaryRowkeys() throws Exception {
+        FakeHBase hbase = new FakeHBase("t");
+        // not valid UTF-8, a string round trip would change them
+        for (int i = 0; i < 6; i++) {
+            hbase.add(new byte[]{(byte) 0xff, (byte) (0x80 + i)}, "f", "q", Bytes.toBytes(i));
+        }
+        PageCursor cursor = new PageCursor(hbase.connection(), query(2),
+                new ResultCache(1024 * 1024), false);
+        read(cursor, 0);
+        for (int page = 1; page < 3; page++) {
+            List<byte[]> rows = read(cursor, page);
+            assertEquals(2, rows.size());
+            assertTrue(Bytes.equals(new byte[]{(byte) 0xff, (byte) (0x80 + page * 2)},
+                    rows.get(0)));
+        }
+        // pages read again come from the cache, each under its own key
+        int scans = hbase.scans.size();
+        assertTrue(Bytes.equals(new byte[]{(byte) 0xff, (byte) 0x82}, read(cursor, 1).get(0)));
+        assertEquals(scans, hbase.scans.size());
+    }
+}
@@ -0,0 +1,148 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.FilterOperation;
+import org.nll.hbase.ui.model.HbaseData;
+import org.nll.hbase.ui.model.HbaseFilter;
+import org.nll.hbase.ui.model.HbaseQuery;
+
+/**
+ * region split of scan ranges and parallel scans of a fake table.
+ */
+public class ParallelScannerTest extends TestCase {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[][] STARTS = {EMPTY, b("b"), b("d"), b("f")};
+    private static final byte[][] ENDS = {b("b"), b("d"), b("f"), EMPTY};
+    private static final String[] HOSTS = {"rs1:60020", "rs2:60020", "rs1:60020", "rs2:60020"};
+
+    private static byte[] b(String s) {
+        return Bytes.toBytes(s);
+    }
+
+    public void testWholeTable() {
+        List<ScanRange> ranges = ParallelScanner.splitRanges(STARTS, ENDS, HOSTS, EMPTY, EMPTY);
+        assertEquals(4, ranges.size());
+        assertTrue(Bytes.equals(EMPTY, ranges.get(0).getStartRow()));
+        assertTrue(Bytes.equals(b("b"), ranges.get(0).getStopRow()));
+        assertTrue(Bytes.equals(b("f"), ranges.get(3).getStartRow()));
+        assertTrue(Bytes.equals(EMPTY, ranges.get(3).getStopRow()));
+        assertEquals("rs2:60020", ranges.get(1).getLocation());
+    }
+
+    public void testInsideRange() {
+        List<ScanRange> ranges = ParallelScanner.splitRanges(STARTS, ENDS, HOSTS, b("c"), b("e"));
+        assertEquals(2, ranges.size());
+        assertTrue(Bytes.equals(b("c"), ranges.get(0).getStartRow()));
+        assertTrue(Bytes.equals(b("d"), ranges.get(0).getStopRow()));
+        assertTrue(Bytes.equals(b("d"), ranges.get(1).getStartRow()));
+        assertTrue(Bytes.equals(b("e"), ranges.get(1).getStopRow()));
+    }
+
+    public void testStopOnRegionBoundary() {
+        List<ScanRange> ranges = ParallelScanner.splitRanges(STARTS, ENDS, HOSTS, b("b"), b("d"));
+        assertEquals(1, ranges.size());
+        assertEquals("rs2:60020", ranges.get(0).getLocation());
+    }
+
+    public void testOpenStop() {
+        List<ScanRange> ranges = ParallelScanner.splitRanges(STARTS, ENDS, HOSTS, b("e"), EMPTY);
+        assertEquals(2, ranges.size());
+        assertTrue(Bytes.equals(b("e"), ranges.get(0).getStartRow()));
+        assertTrue(Bytes.equals(EMPTY, ranges.get(1).getStopRow()));
+    }
+
+    public void testSingleRegionTable() {
+        List<ScanRange> ranges = ParallelScanner.splitRanges(new byte[][]{EMPTY},
+                new byte[][]{EMPTY}, new String[]{"rs1:60020"}, b("a"), b("z"));
+        assertEquals(1, ranges.size());
+        assertTrue(Bytes.equals(b("a"), ranges.get(0).getStartRow()));
+        assertTrue(Bytes.equals(b("z"), ranges.get(0).getStopRow()));
+    }
+
+    public void testScanIgnoresPageSize() throws Exception {
+        FakeHBase hbase = new FakeHBase("t", "r10", "r20").addRows("r%02d", 30);
+        ParallelScanner scanner = new ParallelScanner(hbase.connection(), 2);
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("t");
+        query.setPageSize(5);
+        final List<String> rows = Lists.newArrayList();
+        try {
+            assertEquals(30, scanner.scan(query, new RowHandler() {
+                @Override
+                public boolean handle(HbaseData data) {
+                    rows.add(data.getRowkey());
+                    return true;
+                }
+            }, true));
+        } finally {
+            scanner.close();
+        }
+        assertEquals("r00", rows.get(0));
+        assertEquals("r29", rows.get(29));
+        assertEquals(5, query.getPageSize());
+    }
+
+    public void testFilterOnOtherFamily() throws Exception {
+        FakeHBase hbase = new FakeHBase("t", "r10").addRows("r%02d", 20);
+        hbase.add("r03", "g", "flag", "1").add("r15", "g", "flag", "1");
+        ParallelScanner scanner = new ParallelScanner(hbase.connection(), 2);
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("t");
+        query.setFamilies(Lists.newArrayList("f"));
+        query.getFilters().add(new HbaseFilter("g:flag", FilterOperation.EQUAL, "1"));
+        final List<String> rows = Lists.newArrayList();
+        try {
+            scanner.scan(query, new RowHandler() {
+                @Override
+                public boolean handle(HbaseData data) {
+                    rows.add(data.getRowkey());
+                    return true;
+                }
+            }, true);
+        } finally {
+            scanner.close();
+        }
+        assertEquals(Lists.newArrayList("r03", "r15"), rows);
+    }
+
+    public void testRangeErrorIsThrown() throws Exception {
+        FakeHBase hbase = new FakeHBase("t", "r10", "r20").addRows("r%02d", 30);
+        hbase.failScans(new AssertionError("region gone"));
+        ParallelScanner scanner = new ParallelScanner(hbase.connection(), 2);
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("t");
+        try {
+            scanner.scan(query, new RowHandler() {
+                @Override
+                public boolean handle(HbaseData data) {
+                    return true;
+                }
+            }, true);
+            fail("an empty scan instead of the range error");
+        } catch (AssertionError e) {
+            assertEquals("region gone", e.getMessage());
+        } finally {
+            scanner.close();
+        }
+    }
+
+    public void testCountErrorIsThrown() throws Exception {
+        FakeHBase hbase = new FakeHBase("t", "r10", "r20").addRows("r%02d", 30);
+        hbase.failScans(new AssertionError("region gone"));
+        ParallelScanner scanner = new ParallelScanner(hbase.connection(), 2);
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("t");
+        try {
+            scanner.count(query, null);
+            fail("a count instead of the range error");
+        } catch (AssertionError e) {
+            assertEquals("region gone", e.getMessage());
+        } finally {
+            scanner.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.nll.hbase.ui.core;
+
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.FilterOperation;
+import org.nll.hbase.ui.model.HbaseFilter;
+import org.nll.hbase.ui.model.HbaseQuery;
+
+/**
+ * byte bounded LRU and query keys.
+ */
+public class ResultCacheTest extends TestCase {
+
+    private static List<Result> page(int valueSize) {
+        KeyValue kv = new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("f"),
+                Bytes.toBytes("q"), new byte[valueSize]);
+        return Arrays.asList(new Result(new KeyValue[]{kv}));
+    }
+
+    public void testFamilyOrderIsIgnored() {
+        HbaseQuery a = new HbaseQuery();
+        a.setTableName("t");
+        a.setFamilies(Arrays.asList("f1", "f2"));
+        HbaseQuery b = a.copy();
+        b.setFamilies(Arrays.asList("f2", "f1"));
+        assertEquals(ResultCache.keyOf(a), ResultCache.keyOf(b));
+        b.setStartRowkey("x");
+        assertFalse(ResultCache.keyOf(a).equals(ResultCache.keyOf(b)));
+    }
+
+    public void testRowkeysWithSameHashCode() {
+        HbaseQuery a = new HbaseQuery();
+        a.setTableName("t");
+        a.setRowkeys(Arrays.asList("Aa", "x"));
+        HbaseQuery b = a.copy();
+        b.setRowkeys(Arrays.asList("BB", "x"));
+        assertEquals(a.getRowkeys().hashCode(), b.getRowkeys().hashCode());
+        assertFalse(ResultCache.keyOf(a).equals(ResultCache.keyOf(b)));
+        b.setRowkeys(Arrays.asList("Aa", "x"));
+        assertEquals(ResultCache.keyOf(a), ResultCache.keyOf(b));
+    }
+
+    public void testFilterValueWithSeparator() {
+        HbaseQuery a = new HbaseQuery();
+        a.setTableName("t");
+        a.getFilters().add(new HbaseFilter("f:q", FilterOperation.EQUAL, "1,f:q = 2,all"));
+        HbaseQuery b = a.copy();
+        b.getFilters().clear();
+        b.getFilters().add(new HbaseFilter("f:q", FilterOperation.EQUAL, "1"));
+        b.getFilters().add(new HbaseFilter("f:q", FilterOperation.EQUAL, "2"));
+        b.setMatchAll(true);
+        assertFalse(ResultCache.keyOf(a).equals(ResultCache.keyOf(b)));
+        HbaseQuery c = a.copy();
+        c.getFilters().clear();
+        c.getFilters().add(new HbaseFilter("f:q", FilterOperation.EQUAL, "1,f:q = 2,all"));
+        assertEquals(ResultCache.keyOf(a), ResultCache.keyOf(c));
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        ResultCache cache = new ResultCache(10000);
+        cache.put("a", page(2000));
+        cache.put("b", page(2000));
+        cache.put("c", page(2000));
+        assertNotNull(cache.get("a"));
+        cache.put("d", page(2000));
+        cache.put("e", page(2000));
+        assertTrue(cache.getBytes() <= 10000);
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testOversizedIsNotCached() {
+        ResultCache cache = new ResultCache(10000);
+        cache.put("a", page(5000));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getBytes());
+    }
+}
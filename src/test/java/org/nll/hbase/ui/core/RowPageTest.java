@@ -0,0 +1,104 @@
+package org.nll.hbase.ui.core;
+
+import java.nio.ByteBuffer;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * rows of a page addressed by offsets, spilled and read back.
+ */
+public class RowPageTest extends TestCase {
+
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+
+    private static Result row(String rowkey, int columns) {
+        KeyValue[] kvs = new KeyValue[columns];
+        for (int i = 0; i < columns; i++) {
+            kvs[i] = new KeyValue(Bytes.toBytes(rowkey), FAMILY, Bytes.toBytes("q" + i), 1L,
+                    Bytes.toBytes(rowkey + "-" + i));
+        }
+        return new Result(kvs);
+    }
+
+    /**
+     * more rows, cells and bytes than the page starts with, rowkeys of
+     * different lengths
+     */
+    private static RowPage page(ColumnDictionary dictionary) {
+        RowPage page = new RowPage(dictionary);
+        for (int i = 0; i < 40; i++) {
+            page.add(row(i % 2 == 0 ? "r" + i : "row-number-" + i, 1 + i % 5));
+        }
+        return page;
+    }
+
+    private static void assertRows(RowPage page, ColumnDictionary dictionary) {
+        assertEquals(40, page.getRowCount());
+        for (int i = 0; i < 40; i++) {
+            String rowkey = i % 2 == 0 ? "r" + i : "row-number-" + i;
+            assertEquals(rowkey, page.getRowkey(i));
+            for (int column = 0; column < 5; column++) {
+                int id = dictionary.getId("f:q" + column);
+                assertEquals(column < 1 + i % 5 ? rowkey + "-" + column : null,
+                        page.getValue(i, id));
+            }
+        }
+    }
+
+    public void testOffsets() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        RowPage page = page(dictionary);
+        assertRows(page, dictionary);
+        page.trim();
+        assertRows(page, dictionary);
+        assertEquals(5, page.getColumns().cardinality());
+    }
+
+    public void testSpillRoundTrip() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        RowPage page = page(dictionary);
+        ByteBuffer buffer = ByteBuffer.allocate(page.getSpillSize());
+        page.writeTo(buffer);
+        assertEquals(page.getSpillSize(), buffer.position());
+        buffer.flip();
+        RowPage read = RowPage.readFrom(buffer, dictionary);
+        assertFalse(buffer.hasRemaining());
+        assertRows(read, dictionary);
+        assertEquals(page.getColumns(), read.getColumns());
+    }
+
+    public void testEmptyValue() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        RowPage page = new RowPage(dictionary);
+        page.add(new Result(new KeyValue[]{
+            new KeyValue(Bytes.toBytes("r"), FAMILY, Bytes.toBytes("a"), 1L, new byte[0]),
+            new KeyValue(Bytes.toBytes("r"), FAMILY, Bytes.toBytes("b"), 1L, Bytes.toBytes("v"))}));
+        page.add(row("s", 1));
+        // an empty value is there, unlike a missing cell
+        assertEquals("", page.getValue(0, dictionary.getId("f:a")));
+        assertEquals("v", page.getValue(0, dictionary.getId("f:b")));
+        assertNull(page.getValue(1, dictionary.getId("f:a")));
+        assertEquals("", page.toHbaseData(0).getDatas().get("f:a").getValue());
+    }
+
+    public void testBinaryQualifiers() {
+        byte[] first = {(byte) 0xff, 0};
+        byte[] second = {(byte) 0xfe, 0};
+        ColumnDictionary dictionary = new ColumnDictionary();
+        RowPage page = new RowPage(dictionary);
+        for (String rowkey : new String[]{"r1", "r2"}) {
+            page.add(new Result(new KeyValue[]{
+                new KeyValue(Bytes.toBytes(rowkey), FAMILY, second, 1L, Bytes.toBytes("2")),
+                new KeyValue(Bytes.toBytes(rowkey), FAMILY, first, 1L, Bytes.toBytes("1"))}));
+        }
+        // both decode to the same name, the bytes keep them apart
+        assertEquals(2, dictionary.size());
+        for (int id = 0; id < 2; id++) {
+            String value = Bytes.equals(second, dictionary.getQualifier(id)) ? "2" : "1";
+            assertEquals(value, page.getValue(0, id));
+            assertEquals(value, page.getValue(1, id));
+        }
+    }
+}
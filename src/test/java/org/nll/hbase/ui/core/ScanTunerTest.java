@@ -0,0 +1,93 @@
+package org.nll.hbase.ui.core;
+
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.FilterOperation;
+import org.nll.hbase.ui.model.HbaseFilter;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.nll.hbase.ui.util.HbaseUtil;
+
+/**
+ * caching and batch chosen from measured rows.
+ */
+public class ScanTunerTest extends TestCase {
+
+    private static Result row(int index, int cells, int valueSize) {
+        KeyValue[] kvs = new KeyValue[cells];
+        for (int i = 0; i < cells; i++) {
+            kvs[i] = new KeyValue(Bytes.toBytes("row" + index), Bytes.toBytes("f"),
+                    Bytes.toBytes("q" + i), new byte[valueSize]);
+        }
+        return new Result(kvs);
+    }
+
+    private static void feed(ScanTuner tuner, int rows, int cells, int valueSize) {
+        Scan scan = new Scan();
+        ScanTuner.Probe probe = tuner.configure(scan, 0);
+        for (int i = 0; i < rows; i++) {
+            Result result = row(i, cells, valueSize);
+            probe.before();
+            probe.after(result);
+            probe.row();
+        }
+        probe.done();
+    }
+
+    public void testInitialCaching() {
+        ScanTuner tuner = new ScanTuner("t");
+        Scan scan = new Scan();
+        tuner.configure(scan, 10);
+        assertEquals(10, scan.getCaching());
+        assertEquals(-1, scan.getBatch());
+    }
+
+    public void testSmallRowsRaiseCaching() {
+        ScanTuner tuner = new ScanTuner("t");
+        feed(tuner, 50, 2, 10);
+        assertTrue(tuner.getCaching() > ScanTuner.INITIAL_CACHING);
+        assertEquals(0, tuner.getBatch());
+    }
+
+    public void testWideRowsAreBatched() {
+        ScanTuner tuner = new ScanTuner("t");
+        feed(tuner, 2, 8, 1024 * 1024);
+        assertEquals(1, tuner.getCaching());
+        assertEquals(1, tuner.getBatch());
+        Scan scan = new Scan();
+        tuner.configure(scan, 0);
+        assertEquals(1, scan.getBatch());
+    }
+
+    public void testExplicitCachingIsKept() {
+        ScanTuner tuner = new ScanTuner("t");
+        Scan scan = new Scan();
+        scan.setCaching(7);
+        tuner.configure(scan, 100);
+        assertEquals(7, scan.getCaching());
+    }
+
+    public void testBatchOverrideOfPagedQuery() throws Exception {
+        ScanTuner tuner = new ScanTuner("t");
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("t");
+        query.setPageSize(5);
+        query.setBatch(2);
+        // a page filter counts whole rows, batched parts would count as rows
+        Scan scan = HbaseUtil.buildScan(query);
+        tuner.configure(scan, query.getPageSize(), query.getBatch());
+        assertEquals(-1, scan.getBatch());
+
+        query.setPageSize(0);
+        scan = HbaseUtil.buildScan(query);
+        tuner.configure(scan, 0, query.getBatch());
+        assertEquals(2, scan.getBatch());
+
+        query.getFilters().add(new HbaseFilter("f:q", FilterOperation.EQUAL, "v"));
+        scan = HbaseUtil.buildScan(query);
+        tuner.configure(scan, 0, query.getBatch());
+        assertEquals(-1, scan.getBatch());
+    }
+}
@@ -0,0 +1,55 @@
+package org.nll.hbase.ui.core;
+
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * pages written to and mapped back from the spill file.
+ */
+public class SpillStoreTest extends TestCase {
+
+    private static RowPage page(ColumnDictionary dictionary, int first, int rows, int valueSize) {
+        RowPage page = new RowPage(dictionary);
+        for (int i = first; i < first + rows; i++) {
+            byte[] row = Bytes.toBytes("row" + i);
+            page.add(new Result(new KeyValue[]{
+                new KeyValue(row, Bytes.toBytes("f"), Bytes.toBytes("a"), Bytes.toBytes("a" + i)),
+                new KeyValue(row, Bytes.toBytes("f"), Bytes.toBytes("b"), new byte[valueSize])}));
+        }
+        page.trim();
+        return page;
+    }
+
+    public void testRoundTrip() throws Exception {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        SpillStore spill = new SpillStore(null, 4096);
+        try {
+            for (int p = 0; p < 10; p++) {
+                assertTrue(spill.put(p, page(dictionary, p * 10, 10, 100)));
+            }
+            assertEquals(10, spill.getPageCount());
+            RowPage page = spill.get(7, dictionary);
+            assertEquals(10, page.getRowCount());
+            assertEquals("row73", page.getRowkey(3));
+            int a = dictionary.getId("f:a");
+            assertEquals("a75", page.getValue(5, a));
+            assertTrue(page.getColumns().get(a));
+            assertNull(spill.get(10, dictionary));
+        } finally {
+            spill.close();
+        }
+    }
+
+    public void testPageBiggerThanSegmentIsNotKept() throws Exception {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        SpillStore spill = new SpillStore(null, 1024);
+        try {
+            assertFalse(spill.put(0, page(dictionary, 0, 10, 1000)));
+            assertFalse(spill.contains(0));
+        } finally {
+            spill.close();
+        }
+    }
+}
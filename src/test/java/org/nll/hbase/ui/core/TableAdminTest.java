@@ -0,0 +1,218 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HServerLoad;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.master.AssignmentManager;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.AdminOperation;
+import org.nll.hbase.ui.model.AdminTask;
+
+/**
+ * admin operations on many tables against a fake admin whose regions close
+ * and open one per poll.
+ */
+public class TableAdminTest extends TestCase {
+
+    private static final ServerName SERVER = new ServerName("rs1", 60020, 1L);
+
+    private static List<HRegionInfo> regions(String table, String... splits) {
+        List<HRegionInfo> regions = Lists.newArrayList();
+        byte[] start = new byte[0];
+        for (String split : splits) {
+            regions.add(new HRegionInfo(Bytes.toBytes(table), start, Bytes.toBytes(split)));
+            start = Bytes.toBytes(split);
+        }
+        regions.add(new HRegionInfo(Bytes.toBytes(table), start, new byte[0]));
+        return regions;
+    }
+
+    private static HServerLoad.RegionLoad load(HRegionInfo region, long compacting,
+            long compacted) {
+        return new HServerLoad.RegionLoad(region.getRegionName(), 1, 1, 1, 1, 0, 0, 0, 0, 0,
+                0L, 0L, compacting, compacted);
+    }
+
+    /**
+     * regions close or open one at each state check
+     */
+    private static class FakeAdmin extends HBaseAdmin {
+
+        final Map<String, List<HRegionInfo>> tables = Maps.newHashMap();
+        final Map<String, Integer> online = Maps.newHashMap();
+        final Set<String> disabling = Sets.newHashSet();
+        final Set<String> enabling = Sets.newHashSet();
+        final Set<String> deleted = Sets.newHashSet();
+        final Set<String> failing = Sets.newHashSet();
+        byte[][] createdSplits;
+
+        FakeAdmin() throws IOException {
+            super(new FakeHBase("t").connection());
+        }
+
+        void add(String table, String... splits) {
+            tables.put(table, regions(table, splits));
+            online.put(table, splits.length + 1);
+        }
+
+        @Override
+        public synchronized List<HRegionInfo> getTableRegions(byte[] table) {
+            return tables.get(Bytes.toString(table));
+        }
+
+        @Override
+        public synchronized void disableTableAsync(byte[] table) throws IOException {
+            if (failing.contains(Bytes.toString(table))) {
+                throw new IOException("master refused");
+            }
+            disabling.add(Bytes.toString(table));
+        }
+
+        @Override
+        public synchronized void enableTableAsync(byte[] table) {
+            enabling.add(Bytes.toString(table));
+        }
+
+        @Override
+        public synchronized boolean isTableDisabled(byte[] table) {
+            String name = Bytes.toString(table);
+            int regions = online.get(name);
+            if (disabling.contains(name) && regions > 0) {
+                online.put(name, regions - 1);
+            }
+            return online.get(name) == 0;
+        }
+
+        @Override
+        public synchronized boolean isTableEnabled(byte[] table) {
+            String name = Bytes.toString(table);
+            int regions = online.get(name);
+            if (enabling.contains(name) && regions < tables.get(name).size()) {
+                online.put(name, regions + 1);
+            }
+            return online.get(name) == tables.get(name).size();
+        }
+
+        @Override
+        public synchronized boolean isTableAvailable(byte[] table) {
+            return isTableEnabled(table);
+        }
+
+        @Override
+        public synchronized void deleteTable(byte[] table) throws IOException {
+            String name = Bytes.toString(table);
+            if (online.get(name) != 0) {
+                throw new IOException("table is not disabled");
+            }
+            deleted.add(name);
+        }
+
+        @Override
+        public HTableDescriptor getTableDescriptor(byte[] table) {
+            return new HTableDescriptor(table);
+        }
+
+        @Override
+        public synchronized void createTableAsync(HTableDescriptor descriptor, byte[][] splits) {
+            String name = descriptor.getNameAsString();
+            createdSplits = splits;
+            disabling.remove(name);
+            enabling.add(name);
+        }
+
+        @Override
+        public synchronized ClusterStatus getClusterStatus() {
+            Map<byte[], HServerLoad.RegionLoad> loads = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+            for (Map.Entry<String, List<HRegionInfo>> table : tables.entrySet()) {
+                for (HRegionInfo region : table.getValue().subList(0, online.get(table.getKey()))) {
+                    loads.put(region.getRegionName(), load(region, 0, 0));
+                }
+            }
+            return status(loads, Collections.<String, AssignmentManager.RegionState>emptyMap());
+        }
+    }
+
+    private static ClusterStatus status(Map<byte[], HServerLoad.RegionLoad> loads,
+            Map<String, AssignmentManager.RegionState> transitions) {
+        Map<ServerName, HServerLoad> servers = Maps.newHashMap();
+        servers.put(SERVER, new HServerLoad(0, 0, 0, 0, loads, Collections.<String>emptySet()));
+        return new ClusterStatus("0.94", "test", servers, Collections.<ServerName>emptyList(),
+                SERVER, Collections.<ServerName>emptyList(), transitions, new String[0]);
+    }
+
+    public void testDisableTablesAtOnce() throws Exception {
+        FakeAdmin admin = new FakeAdmin();
+        admin.add("a", "m");
+        admin.add("b", "d", "h", "p");
+        admin.add("bad");
+        admin.failing.add("bad");
+        TableAdmin tableAdmin = new TableAdmin(admin);
+        tableAdmin.setPollMillis(1);
+        final List<List<AdminTask>> reports = Lists.newArrayList();
+        List<AdminTask> tasks = tableAdmin.run(AdminOperation.DISABLE,
+                Lists.newArrayList("a", "b", "bad"), new AdminListener() {
+                    @Override
+                    public void progress(List<AdminTask> tasks) {
+                        reports.add(tasks);
+                    }
+                });
+        assertEquals(AdminTask.State.DONE, tasks.get(0).getState());
+        assertEquals(AdminTask.State.DONE, tasks.get(1).getState());
+        assertEquals(100, tasks.get(1).getPercent());
+        assertEquals(0, (int) admin.online.get("b"));
+        // one table failing does not stop the others
+        assertEquals(AdminTask.State.FAILED, tasks.get(2).getState());
+        assertEquals("master refused", tasks.get(2).getMessage());
+        assertFalse(reports.isEmpty());
+        assertEquals(3, reports.get(reports.size() - 1).size());
+    }
+
+    public void testTruncateKeepsSplits() throws Exception {
+        FakeAdmin admin = new FakeAdmin();
+        admin.add("t", "k", "c");
+        TableAdmin tableAdmin = new TableAdmin(admin);
+        tableAdmin.setPollMillis(1);
+        AdminTask task = tableAdmin.run(AdminOperation.TRUNCATE,
+                Lists.newArrayList("t"), null).get(0);
+        assertEquals(task.getMessage(), AdminTask.State.DONE, task.getState());
+        assertTrue(admin.deleted.contains("t"));
+        assertEquals(2, admin.createdSplits.length);
+        assertEquals("c", Bytes.toString(admin.createdSplits[0]));
+        assertEquals("k", Bytes.toString(admin.createdSplits[1]));
+        assertEquals(3, (int) admin.online.get("t"));
+    }
+
+    public void testTableLoad() {
+        List<HRegionInfo> regions = regions("t", "m");
+        Map<byte[], HServerLoad.RegionLoad> loads = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        loads.put(regions.get(0).getRegionName(), load(regions.get(0), 100, 40));
+        loads.put(regions.get(1).getRegionName(), load(regions.get(1), 50, 10));
+        HRegionInfo other = regions("other").get(0);
+        loads.put(other.getRegionName(), load(other, 1000, 1000));
+        TableAdmin.TableLoad load = TableAdmin.TableLoad.of(status(loads,
+                Collections.<String, AssignmentManager.RegionState>emptyMap()), Bytes.toBytes("t"));
+        assertEquals(2, load.regions);
+        assertEquals(150, load.compactingKVs);
+        assertEquals(50, load.compactedKVs);
+        assertEquals(0, load.inTransition);
+    }
+
+    public void testScale() {
+        assertEquals(0, TableAdmin.scale(0, 100, 0, 0));
+        assertEquals(50, TableAdmin.scale(0, 100, 1, 2));
+        assertEquals(90, TableAdmin.scale(80, 100, 1, 2));
+        assertEquals(100, TableAdmin.scale(0, 100, 5, 2));
+    }
+}
@@ -0,0 +1,88 @@
+package org.nll.hbase.ui.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.client.Put;
+import org.nll.hbase.ui.model.CopyStats;
+import org.nll.hbase.ui.model.HbaseQuery;
+
+/**
+ * region copies, checkpoints and resume between fake tables.
+ */
+public class TableCopierTest extends TestCase {
+
+    private final FakeHBase source = new FakeHBase("s", "r10").addRows("r%02d", 20);
+    /**
+     * flushes of the target that succeed before it fails, -1 for no failure
+     */
+    private final AtomicInteger flushesLeft = new AtomicInteger(-1);
+    private final FakeHBase target = new FakeHBase("t") {
+        @Override
+        protected void commit(List<Put> batch) throws IOException {
+            if (flushesLeft.getAndDecrement() == 0) {
+                throw new IOException("down");
+            }
+            super.commit(batch);
+        }
+    };
+    private File dir;
+
+    @Override
+    protected void setUp() {
+        dir = Files.createTempDir();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private TableCopier copier(File checkpoint) {
+        TableCopier copier = new TableCopier(source.connection(), target.connection());
+        copier.setParallelism(1);
+        copier.setBatch(3, Long.MAX_VALUE);
+        copier.setCheckpointFile(checkpoint);
+        return copier;
+    }
+
+    public void testResumeAfterFailure() throws Exception {
+        HbaseQuery query = new HbaseQuery();
+        query.setTableName("s");
+        File checkpoint = new File(dir, "copy.json");
+        flushesLeft.set(2);
+        try {
+            copier(checkpoint).copy(query, "t", true, null);
+            fail();
+        } catch (IOException e) {
+            assertEquals("down", e.getMessage());
+        }
+        assertTrue(checkpoint.isFile());
+        assertEquals(Lists.newArrayList("r00", "r01", "r02", "r03", "r04", "r05"),
+                target.writtenRows());
+        target.puts.clear();
+        flushesLeft.set(-1);
+        CopyStats stats = copier(checkpoint).copy(query, "t", true, null);
+        assertEquals("r06", target.writtenRows().get(0));
+        assertEquals(14, target.puts.size());
+        assertEquals(20, stats.getRows());
+        assertEquals(2, stats.getFinishedRanges());
+        assertFalse(checkpoint.exists());
+    }
+
+    public void testThrottle() throws Exception {
+        Throttle throttle = new Throttle(100);
+        long start = System.nanoTime();
+        throttle.acquire(10);
+        throttle.acquire(10);
+        assertTrue(System.nanoTime() - start >= 80 * 1000000L);
+        assertFalse(new Throttle(0).isLimited());
+    }
+}
@@ -0,0 +1,122 @@
+package org.nll.hbase.ui.util;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.QualifierFilter;
+import org.apache.hadoop.hbase.filter.RegexStringComparator;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.filter.SubstringComparator;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.model.FilterOperation;
+import org.nll.hbase.ui.model.HbaseFilter;
+import org.nll.hbase.ui.model.HbaseQuery;
+
+/**
+ * filter conditions compiled to server side filters and scans.
+ */
+public class FilterBuilderTest extends TestCase {
+
+    private static HbaseFilter filter(String field, FilterOperation operation, String value) {
+        return new HbaseFilter(field, operation, value);
+    }
+
+    private static boolean hasPageFilter(Filter filter) {
+        if (filter instanceof PageFilter) {
+            return true;
+        }
+        if (filter instanceof FilterList) {
+            for (Filter child : ((FilterList) filter).getFilters()) {
+                if (hasPageFilter(child)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public void testOperations() {
+        FilterOperation[] operations = {FilterOperation.EQUAL, FilterOperation.NOT_EQUAL,
+            FilterOperation.LESS, FilterOperation.LESS_OR_EQUAL, FilterOperation.GREATER,
+            FilterOperation.GREATER_OR_EQUAL, FilterOperation.REGEX, FilterOperation.SUBSTRING};
+        CompareOp[] ops = {CompareOp.EQUAL, CompareOp.NOT_EQUAL, CompareOp.LESS,
+            CompareOp.LESS_OR_EQUAL, CompareOp.GREATER, CompareOp.GREATER_OR_EQUAL,
+            CompareOp.EQUAL, CompareOp.EQUAL};
+        for (int i = 0; i < operations.length; i++) {
+            SingleColumnValueFilter built = (SingleColumnValueFilter) FilterBuilder.build(
+                    filter("f:q", operations[i], "1"));
+            assertEquals(operations[i].name(), ops[i], built.getOperator());
+            assertTrue(built.getFilterIfMissing());
+            assertEquals("f", Bytes.toString(built.getFamily()));
+            assertEquals("q", Bytes.toString(built.getQualifier()));
+        }
+    }
+
+    public void testComparators() {
+        assertTrue(((SingleColumnValueFilter) FilterBuilder.build(filter("f:q",
+                FilterOperation.LESS, "1"))).getComparator() instanceof BinaryComparator);
+        assertTrue(((SingleColumnValueFilter) FilterBuilder.build(filter("f:q",
+                FilterOperation.REGEX, "a.*"))).getComparator() instanceof RegexStringComparator);
+        ValueFilter any = (ValueFilter) FilterBuilder.build(filter(HbaseFilter.ANY_VALUE,
+                FilterOperation.SUBSTRING, "x"));
+        assertTrue(any.getComparator() instanceof SubstringComparator);
+        QualifierFilter qualifier = (QualifierFilter) FilterBuilder.build(
+                filter(HbaseFilter.QUALIFIER, FilterOperation.EQUAL, "q"));
+        assertEquals("q", Bytes.toString(qualifier.getComparator().getValue()));
+        try {
+            FilterBuilder.build(filter("noqualifier", FilterOperation.EQUAL, "1"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testMatchAllOrAny() {
+        List<HbaseFilter> filters = Lists.newArrayList(filter("f:a", FilterOperation.EQUAL, "1"),
+                filter("f:b", FilterOperation.EQUAL, "2"));
+        FilterList all = (FilterList) FilterBuilder.build(filters, true);
+        assertEquals(FilterList.Operator.MUST_PASS_ALL, all.getOperator());
+        assertEquals(2, all.getFilters().size());
+        FilterList any = (FilterList) FilterBuilder.build(filters, false);
+        assertEquals(FilterList.Operator.MUST_PASS_ONE, any.getOperator());
+        assertTrue(FilterBuilder.build(filters.subList(0, 1), false)
+                instanceof SingleColumnValueFilter);
+        assertNull(FilterBuilder.build(Lists.<HbaseFilter>newArrayList(), true));
+    }
+
+    public void testCellFiltersDropPageFilter() {
+        HbaseQuery query = new HbaseQuery();
+        query.setPageSize(10);
+        query.getFilters().add(filter("f:a", FilterOperation.EQUAL, "1"));
+        assertFalse(FilterBuilder.filtersCells(query.getFilters()));
+        assertTrue(hasPageFilter(HbaseUtil.buildScan(query).getFilter()));
+        query.getFilters().add(filter(HbaseFilter.ANY_VALUE, FilterOperation.EQUAL, "1"));
+        assertTrue(FilterBuilder.filtersCells(query.getFilters()));
+        assertFalse(hasPageFilter(HbaseUtil.buildScan(query).getFilter()));
+    }
+
+    public void testFilterColumnOutsideFamilies() throws Exception {
+        HbaseQuery query = new HbaseQuery();
+        query.setFamilies(Lists.newArrayList("f"));
+        query.getFilters().add(filter("g:a", FilterOperation.EQUAL, "1"));
+        query.getFilters().add(filter("f:b", FilterOperation.EQUAL, "2"));
+        query.getFilters().add(filter(HbaseFilter.QUALIFIER, FilterOperation.EQUAL, "c"));
+        Scan scan = HbaseUtil.buildScan(query);
+        assertEquals(2, scan.getFamilyMap().size());
+        // the selected family is still read whole
+        assertNull(scan.getFamilyMap().get(Bytes.toBytes("f")));
+        assertEquals(1, scan.getFamilyMap().get(Bytes.toBytes("g")).size());
+        assertTrue(scan.getFamilyMap().get(Bytes.toBytes("g")).contains(Bytes.toBytes("a")));
+        assertEquals(1, HbaseUtil.buildGet(query, Bytes.toBytes("r")).getFamilyMap()
+                .get(Bytes.toBytes("g")).size());
+        query.setFamilies(Lists.<String>newArrayList());
+        assertTrue(HbaseUtil.buildScan(query).getFamilyMap().isEmpty());
+    }
+}
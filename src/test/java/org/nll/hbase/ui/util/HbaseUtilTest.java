@@ -0,0 +1,60 @@
+package org.nll.hbase.ui.util;
+
+import com.google.common.collect.Lists;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.nll.hbase.ui.core.FakeHBase;
+import org.nll.hbase.ui.model.HbaseQuery;
+import org.nll.hbase.ui.model.HbaseSchema;
+
+/**
+ * rowkey lookup selection and family loading.
+ */
+public class HbaseUtilTest extends TestCase {
+
+    public void testScanWithoutKeys() {
+        HbaseQuery query = new HbaseQuery();
+        query.setStartRowkey("a");
+        query.setStopRowkey("b");
+        assertNull(HbaseUtil.lookupRows(query));
+    }
+
+    public void testStartEqualsStop() {
+        HbaseQuery query = new HbaseQuery();
+        query.setStartRowkey("row1");
+        query.setStopRowkey("row1");
+        List<byte[]> rows = HbaseUtil.lookupRows(query);
+        assertEquals(1, rows.size());
+        assertEquals("row1", Bytes.toString(rows.get(0)));
+    }
+
+    public void testKeysSortedInsideRange() {
+        HbaseQuery query = new HbaseQuery();
+        query.setRowkeys(Arrays.asList("c", "a", "d", "b", "c"));
+        query.setStartRowkey("b");
+        query.setStopRowkey("d");
+        List<byte[]> rows = HbaseUtil.lookupRows(query);
+        assertEquals(2, rows.size());
+        assertEquals("b", Bytes.toString(rows.get(0)));
+        assertEquals("c", Bytes.toString(rows.get(1)));
+    }
+
+    private static HbaseSchema schema(String table) {
+        HbaseSchema hbaseSchema = new HbaseSchema();
+        hbaseSchema.setTableName(table);
+        return hbaseSchema;
+    }
+
+    public void testDroppedTableIsLoaded() throws Exception {
+        HbaseSchema kept = schema("t");
+        HbaseSchema dropped = schema("gone");
+        HbaseUtil.loadFamilies(new FakeHBase("t").families("f", "g").connection(),
+                Lists.newArrayList(kept, dropped));
+        assertTrue(kept.isLoaded());
+        assertEquals(Lists.newArrayList("f", "g"), kept.getFamilies());
+        assertTrue(dropped.isLoaded());
+        assertTrue(dropped.getFamilies().isEmpty());
+    }
+}